@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+/**
+ * Wraps a strategy so every request asks for the page size the
+ * {@link PageSizeTuner} currently prefers.
+ *
+ * When pages are addressed by number a new size is only applied once the
+ * number of items already read is a multiple of it, so the next page starts
+ * exactly where the previous one ended.  Pages found by cursor or link can
+ * change size on any request.
+ */
+class AdaptivePageSize implements PageStrategy {
+
+    private final PageStrategy strategy;
+    private final String sizeParam;
+    private final PageSizeTuner tuner;
+
+    AdaptivePageSize(final PageStrategy strategy, final String sizeParam, final PageSizeTuner tuner) {
+        this.strategy = strategy;
+        this.sizeParam = sizeParam;
+        this.tuner = tuner;
+    }
+
+    @Override
+    public <P> Request<P> first(final Request<P> request) {
+        return strategy.first(request).query(sizeParam, tuner.getSize());
+    }
+
+    @Override
+    public <P> Request<P> next(final Request<P> request, final Response<? extends Page<?>> response) {
+        final Request<P> next = strategy.next(request, response);
+        if (next == null) return null;
+
+        final int current = size(request);
+        final int proposed = tuner.getSize();
+        if (current == proposed || current < 1) return next.query(sizeParam, current);
+
+        final int page = strategy.pageNumber(next);
+        if (page == -1) return next.query(sizeParam, proposed);
+
+        final long offset = (long) (page - 1) * current;
+        if (offset % proposed != 0) return next.query(sizeParam, current);
+
+        return strategy.page(next, (int) (offset / proposed) + 1).query(sizeParam, proposed);
+    }
+
+    @Override
+    public int lastPage(final Response<? extends Page<?>> response) {
+        return strategy.lastPage(response);
+    }
+
+    @Override
+    public int pageNumber(final Request<?> request) {
+        return strategy.pageNumber(request);
+    }
+
+    @Override
+    public <P> Request<P> page(final Request<P> request, final int number) {
+        return strategy.page(request, number);
+    }
+
+    int size(final Request<?> request) {
+        final String size = request.getQueryParams().get(sizeParam);
+        if (size == null) return -1;
+        try {
+            return Integer.parseInt(size);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    PageSizeTuner getTuner() {
+        return tuner;
+    }
+}
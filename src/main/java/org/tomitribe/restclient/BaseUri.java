@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.net.URI;
+
+class BaseUri {
+
+    private BaseUri() {
+    }
+
+    /**
+     * Appends the request URI to the base URI unless it is already absolute
+     */
+    static URI resolve(final URI base, final Request<?> request) {
+        final URI uri = request.getURI();
+        if (base == null || uri.isAbsolute()) return uri;
+
+        String prefix = base.toASCIIString();
+        if (prefix.endsWith("/")) prefix = prefix.substring(0, prefix.length() - 1);
+
+        final String relative = uri.toASCIIString();
+        return URI.create(relative.startsWith("/") ? prefix + relative : prefix + "/" + relative);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter of fingerprints.  The bit positions are derived
+ * from the two halves of the fingerprint by double hashing, as the
+ * fingerprint is already a good hash.
+ */
+class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+
+    BloomFilter(final int expectedInsertions, final double falsePositiveRate) {
+        final double ln2 = Math.log(2);
+        final long size = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+        final int wordCount = (int) Math.max(1, (size + 63) / 64);
+
+        this.words = new AtomicLongArray(wordCount);
+        this.bits = wordCount * 64L;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expectedInsertions * ln2));
+    }
+
+    void add(final Fingerprint key) {
+        for (int i = 0; i < hashes; i++) {
+            final long bit = bit(key, i);
+            final int word = (int) (bit >>> 6);
+            final long mask = 1L << bit;
+
+            long current;
+            do {
+                current = words.get(word);
+                if ((current & mask) != 0) break;
+            } while (!words.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    boolean mightContain(final Fingerprint key) {
+        for (int i = 0; i < hashes; i++) {
+            final long bit = bit(key, i);
+            if ((words.get((int) (bit >>> 6)) & 1L << bit) == 0) return false;
+        }
+        return true;
+    }
+
+    private long bit(final Fingerprint key, final int i) {
+        return Math.floorMod(key.getHigh() + i * key.getLow(), bits);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recycles direct buffers of one size.  Buffers of any other
+ * size or heap buffers are left to the garbage collector.
+ */
+class BufferPool {
+
+    private final int size;
+    private final int max;
+    private final Queue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    BufferPool(final int size, final int max) {
+        this.size = size;
+        this.max = max;
+    }
+
+    ByteBuffer acquire() {
+        final ByteBuffer buffer = pool.poll();
+        if (buffer == null) return ByteBuffer.allocateDirect(size);
+
+        pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    void release(final ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || buffer.capacity() != size) return;
+
+        if (pooled.incrementAndGet() > max) {
+            pooled.decrementAndGet();
+            return;
+        }
+
+        buffer.clear();
+        pool.offer(buffer);
+    }
+}
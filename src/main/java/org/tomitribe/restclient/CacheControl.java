@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.util.List;
+
+/**
+ * The directives of {@code Cache-Control} headers this client acts on
+ */
+class CacheControl {
+
+    private boolean noStore;
+    private boolean isPrivate;
+    private boolean noCache;
+    private boolean mustRevalidate;
+    private long maxAge = -1;
+    private long staleWhileRevalidate = -1;
+
+    private CacheControl() {
+    }
+
+    static CacheControl parse(final List<String> headers) {
+        final CacheControl cacheControl = new CacheControl();
+        if (headers == null) return cacheControl;
+
+        for (final String header : headers) {
+            for (final String part : header.split(",")) {
+                final String directive = part.trim().toLowerCase();
+                final int eq = directive.indexOf('=');
+                final String name = eq == -1 ? directive : directive.substring(0, eq).trim();
+                final String value = eq == -1 ? null : unquote(directive.substring(eq + 1).trim());
+
+                switch (name) {
+                    case "no-store":
+                        cacheControl.noStore = true;
+                        break;
+                    case "private":
+                        cacheControl.isPrivate = true;
+                        break;
+                    case "no-cache":
+                        cacheControl.noCache = true;
+                        break;
+                    case "must-revalidate":
+                        cacheControl.mustRevalidate = true;
+                        break;
+                    case "max-age":
+                        cacheControl.maxAge = seconds(value);
+                        break;
+                    case "stale-while-revalidate":
+                        cacheControl.staleWhileRevalidate = seconds(value);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return cacheControl;
+    }
+
+    boolean isNoStore() {
+        return noStore;
+    }
+
+    boolean isPrivate() {
+        return isPrivate;
+    }
+
+    boolean isNoCache() {
+        return noCache;
+    }
+
+    boolean isMustRevalidate() {
+        return mustRevalidate;
+    }
+
+    /**
+     * In seconds, or -1 if absent
+     */
+    long getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * In seconds, or -1 if absent
+     */
+    long getStaleWhileRevalidate() {
+        return staleWhileRevalidate;
+    }
+
+    private static String unquote(final String value) {
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    private static long seconds(final String value) {
+        if (value == null) return -1;
+        try {
+            return Math.max(0, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A response held by a {@link ResponseCache} along with what is needed to
+ * tell whether it is still fresh: when it was requested and received, and
+ * the values the request had for the headers named by {@code Vary}.
+ * Times are in milliseconds since the epoch.
+ */
+public class CacheEntry {
+
+    private static final long MAX_HEURISTIC_LIFETIME = TimeUnit.DAYS.toMillis(1);
+
+    private final int status;
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+    private final Map<String, String> varyValues;
+    private final long requestTime;
+    private final long responseTime;
+
+    public CacheEntry(final int status, final Map<String, List<String>> headers, final byte[] body,
+                      final Map<String, String> varyValues, final long requestTime, final long responseTime) {
+        this.status = status;
+        this.headers = Collections.unmodifiableMap(lowerCase(headers));
+        this.body = body;
+        this.varyValues = Collections.unmodifiableMap(new LinkedHashMap<>(varyValues));
+        this.requestTime = requestTime;
+        this.responseTime = responseTime;
+    }
+
+    static CacheEntry of(final Request<?> request, final Response<byte[]> response,
+                         final long requestTime, final long responseTime) {
+        final Map<String, String> varyValues = new LinkedHashMap<>();
+        for (final String name : vary(response.getHeaders())) {
+            final String value = request.getHeaderParams().get(name);
+            if (value != null) varyValues.put(name, value);
+        }
+
+        return new CacheEntry(response.getStatus(), response.getHeaders(), response.getEntity(),
+                varyValues, requestTime, responseTime);
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public Map<String, String> getVaryValues() {
+        return varyValues;
+    }
+
+    public long getRequestTime() {
+        return requestTime;
+    }
+
+    public long getResponseTime() {
+        return responseTime;
+    }
+
+    public String getETag() {
+        return header("etag");
+    }
+
+    public String getLastModified() {
+        return header("last-modified");
+    }
+
+    /**
+     * True if the request has the same values for the headers named by
+     * {@code Vary} as the request this response was cached for
+     */
+    public boolean matches(final Request<?> request) {
+        for (final String name : vary(headers)) {
+            if ("*".equals(name)) return false;
+            if (!Objects.equals(varyValues.get(name), request.getHeaderParams().get(name))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * How long the response is fresh for, from {@code Cache-Control: max-age},
+     * {@code Expires}, or a tenth of the time since {@code Last-Modified}
+     */
+    public long getFreshnessLifetime() {
+        final CacheControl cacheControl = CacheControl.parse(headers.get("cache-control"));
+        if (cacheControl.isNoCache()) return 0;
+        if (cacheControl.getMaxAge() >= 0) return TimeUnit.SECONDS.toMillis(cacheControl.getMaxAge());
+
+        final long date = date();
+        final String expires = header("expires");
+        if (expires != null) {
+            final long time = parseDate(expires);
+            return time == -1 ? 0 : Math.max(0, time - date);
+        }
+
+        final long lastModified = parseDate(getLastModified());
+        if (lastModified != -1 && lastModified < date) {
+            return Math.min(MAX_HEURISTIC_LIFETIME, (date - lastModified) / 10);
+        }
+
+        return 0;
+    }
+
+    /**
+     * The age of the response at the given time, counting the time it
+     * spent in upstream caches as reported by the {@code Age} header
+     */
+    public long getAge(final long now) {
+        final long apparentAge = Math.max(0, responseTime - date());
+        final long ageHeader = TimeUnit.SECONDS.toMillis(parseLong(header("age")));
+        final long initialAge = Math.max(apparentAge, ageHeader + (responseTime - requestTime));
+        return initialAge + Math.max(0, now - responseTime);
+    }
+
+    public boolean isFresh(final long now) {
+        return getAge(now) < getFreshnessLifetime();
+    }
+
+    /**
+     * True if the response is stale but may still be served while it is
+     * revalidated in the background.  The window comes from the response's
+     * {@code stale-while-revalidate} directive, or the default supplied
+     * when it has none.  Responses marked {@code must-revalidate} or
+     * {@code no-cache} are never served stale.
+     */
+    public boolean isStaleWhileRevalidate(final long now, final long defaultWindow) {
+        final CacheControl cacheControl = CacheControl.parse(headers.get("cache-control"));
+        if (cacheControl.isMustRevalidate() || cacheControl.isNoCache()) return false;
+
+        final long window = cacheControl.getStaleWhileRevalidate() >= 0
+                ? TimeUnit.SECONDS.toMillis(cacheControl.getStaleWhileRevalidate())
+                : defaultWindow;
+
+        final long age = getAge(now);
+        final long lifetime = getFreshnessLifetime();
+        return age >= lifetime && age < lifetime + window;
+    }
+
+    /**
+     * Approximate memory held by the entry
+     */
+    public long size() {
+        long size = 64 + (body == null ? 0 : body.length);
+        for (final Map.Entry<String, List<String>> header : headers.entrySet()) {
+            size += 2L * header.getKey().length();
+            for (final String value : header.getValue()) {
+                size += 2L * value.length();
+            }
+        }
+        return size;
+    }
+
+    public Response<byte[]> toResponse() {
+        return new Response<>(status, headers, body);
+    }
+
+    /**
+     * Returns this entry with the headers of a {@code 304 Not Modified}
+     * response applied and its times reset
+     */
+    CacheEntry revalidated(final Response<?> notModified, final long requestTime, final long responseTime) {
+        final Map<String, List<String>> merged = new LinkedHashMap<>(headers);
+        for (final Map.Entry<String, List<String>> header : notModified.getHeaders().entrySet()) {
+            if ("content-length".equals(header.getKey()) || "transfer-encoding".equals(header.getKey())) continue;
+            merged.put(header.getKey(), header.getValue());
+        }
+        return new CacheEntry(status, merged, body, varyValues, requestTime, responseTime);
+    }
+
+    private long date() {
+        final long date = parseDate(header("date"));
+        return date == -1 ? responseTime : date;
+    }
+
+    private String header(final String name) {
+        final List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    private static Map<String, List<String>> lowerCase(final Map<String, List<String>> headers) {
+        final Map<String, List<String>> map = new LinkedHashMap<>();
+        for (final Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (entry.getKey() == null) continue;
+            map.put(entry.getKey().toLowerCase(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+        }
+        return map;
+    }
+
+    private static List<String> vary(final Map<String, List<String>> headers) {
+        final List<String> values = headers.get("vary");
+        if (values == null) return Collections.emptyList();
+
+        final List<String> names = new ArrayList<>();
+        for (final String value : values) {
+            for (final String name : value.split(",")) {
+                if (!name.trim().isEmpty()) names.add(name.trim().toLowerCase());
+            }
+        }
+        return names;
+    }
+
+    static long parseDate(final String value) {
+        if (value == null) return -1;
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    private static long parseLong(final String value) {
+        if (value == null) return 0;
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.net.URI;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves GET requests from a {@link ResponseCache} while the cached
+ * response is fresh according to its {@code Cache-Control}, {@code Expires}
+ * and {@code Age} headers.  Once stale, a response with an {@code ETag} or
+ * {@code Last-Modified} header is revalidated with {@code If-None-Match} or
+ * {@code If-Modified-Since}, and on {@code 304 Not Modified} its cached
+ * body is returned.
+ *
+ * Entries are keyed by the request {@link Fingerprint} with only the
+ * {@code authorization} header included, so callers with different
+ * credentials never see each other's responses.  Headers named by
+ * {@code Vary} must also match; one variant per resource is kept.
+ *
+ * Within its {@code stale-while-revalidate} window a stale response is
+ * returned straight away while a single background request refreshes it.
+ * With a negative TTL configured, {@code 404} and {@code 410} responses are
+ * remembered for that long; a Bloom filter keeps the check cheap for the
+ * common case of a resource that is not missing.
+ *
+ * A successful POST, PUT, PATCH or DELETE removes the cached GET response
+ * for the same resource.  Requests that carry their own conditional
+ * headers bypass the cache.
+ */
+public class CachingRequestExecutor implements RequestExecutor {
+
+    private static final Set<String> KEY_HEADERS = Collections.singleton("authorization");
+    private static final Set<Integer> CACHEABLE = new HashSet<>(Arrays.asList(200, 203, 204, 300, 301, 308, 404, 405, 410, 414, 501));
+    private static final int MAX_MISSING = 10_000;
+
+    private final RequestExecutor delegate;
+    private final ResponseCache cache;
+    private final Clock clock;
+    private final long staleWhileRevalidate;
+    private final long negativeTtl;
+    private final Executor executor;
+
+    private final Set<Fingerprint> refreshing = ConcurrentHashMap.newKeySet();
+    private final Map<Fingerprint, Missing> missing = new ConcurrentHashMap<>();
+    private final Object missingLock = new Object();
+    private volatile BloomFilter missingFilter = new BloomFilter(MAX_MISSING, 0.01);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong revalidated = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    CachingRequestExecutor(final RequestExecutor delegate, final ResponseCache cache, final Clock clock,
+                           final long staleWhileRevalidate, final long negativeTtl, final Executor executor) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.clock = clock;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        this.negativeTtl = negativeTtl;
+        this.executor = executor;
+    }
+
+    public static Builder builder(final RequestExecutor delegate) {
+        return new Builder(delegate);
+    }
+
+    public ResponseCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Responses served from the cache without contacting the server
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Stale responses served while they were refreshed in the background
+     */
+    public long getStale() {
+        return stale.get();
+    }
+
+    /**
+     * Responses served from the cache after a {@code 304 Not Modified}
+     */
+    public long getRevalidated() {
+        return revalidated.get();
+    }
+
+    /**
+     * Cacheable requests that were answered by the server in full
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public URI resolve(final Request<?> request) {
+        return delegate.resolve(request);
+    }
+
+    @Override
+    public Response<byte[]> send(final Request<?> request) {
+        if (!isCacheable(request)) {
+            final Response<byte[]> response = delegate.send(request);
+            invalidate(request, response);
+            return response;
+        }
+
+        final Fingerprint key = key(request);
+        final CacheEntry entry = lookup(request, key);
+        final Response<byte[]> cached = cached(request, key, entry);
+        if (cached != null) return cached;
+
+        final long requestTime = clock.millis();
+        final Response<byte[]> response = delegate.send(conditional(request, entry));
+        return store(request, key, entry, response, requestTime);
+    }
+
+    @Override
+    public CompletableFuture<Response<byte[]>> sendAsync(final Request<?> request) {
+        if (!isCacheable(request)) {
+            return delegate.sendAsync(request).thenApply(response -> {
+                invalidate(request, response);
+                return response;
+            });
+        }
+
+        final Fingerprint key = key(request);
+        final CacheEntry entry = lookup(request, key);
+        final Response<byte[]> cached = cached(request, key, entry);
+        if (cached != null) return CompletableFuture.completedFuture(cached);
+
+        final long requestTime = clock.millis();
+        return delegate.sendAsync(conditional(request, entry))
+                .thenApply(response -> store(request, key, entry, response, requestTime));
+    }
+
+    private CacheEntry lookup(final Request<?> request, final Fingerprint key) {
+        final CacheEntry entry = cache.get(key);
+        return entry != null && entry.matches(request) ? entry : null;
+    }
+
+    /**
+     * Returns the response to serve without waiting on the server, or null
+     */
+    private Response<byte[]> cached(final Request<?> request, final Fingerprint key, final CacheEntry entry) {
+        final CacheControl cacheControl = cacheControl(request);
+        if (cacheControl.isNoCache() || cacheControl.getMaxAge() == 0) return null;
+
+        final Response<byte[]> notFound = missing(request, key);
+        if (notFound != null) {
+            hits.incrementAndGet();
+            return notFound;
+        }
+
+        if (entry == null) return null;
+
+        final long now = clock.millis();
+        if (entry.isFresh(now)) {
+            hits.incrementAndGet();
+            return entry.toResponse();
+        }
+
+        if (entry.isStaleWhileRevalidate(now, staleWhileRevalidate)) {
+            stale.incrementAndGet();
+            refresh(request, key, entry);
+            return entry.toResponse();
+        }
+
+        return null;
+    }
+
+    /**
+     * Revalidates the entry in the background unless that is already underway
+     */
+    private void refresh(final Request<?> request, final Fingerprint key, final CacheEntry entry) {
+        if (!refreshing.add(key)) return;
+
+        try {
+            executor.execute(() -> {
+                final long requestTime = clock.millis();
+                try {
+                    delegate.sendAsync(conditional(request, entry)).whenComplete((response, throwable) -> {
+                        try {
+                            if (response != null) store(request, key, entry, response, requestTime);
+                        } finally {
+                            refreshing.remove(key);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.remove(key);
+        }
+    }
+
+    private Response<byte[]> store(final Request<?> request, final Fingerprint key, final CacheEntry entry,
+                                   final Response<byte[]> response, final long requestTime) {
+        final long responseTime = clock.millis();
+
+        if (entry != null && response.getStatus() == 304) {
+            revalidated.incrementAndGet();
+            final CacheEntry updated = entry.revalidated(response, requestTime, responseTime);
+            cache.put(key, updated);
+            return updated.toResponse();
+        }
+
+        misses.incrementAndGet();
+        final CacheEntry updated = CacheEntry.of(request, response, requestTime, responseTime);
+
+        if (negativeTtl > 0 && isMissing(request, response, updated)) {
+            remember(key, updated, response, responseTime + negativeTtl);
+        }
+
+        if (isCacheable(request, response, updated)) {
+            cache.put(key, updated);
+        } else if (entry != null && (response.getStatus() < 400 || isNoStore(response))) {
+            // an error leaves the stale entry to be served again
+            cache.remove(key);
+        }
+        return response;
+    }
+
+    private Response<byte[]> missing(final Request<?> request, final Fingerprint key) {
+        if (negativeTtl <= 0 || !missingFilter.mightContain(key)) return null;
+
+        final Missing notFound = missing.get(key);
+        if (notFound == null || !notFound.entry.matches(request)) return null;
+
+        if (clock.millis() >= notFound.expires) {
+            missing.remove(key, notFound);
+            return null;
+        }
+        return notFound.response;
+    }
+
+    /**
+     * Holds the lock while adding so no key is added to a filter that is
+     * being replaced, which would lose it
+     */
+    private void remember(final Fingerprint key, final CacheEntry entry, final Response<byte[]> response,
+                          final long expires) {
+        synchronized (missingLock) {
+            if (missing.size() >= MAX_MISSING) {
+                // a Bloom filter cannot forget, so it is rebuilt from what is left
+                final long now = clock.millis();
+                missing.values().removeIf(notFound -> now >= notFound.expires);
+                if (missing.size() >= MAX_MISSING / 2) missing.clear();
+
+                final BloomFilter filter = new BloomFilter(MAX_MISSING, 0.01);
+                for (final Fingerprint fingerprint : missing.keySet()) {
+                    filter.add(fingerprint);
+                }
+                missingFilter = filter;
+            }
+
+            missing.put(key, new Missing(entry, response, expires));
+            missingFilter.add(key);
+        }
+    }
+
+    private static Request<?> conditional(final Request<?> request, final CacheEntry entry) {
+        if (entry == null) return request;
+
+        Request<?> conditional = request;
+        if (entry.getETag() != null) conditional = conditional.header("If-None-Match", entry.getETag());
+        if (entry.getLastModified() != null) conditional = conditional.header("If-Modified-Since", entry.getLastModified());
+        return conditional;
+    }
+
+    /**
+     * Drops the cached response for a resource that was just changed
+     */
+    private void invalidate(final Request<?> request, final Response<byte[]> response) {
+        if (!isUnsafe(request.getMethod())) return;
+        if (response.getStatus() < 200 || response.getStatus() >= 400) return;
+
+        final Fingerprint key = key(request.toBuilder().method(Request.Method.GET).body((String) null).build());
+        cache.remove(key);
+        missing.remove(key);
+    }
+
+    private static boolean isUnsafe(final Request.Method method) {
+        return method == Request.Method.POST || method == Request.Method.PUT
+                || method == Request.Method.PATCH || method == Request.Method.DELETE;
+    }
+
+    private static boolean isCacheable(final Request<?> request) {
+        if (request.getMethod() != null && request.getMethod() != Request.Method.GET) return false;
+
+        final Map<String, String> headers = request.getHeaderParams();
+        if (headers.containsKey("if-none-match") || headers.containsKey("if-modified-since")) return false;
+
+        return !cacheControl(request).isNoStore();
+    }
+
+    private static boolean isNoStore(final Response<byte[]> response) {
+        return CacheControl.parse(response.getHeaders().get("cache-control")).isNoStore();
+    }
+
+    private static boolean isCacheable(final Request<?> request, final Response<byte[]> response, final CacheEntry entry) {
+        if (!CACHEABLE.contains(response.getStatus())) return false;
+        if (isNoStore(response)) return false;
+        if (!entry.matches(request)) return false; // Vary: *
+
+        return entry.getFreshnessLifetime() > 0 || entry.getETag() != null || entry.getLastModified() != null;
+    }
+
+    /**
+     * A 404 or 410 that may be remembered.  Only the variant that was
+     * requested is remembered, and never one the server asked not to store.
+     */
+    private static boolean isMissing(final Request<?> request, final Response<byte[]> response, final CacheEntry entry) {
+        if (response.getStatus() != 404 && response.getStatus() != 410) return false;
+
+        final CacheControl cacheControl = CacheControl.parse(response.getHeaders().get("cache-control"));
+        if (cacheControl.isNoStore() || cacheControl.isPrivate()) return false;
+
+        return entry.matches(request); // Vary: *
+    }
+
+    private static CacheControl cacheControl(final Request<?> request) {
+        final String header = request.getHeaderParams().get("cache-control");
+        return CacheControl.parse(header == null ? null : Collections.singletonList(header));
+    }
+
+    private static Fingerprint key(final Request<?> request) {
+        return request.fingerprint(KEY_HEADERS);
+    }
+
+    private static class Missing {
+        private final CacheEntry entry;
+        private final Response<byte[]> response;
+        private final long expires;
+
+        Missing(final CacheEntry entry, final Response<byte[]> response, final long expires) {
+            this.entry = entry;
+            this.response = response;
+            this.expires = expires;
+        }
+    }
+
+    public static class Builder {
+        private final RequestExecutor delegate;
+        private ResponseCache cache;
+        private Clock clock = Clock.systemUTC();
+        private long staleWhileRevalidate;
+        private long negativeTtl;
+        private Executor executor;
+
+        Builder(final RequestExecutor delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * Defaults to a {@link MemoryResponseCache} of 16MB
+         */
+        public Builder cache(final ResponseCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        public Builder clock(final Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * How long past its freshness a response without its own
+         * {@code stale-while-revalidate} directive may be served while
+         * it is refreshed.  Zero, the default, only honours the directive.
+         */
+        public Builder staleWhileRevalidate(final long duration, final TimeUnit unit) {
+            this.staleWhileRevalidate = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * How long {@code 404} and {@code 410} responses are served from
+         * memory.  Zero, the default, turns this off.
+         */
+        public Builder negativeTtl(final long duration, final TimeUnit unit) {
+            this.negativeTtl = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Executor that background refreshes are started on
+         */
+        public Builder executor(final Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public CachingRequestExecutor build() {
+            return new CachingRequestExecutor(delegate,
+                    cache != null ? cache : new MemoryResponseCache(16 * 1024 * 1024),
+                    clock, staleWhileRevalidate, negativeTtl,
+                    executor != null ? executor : RequestThreads.executor());
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file recording where a paged crawl should resume.  Each
+ * record holds the request for the next page to fetch: its method, path,
+ * path params, query params and headers.  Records are written with a
+ * checksum and forced to disk, so a record torn by a crash is ignored and
+ * the previous one is used.  The file is rewritten down to its last record
+ * once it passes {@code maxBytes}.
+ *
+ * Credentials are not written to disk; the {@code authorization},
+ * {@code proxy-authorization} and {@code cookie} headers are left out
+ * unless a different set of excluded headers is supplied.  Nor are the
+ * request's {@link RequestDefaults}.  On resume both come from the live
+ * request.
+ */
+public class Checkpoint {
+
+    private static final String VERSION = "1";
+    private static final String COMPLETE = "complete";
+
+    private final File file;
+    private final Set<String> excludedHeaders;
+    private final long maxBytes;
+
+    // a lock rather than synchronized, so virtual threads are not pinned while writing
+    private final Lock lock = new ReentrantLock();
+
+    public Checkpoint(final File file) {
+        this(file, Arrays.asList("authorization", "proxy-authorization", "cookie"), 64 * 1024);
+    }
+
+    public Checkpoint(final File file, final List<String> excludedHeaders, final long maxBytes) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.excludedHeaders = new HashSet<>();
+        for (final String header : excludedHeaders) {
+            this.excludedHeaders.add(header.toLowerCase());
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the request recorded last, or null if there is none or the
+     * crawl was completed.
+     */
+    public Request<?> load() {
+        final String[] record = last();
+        if (record == null || COMPLETE.equals(record[1])) return null;
+
+        final Request.Builder<Object> builder = Request.builder()
+                .path(record[2].isEmpty() ? null : decode(record[2]))
+                .pathParams(decodeMap(record[3]))
+                .queryValues(decodeValues(record[4]))
+                .headerValues(decodeValues(record[5]));
+
+        if (!record[1].isEmpty()) builder.method(Request.Method.valueOf(record[1]));
+
+        return builder.build();
+    }
+
+    public boolean isComplete() {
+        final String[] record = last();
+        return record != null && COMPLETE.equals(record[1]);
+    }
+
+    public void save(final Request<?> request) {
+        // only the request's own params; the defaults come from the live request on resume
+        final Request<?> own = request.defaults(null);
+
+        final Map<String, List<String>> headers = new LinkedHashMap<>(own.getHeaderValues());
+        headers.keySet().removeAll(excludedHeaders);
+
+        append(VERSION,
+                request.getMethod() == null ? "" : request.getMethod().name(),
+                encode(request.getPath()),
+                encodeMap(request.getPathParams()),
+                encodeValues(own.getQueryValues()),
+                encodeValues(headers));
+    }
+
+    /**
+     * Records that the crawl reached the last page
+     */
+    public void complete() {
+        append(VERSION, COMPLETE, "", "", "", "");
+    }
+
+    public void reset() {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete checkpoint " + file.getAbsolutePath(), e);
+        }
+    }
+
+    private void append(final String... fields) {
+        final String line = line(fields);
+        final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+
+        lock.lock();
+        try {
+            if (file.exists() && file.length() + bytes.length > maxBytes) {
+                rewrite(line);
+                return;
+            }
+
+            try (final FileChannel channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                final long end = channel.size();
+
+                // a record torn by a crash has no newline, so start a new line rather than extend it
+                final ByteBuffer last = ByteBuffer.allocate(1);
+                if (end > 0 && channel.read(last, end - 1) == 1 && last.get(0) != '\n') {
+                    channel.write(ByteBuffer.wrap(new byte[]{'\n'}), end);
+                }
+
+                channel.write(ByteBuffer.wrap(bytes), channel.size());
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write checkpoint " + file.getAbsolutePath(), e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the file with one holding only the latest record
+     */
+    private void rewrite(final String line) throws IOException {
+        final File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+
+        try (final FileChannel channel = FileChannel.open(tmp.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+            channel.force(false);
+        }
+
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private String[] last() {
+        if (!file.exists()) return null;
+
+        final List<String> lines;
+        try {
+            lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read checkpoint " + file.getAbsolutePath(), e);
+        }
+
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            final String[] record = parse(lines.get(i));
+            if (record != null) return record;
+        }
+
+        return null;
+    }
+
+    private static String line(final String... fields) {
+        final String record = String.join("\t", fields);
+        return record + "\t" + crc(record) + "\n";
+    }
+
+    /**
+     * Returns the fields of a record, or null if the record is torn or corrupt
+     */
+    private static String[] parse(final String line) {
+        final int tab = line.lastIndexOf('\t');
+        if (tab == -1) return null;
+
+        final String record = line.substring(0, tab);
+        if (!crc(record).equals(line.substring(tab + 1))) return null;
+
+        final String[] fields = record.split("\t", -1);
+        if (fields.length != 6 || !VERSION.equals(fields[0])) return null;
+        return fields;
+    }
+
+    private static String crc(final String record) {
+        final CRC32 crc = new CRC32();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    private static String encodeMap(final Map<String, String> map) {
+        final StringBuilder sb = new StringBuilder();
+        for (final Map.Entry<String, String> entry : map.entrySet()) {
+            if (sb.length() > 0) sb.append('&');
+            sb.append(encode(entry.getKey())).append('=').append(encode(entry.getValue()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes a param with several values as repeated pairs
+     */
+    private static String encodeValues(final Map<String, List<String>> map) {
+        final StringBuilder sb = new StringBuilder();
+        for (final Map.Entry<String, List<String>> entry : map.entrySet()) {
+            for (final String value : entry.getValue()) {
+                if (sb.length() > 0) sb.append('&');
+                sb.append(encode(entry.getKey())).append('=').append(encode(value));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, List<String>> decodeValues(final String encoded) {
+        final Map<String, List<String>> map = new LinkedHashMap<>();
+        if (encoded.isEmpty()) return map;
+
+        for (final String pair : encoded.split("&")) {
+            final int eq = pair.indexOf('=');
+            map.computeIfAbsent(decode(pair.substring(0, eq)), name -> new ArrayList<>())
+                    .add(decode(pair.substring(eq + 1)));
+        }
+        return map;
+    }
+
+    private static Map<String, String> decodeMap(final String encoded) {
+        final Map<String, String> map = new LinkedHashMap<>();
+        if (encoded.isEmpty()) return map;
+
+        for (final String pair : encoded.split("&")) {
+            final int eq = pair.indexOf('=');
+            map.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+        }
+        return map;
+    }
+
+    private static String encode(final String value) {
+        if (value == null) return "";
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(final String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Lets concurrent identical GET, HEAD and OPTIONS requests share one
+ * execution.  The first caller sends the request; callers arriving while it
+ * is in flight wait for and receive the same response, or the same failure.
+ * Nothing is kept once the request completes.
+ *
+ * Requests are identical when they have the same {@link Fingerprint},
+ * which covers the method, path, params, body and key headers.  By
+ * default every header is part of the key; restrict it with
+ * {@link Builder#keyHeaders(String...)}, keeping any header that changes
+ * the response, such as {@code authorization}.
+ */
+public class CoalescingRequestExecutor implements RequestExecutor {
+
+    private final RequestExecutor delegate;
+    private final Set<String> keyHeaders;
+    private final ConcurrentMap<Fingerprint, CompletableFuture<Response<byte[]>>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    CoalescingRequestExecutor(final RequestExecutor delegate, final Set<String> keyHeaders) {
+        this.delegate = delegate;
+        this.keyHeaders = keyHeaders;
+    }
+
+    public static Builder builder(final RequestExecutor delegate) {
+        return new Builder(delegate);
+    }
+
+    /**
+     * Number of requests that were answered by another caller's execution
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    @Override
+    public URI resolve(final Request<?> request) {
+        return delegate.resolve(request);
+    }
+
+    @Override
+    public Response<byte[]> send(final Request<?> request) {
+        if (!isIdempotent(request)) return delegate.send(request);
+
+        final Fingerprint key = key(request);
+        final CompletableFuture<Response<byte[]>> flight = new CompletableFuture<>();
+        final CompletableFuture<Response<byte[]>> existing = inFlight.putIfAbsent(key, flight);
+
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw e;
+            }
+        }
+
+        try {
+            final Response<byte[]> response = delegate.send(request);
+            flight.complete(response);
+            return response;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Response<byte[]>> sendAsync(final Request<?> request) {
+        if (!isIdempotent(request)) return delegate.sendAsync(request);
+
+        final Fingerprint key = key(request);
+        final CompletableFuture<Response<byte[]>> flight = new CompletableFuture<>();
+        final CompletableFuture<Response<byte[]>> existing = inFlight.putIfAbsent(key, flight);
+
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing.thenApply(Function.identity());
+        }
+
+        try {
+            delegate.sendAsync(request).whenComplete((response, throwable) -> {
+                inFlight.remove(key, flight);
+                if (throwable != null) {
+                    flight.completeExceptionally(throwable instanceof CompletionException ? throwable.getCause() : throwable);
+                } else {
+                    flight.complete(response);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+        }
+
+        // a copy, so one caller cancelling does not cancel the others
+        return flight.thenApply(Function.identity());
+    }
+
+    private static boolean isIdempotent(final Request<?> request) {
+        final Request.Method method = request.getMethod();
+        return method == null || method == Request.Method.GET
+                || method == Request.Method.HEAD || method == Request.Method.OPTIONS;
+    }
+
+    private Fingerprint key(final Request<?> request) {
+        return keyHeaders == null ? request.fingerprint() : request.fingerprint(keyHeaders);
+    }
+
+    public static class Builder {
+        private final RequestExecutor delegate;
+        private Set<String> keyHeaders;
+
+        Builder(final RequestExecutor delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * Only these headers are compared when matching requests
+         */
+        public Builder keyHeaders(final String... names) {
+            return keyHeaders(Arrays.asList(names));
+        }
+
+        public Builder keyHeaders(final Collection<String> names) {
+            keyHeaders = new TreeSet<>();
+            for (final String name : names) {
+                keyHeaders.add(name.toLowerCase());
+            }
+            return this;
+        }
+
+        public CoalescingRequestExecutor build() {
+            return new CoalescingRequestExecutor(delegate, keyHeaders);
+        }
+    }
+}
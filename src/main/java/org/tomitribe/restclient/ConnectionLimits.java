@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caps the number of requests in flight, in total and per host.
+ * A limit of zero or less means unlimited.
+ */
+class ConnectionLimits {
+
+    private final int maxPerHost;
+    private final Semaphore total;
+    private final ConcurrentMap<String, Semaphore> hosts = new ConcurrentHashMap<>();
+
+    ConnectionLimits(final int maxConnections, final int maxPerHost) {
+        this.maxPerHost = maxPerHost;
+        this.total = maxConnections > 0 ? new Semaphore(maxConnections) : null;
+    }
+
+    void acquire(final String host) {
+        try {
+            if (total != null) total.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a connection", e);
+        }
+
+        try {
+            final Semaphore semaphore = host(host);
+            if (semaphore != null) semaphore.acquire();
+        } catch (InterruptedException e) {
+            if (total != null) total.release();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a connection to " + host, e);
+        }
+    }
+
+    void release(final String host) {
+        final Semaphore semaphore = host(host);
+        if (semaphore != null) semaphore.release();
+        if (total != null) total.release();
+    }
+
+    private Semaphore host(final String host) {
+        if (maxPerHost <= 0) return null;
+        return hosts.computeIfAbsent(host, h -> new Semaphore(maxPerHost));
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Calls the default methods of client interfaces from the proxy.
+ * Java 8 has no public way to get a lookup that can call them, so the
+ * private Lookup constructor is used there and privateLookupIn on later
+ * versions.  The Java 21 version uses InvocationHandler.invokeDefault.
+ */
+class DefaultMethods {
+
+    private DefaultMethods() {
+    }
+
+    static Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        final Class<?> type = method.getDeclaringClass();
+        return lookup(type).unreflectSpecial(method, type)
+                .asFixedArity()
+                .bindTo(proxy)
+                .invokeWithArguments(args == null ? new Object[0] : args);
+    }
+
+    private static MethodHandles.Lookup lookup(final Class<?> type) throws Throwable {
+        final Method privateLookupIn;
+        try {
+            privateLookupIn = MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+        } catch (NoSuchMethodException e) {
+            // Java 8
+            final Constructor<MethodHandles.Lookup> constructor =
+                    MethodHandles.Lookup.class.getDeclaredConstructor(Class.class, int.class);
+            constructor.setAccessible(true);
+            return constructor.newInstance(type, MethodHandles.Lookup.PRIVATE);
+        }
+
+        try {
+            return (MethodHandles.Lookup) privateLookupIn.invoke(null, type, MethodHandles.lookup());
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,478 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * {@link ResponseCache} kept in memory-mapped segment files so that a
+ * restarted JVM starts with a warm cache.
+ *
+ * Records hold the whole {@link Fingerprint#toBytes() key encoding}, not
+ * just its hash, and an entry is only returned if its stored key is the
+ * one asked for.
+ *
+ * Entries and removals are appended to the newest segment as records with
+ * a checksum.  On open the segments are scanned in order to rebuild the
+ * index, and scanning a segment stops at the first torn or corrupt record,
+ * so a crash loses at most the records being written.  Writes go through
+ * the page cache; they survive the JVM dying but not necessarily the
+ * machine losing power.
+ *
+ * When the segments would grow past {@code maxBytes}, the least recently
+ * used entries are dropped until the rest fill half of it, and those are
+ * copied into new segments, least recently used first, before the old
+ * segments are deleted.  Disk use can briefly reach one and a half times
+ * {@code maxBytes} while this happens.
+ */
+public class DiskResponseCache implements ResponseCache, Closeable {
+
+    private static final int MAGIC = 0x52435232;
+    private static final int HEADER = 12;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final String SUFFIX = ".segment";
+
+    private final File directory;
+    private final long maxBytes;
+    private final int segmentSize;
+
+    private final Lock lock = new ReentrantLock();
+    private final LinkedHashMap<Fingerprint, Location> index = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<Segment> segments = new ArrayList<>();
+    private long live;
+    private boolean compacting;
+
+    public DiskResponseCache(final File directory, final long maxBytes) {
+        this(directory, maxBytes, (int) Math.min(16 * 1024 * 1024, Math.max(64 * 1024, maxBytes / 8)));
+    }
+
+    public DiskResponseCache(final File directory, final long maxBytes, final int segmentSize) {
+        if (maxBytes < 2L * segmentSize) {
+            throw new IllegalArgumentException("maxBytes must be at least two segments: " + maxBytes + " < 2 * " + segmentSize);
+        }
+
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.segmentSize = segmentSize;
+
+        try {
+            Files.createDirectories(directory.toPath());
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open cache " + directory.getAbsolutePath(), e);
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public CacheEntry get(final Fingerprint key) {
+        lock.lock();
+        try {
+            final Location location = index.get(key);
+            return location == null ? null : decode(key, location.read());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(final Fingerprint key, final CacheEntry entry) {
+        final byte[] payload = encode(key, entry);
+
+        lock.lock();
+        try {
+            if (HEADER + payload.length > segmentSize) {
+                remove(key);
+                return;
+            }
+
+            index(key, append(payload));
+
+            final Iterator<Location> eldest = index.values().iterator();
+            while (live > maxBytes / 2 && eldest.hasNext()) {
+                live -= eldest.next().length;
+                eldest.remove();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write cache " + directory.getAbsolutePath(), e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(final Fingerprint key) {
+        lock.lock();
+        try {
+            final Location removed = index.remove(key);
+            if (removed != null) live -= removed.length;
+
+            // even when not indexed: an evicted entry's record is still on disk until compaction
+            append(tombstone(key));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write cache " + directory.getAbsolutePath(), e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Bytes held by the segment files
+     */
+    public long getDiskBytes() {
+        lock.lock();
+        try {
+            long bytes = 0;
+            for (final Segment segment : segments) {
+                bytes += segment.map.capacity();
+            }
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes the segments to the storage device
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            for (final Segment segment : segments) {
+                segment.map.force();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void open() throws IOException {
+        final File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files != null) {
+            final List<Long> ids = new ArrayList<>();
+            for (final File file : files) {
+                try {
+                    ids.add(Long.parseLong(file.getName().substring(0, file.getName().length() - SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+            ids.sort(Long::compare);
+
+            for (final long id : ids) {
+                final Segment segment = new Segment(id, file(id), 0);
+                segments.add(segment);
+                scan(segment);
+            }
+        }
+
+        final Iterator<Location> eldest = index.values().iterator();
+        while (live > maxBytes / 2 && eldest.hasNext()) {
+            live -= eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Replays the records of a segment into the index.  The segment's
+     * write position is left at the first record that is not intact.
+     */
+    private void scan(final Segment segment) {
+        final ByteBuffer map = segment.map.duplicate();
+        int position = 0;
+
+        while (position + HEADER <= map.capacity()) {
+            if (map.getInt(position) != MAGIC) break;
+
+            final int length = map.getInt(position + 4);
+            if (length < 5 || position + HEADER + length > map.capacity()) break;
+
+            final byte[] payload = new byte[length];
+            map.position(position + HEADER);
+            map.get(payload);
+            if (crc(payload) != map.getInt(position + 8)) break;
+
+            final ByteBuffer record = ByteBuffer.wrap(payload);
+            final byte type = record.get();
+            final int keyLength = record.getInt();
+            if (keyLength < 0 || keyLength > record.remaining()) break;
+            final byte[] encoded = new byte[keyLength];
+            record.get(encoded);
+            final Fingerprint key = Fingerprint.of(encoded);
+
+            if (type == PUT) {
+                index(key, new Location(segment, position, HEADER + length));
+            } else {
+                final Location removed = index.remove(key);
+                if (removed != null) live -= removed.length;
+            }
+
+            position += HEADER + length;
+        }
+
+        segment.position = position;
+    }
+
+    private void index(final Fingerprint key, final Location location) {
+        final Location previous = index.put(key, location);
+        if (previous != null) live -= previous.length;
+        live += location.length;
+    }
+
+    private Location append(final byte[] payload) throws IOException {
+        final int length = HEADER + payload.length;
+
+        Segment active = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (active == null || active.position + length > active.map.capacity()) {
+            if (!compacting && (segments.size() + 1L) * segmentSize > maxBytes) compact();
+            active = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (active == null || active.position + length > active.map.capacity()) active = newSegment();
+        }
+
+        final int offset = active.position;
+        final ByteBuffer map = active.map.duplicate();
+        map.position(offset + HEADER);
+        map.put(payload);
+        map.putInt(offset + 4, payload.length);
+        map.putInt(offset + 8, crc(payload));
+        // the magic number last, so a record is only ever seen once complete
+        map.putInt(offset, MAGIC);
+
+        active.position += length;
+        return new Location(active, offset, length);
+    }
+
+    /**
+     * Copies the live records into new segments and deletes the old ones
+     */
+    private void compact() throws IOException {
+        final List<Segment> old = new ArrayList<>(segments);
+        segments.clear();
+
+        final Map<Fingerprint, byte[]> records = new LinkedHashMap<>();
+        for (final Map.Entry<Fingerprint, Location> entry : index.entrySet()) {
+            records.put(entry.getKey(), entry.getValue().payload());
+        }
+
+        index.clear();
+        live = 0;
+
+        newSegment(old.isEmpty() ? 0 : old.get(old.size() - 1).id + 1);
+        compacting = true;
+        try {
+            for (final Map.Entry<Fingerprint, byte[]> record : records.entrySet()) {
+                index(record.getKey(), append(record.getValue()));
+            }
+        } finally {
+            compacting = false;
+        }
+
+        for (final Segment segment : old) {
+            Files.deleteIfExists(segment.file.toPath());
+        }
+    }
+
+    private Segment newSegment() throws IOException {
+        return newSegment(segments.isEmpty() ? 0 : segments.get(segments.size() - 1).id + 1);
+    }
+
+    private Segment newSegment(final long id) throws IOException {
+        final Segment segment = new Segment(id, file(id), segmentSize);
+        segments.add(segment);
+        return segment;
+    }
+
+    private File file(final long id) {
+        return new File(directory, String.format("%016d%s", id, SUFFIX));
+    }
+
+    private static int crc(final byte[] payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] tombstone(final Fingerprint key) {
+        final byte[] encoded = key.toBytes();
+        return ByteBuffer.allocate(5 + encoded.length).put(REMOVE).putInt(encoded.length).put(encoded).array();
+    }
+
+    private static byte[] encode(final Fingerprint key, final CacheEntry entry) {
+        final byte[] encoded = key.toBytes();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + encoded.length
+                + (entry.getBody() == null ? 0 : entry.getBody().length));
+
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(PUT);
+            out.writeInt(encoded.length);
+            out.write(encoded);
+            out.writeInt(entry.getStatus());
+            out.writeLong(entry.getRequestTime());
+            out.writeLong(entry.getResponseTime());
+
+            out.writeInt(entry.getHeaders().size());
+            for (final Map.Entry<String, List<String>> header : entry.getHeaders().entrySet()) {
+                writeString(out, header.getKey());
+                out.writeInt(header.getValue().size());
+                for (final String value : header.getValue()) {
+                    writeString(out, value);
+                }
+            }
+
+            out.writeInt(entry.getVaryValues().size());
+            for (final Map.Entry<String, String> vary : entry.getVaryValues().entrySet()) {
+                writeString(out, vary.getKey());
+                writeString(out, vary.getValue());
+            }
+
+            final byte[] body = entry.getBody();
+            out.writeInt(body == null ? -1 : body.length);
+            if (body != null) out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns the entry, or null if the record is not for this key
+     */
+    private static CacheEntry decode(final Fingerprint key, final ByteBuffer record) {
+        record.position(1);
+        final byte[] stored = new byte[record.getInt()];
+        record.get(stored);
+        if (!key.equals(Fingerprint.of(stored))) return null;
+
+        final int status = record.getInt();
+        final long requestTime = record.getLong();
+        final long responseTime = record.getLong();
+
+        final Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (int i = record.getInt(); i > 0; i--) {
+            final String name = readString(record);
+            final List<String> values = new ArrayList<>();
+            for (int j = record.getInt(); j > 0; j--) {
+                values.add(readString(record));
+            }
+            headers.put(name, values);
+        }
+
+        final Map<String, String> varyValues = new LinkedHashMap<>();
+        for (int i = record.getInt(); i > 0; i--) {
+            varyValues.put(readString(record), readString(record));
+        }
+
+        final int length = record.getInt();
+        final byte[] body = length == -1 ? null : new byte[length];
+        if (body != null) record.get(body);
+
+        return new CacheEntry(status, headers, body, varyValues, requestTime, responseTime);
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer record) {
+        final byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class Segment {
+        private final long id;
+        private final File file;
+        private final MappedByteBuffer map;
+        private int position;
+
+        /**
+         * Maps the file, creating it with the given size if it is new
+         */
+        Segment(final long id, final File file, final int size) throws IOException {
+            this.id = id;
+            this.file = file;
+            try (final FileChannel channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+            }
+        }
+    }
+
+    private static class Location {
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+
+        Location(final Segment segment, final int offset, final int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * The record's payload, without the header
+         */
+        ByteBuffer read() {
+            final ByteBuffer map = segment.map.duplicate();
+            map.position(offset + HEADER);
+            map.limit(offset + length);
+            return map.slice();
+        }
+
+        byte[] payload() {
+            final byte[] payload = new byte[length - HEADER];
+            read().get(payload);
+            return payload;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns raw response bodies into the response type of a request
+ */
+class Entities {
+
+    private Entities() {
+    }
+
+    static <T> T read(final Class<T> type, final byte[] body) {
+        if (type == null || Void.class.equals(type) || Void.TYPE.equals(type)) return null;
+        if (byte[].class.equals(type)) return type.cast(body);
+        if (body == null || body.length == 0) return null;
+        if (String.class.equals(type)) return type.cast(new String(body, StandardCharsets.UTF_8));
+
+        return JsonMarshalling.unmarshal(type, new String(body, StandardCharsets.UTF_8));
+    }
+
+    static <T> T entity(final Request<T> request, final URI uri, final Response<byte[]> response) {
+        if (!response.isSuccessful()) {
+            final byte[] body = response.getEntity();
+            throw new HttpStatusException(request.getMethod(), uri, response.getStatus(), response.getHeaders(),
+                    body == null ? null : new String(body, StandardCharsets.UTF_8));
+        }
+
+        return read(request.getResponseType(), response.getEntity());
+    }
+}
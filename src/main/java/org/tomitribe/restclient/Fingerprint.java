@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Canonical form of the parts of a {@link Request} that decide what is
+ * sent: the method, path template, path and query params in name order,
+ * headers in name order, the body and the query expansion when it is not
+ * CSV.  Requests that differ only in the order their params were added
+ * have the same fingerprint.
+ *
+ * The fingerprint keeps the length-prefixed encoding of those parts, which
+ * is the same in every JVM and can be stored, and a 128-bit MurmurHash3
+ * (x64) of it.  The hash is only used to find keys quickly; two
+ * fingerprints are equal only if their encodings are, so requests whose
+ * hashes collide are never taken for one another.
+ */
+public final class Fingerprint {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private final long high;
+    private final long low;
+    private final byte[] encoded;
+
+    Fingerprint(final long high, final long low, final byte[] encoded) {
+        this.high = high;
+        this.low = low;
+        this.encoded = encoded;
+    }
+
+    /**
+     * Returns the fingerprint of an encoding from {@link #toBytes()}
+     */
+    static Fingerprint of(final byte[] encoded) {
+        return hash(encoded, encoded.length);
+    }
+
+    /**
+     * @param headers the header names to include, or null for all headers
+     */
+    static Fingerprint of(final Request<?> request, final Collection<String> headers) {
+        final Encoder encoder = new Encoder();
+
+        encoder.string(request.getMethod() == null ? Request.Method.GET.name() : request.getMethod().name());
+        encoder.string(request.getPath());
+        encoder.map(request.getPathParams(), null);
+        if (request.getExpansion() == Request.Expansion.MULTI) {
+            // each value is its own query param, so the values must be hashed separately
+            encoder.string(Request.Expansion.MULTI.name());
+            encoder.values(request.getQueryValues());
+        } else {
+            encoder.map(request.getQueryParams(), null);
+        }
+        encoder.map(request.getHeaderParams(), headers);
+        encoder.string(request.getBody());
+
+        return hash(encoder.bytes, encoder.length);
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     * The canonical encoding of the request
+     */
+    public byte[] toBytes() {
+        return encoded.clone();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Fingerprint)) return false;
+        final Fingerprint that = (Fingerprint) o;
+        return high == that.high && low == that.low && Arrays.equals(encoded, that.encoded);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (low ^ (low >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+
+    static Fingerprint hash(final byte[] data, final int length) {
+        long h1 = 0;
+        long h2 = 0;
+
+        final ByteBuffer buffer = ByteBuffer.wrap(data, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        final int blocks = length / 16;
+        for (int i = 0; i < blocks; i++) {
+            final long k1 = buffer.getLong(i * 16);
+            final long k2 = buffer.getLong(i * 16 + 8);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+        final int tail = blocks * 16;
+        for (int i = length - tail - 1; i >= 8; i--) {
+            k2 = k2 << 8 | (data[tail + i] & 0xFFL);
+        }
+        for (int i = Math.min(length - tail, 8) - 1; i >= 0; i--) {
+            k1 = k1 << 8 | (data[tail + i] & 0xFFL);
+        }
+        h1 ^= mixK1(k1);
+        h2 ^= mixK2(k2);
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+
+        return new Fingerprint(h1, h2, Arrays.copyOf(data, length));
+    }
+
+    private static long mixK1(final long k) {
+        return Long.rotateLeft(k * C1, 31) * C2;
+    }
+
+    private static long mixK2(final long k) {
+        return Long.rotateLeft(k * C2, 33) * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * Writes each value as its length followed by its UTF-8 bytes
+     * so that no two different requests encode the same way
+     */
+    private static class Encoder {
+        private byte[] bytes = new byte[256];
+        private int length;
+
+        void string(final String value) {
+            if (value == null) {
+                integer(-1);
+                return;
+            }
+
+            final byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            integer(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, length, utf8.length);
+            length += utf8.length;
+        }
+
+        void map(final Map<String, String> map, final Collection<String> names) {
+            final TreeMap<String, String> sorted = new TreeMap<>(map);
+            if (names != null) sorted.keySet().retainAll(names);
+
+            integer(sorted.size());
+            for (final Map.Entry<String, String> entry : sorted.entrySet()) {
+                string(entry.getKey());
+                string(entry.getValue());
+            }
+        }
+
+        void values(final Map<String, List<String>> map) {
+            final TreeMap<String, List<String>> sorted = new TreeMap<>(map);
+
+            integer(sorted.size());
+            for (final Map.Entry<String, List<String>> entry : sorted.entrySet()) {
+                string(entry.getKey());
+                integer(entry.getValue().size());
+                for (final String value : entry.getValue()) {
+                    string(value);
+                }
+            }
+        }
+
+        private void integer(final int value) {
+            ensure(4);
+            bytes[length++] = (byte) (value >>> 24);
+            bytes[length++] = (byte) (value >>> 16);
+            bytes[length++] = (byte) (value >>> 8);
+            bytes[length++] = (byte) value;
+        }
+
+        private void ensure(final int count) {
+            if (length + count > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+            }
+        }
+    }
+}
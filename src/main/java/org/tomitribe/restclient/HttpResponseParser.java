@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses an HTTP/1.1 response from bytes as they arrive.  Bodies may be
+ * delimited by {@code Content-Length}, chunked, or run until the
+ * connection closes.  Interim 1xx responses are skipped.
+ */
+class HttpResponseParser {
+
+    private static final int MAX_LINE = 64 * 1024;
+
+    // the most allocated for a body before its bytes arrive
+    private static final int INITIAL_BODY = 64 * 1024;
+
+    private enum State {
+        STATUS, HEADERS, BODY, CHUNK_SIZE, CHUNK, CHUNK_END, TRAILERS, UNTIL_CLOSE, DONE
+    }
+
+    private final boolean head;
+    private final StringBuilder line = new StringBuilder();
+
+    private State state = State.STATUS;
+    private String version;
+    private int status;
+    private Map<String, List<String>> headers = new LinkedHashMap<>();
+    private byte[] body = new byte[0];
+    private int length;
+    private long remaining;
+
+    /**
+     * @param head true if the request was a HEAD, whose response has no body
+     */
+    HttpResponseParser(final boolean head) {
+        this.head = head;
+    }
+
+    /**
+     * Consumes bytes from the buffer and returns true once the response is
+     * complete.  Bytes after the end of the response are left in the buffer.
+     */
+    boolean feed(final ByteBuffer in) throws IOException {
+        while (in.hasRemaining() && state != State.DONE) {
+            switch (state) {
+                case STATUS:
+                    if (readLine(in)) status();
+                    break;
+                case HEADERS:
+                    if (readLine(in)) header();
+                    break;
+                case BODY:
+                    read(in);
+                    if (remaining == 0) state = State.DONE;
+                    break;
+                case CHUNK_SIZE:
+                    if (readLine(in)) chunkSize();
+                    break;
+                case CHUNK:
+                    read(in);
+                    if (remaining == 0) state = State.CHUNK_END;
+                    break;
+                case CHUNK_END:
+                    if (readLine(in)) state = State.CHUNK_SIZE;
+                    break;
+                case TRAILERS:
+                    if (readLine(in) && takeLine().isEmpty()) state = State.DONE;
+                    break;
+                case UNTIL_CLOSE:
+                    remaining = in.remaining();
+                    read(in);
+                    break;
+                default:
+                    throw new IllegalStateException(state.name());
+            }
+        }
+        return state == State.DONE;
+    }
+
+    /**
+     * Called when the connection closes.  Returns true if that completes
+     * a response whose body runs until the end of the connection.
+     */
+    boolean eof() {
+        if (state != State.UNTIL_CLOSE) return state == State.DONE;
+        state = State.DONE;
+        return true;
+    }
+
+    boolean isKeepAlive() {
+        if (state != State.DONE) return false;
+
+        final String connection = first("connection");
+        if ("HTTP/1.0".equals(version)) return "keep-alive".equalsIgnoreCase(connection);
+        return !"close".equalsIgnoreCase(connection);
+    }
+
+    int getStatus() {
+        return status;
+    }
+
+    Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    byte[] getBody() {
+        return length == body.length ? body : Arrays.copyOf(body, length);
+    }
+
+    private boolean readLine(final ByteBuffer in) throws IOException {
+        while (in.hasRemaining()) {
+            final char c = (char) (in.get() & 0xFF);
+            if (c == '\n') return true;
+            if (c == '\r') continue;
+            if (line.length() == MAX_LINE) throw new IOException("Response line longer than " + MAX_LINE + " bytes");
+            line.append(c);
+        }
+        return false;
+    }
+
+    private String takeLine() {
+        final String value = line.toString();
+        line.setLength(0);
+        return value;
+    }
+
+    private void status() throws IOException {
+        final String statusLine = takeLine();
+        final String[] parts = statusLine.split(" ", 3);
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+            throw new IOException("Malformed status line: " + statusLine);
+        }
+
+        version = parts[0];
+        try {
+            status = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed status line: " + statusLine);
+        }
+        state = State.HEADERS;
+    }
+
+    private void header() throws IOException {
+        final String header = takeLine();
+        if (!header.isEmpty()) {
+            final int colon = header.indexOf(':');
+            if (colon <= 0) throw new IOException("Malformed header: " + header);
+
+            final String name = header.substring(0, colon).trim().toLowerCase();
+            headers.computeIfAbsent(name, k -> new ArrayList<>()).add(header.substring(colon + 1).trim());
+            return;
+        }
+
+        if (status >= 100 && status < 200 && status != 101) {
+            headers = new LinkedHashMap<>();
+            state = State.STATUS;
+            return;
+        }
+
+        if (head || status == 204 || status == 304) {
+            state = State.DONE;
+            return;
+        }
+
+        final String transferEncoding = first("transfer-encoding");
+        if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+            state = State.CHUNK_SIZE;
+            return;
+        }
+
+        final String contentLength = first("content-length");
+        if (contentLength == null) {
+            state = State.UNTIL_CLOSE;
+            return;
+        }
+
+        try {
+            remaining = Long.parseLong(contentLength);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed Content-Length: " + contentLength);
+        }
+        if (remaining < 0 || remaining > Integer.MAX_VALUE - 8) {
+            throw new IOException("Unsupported Content-Length: " + contentLength);
+        }
+
+        // sized to what has arrived as it arrives, so a false Content-Length costs nothing up front
+        body = new byte[(int) Math.min(remaining, INITIAL_BODY)];
+        state = remaining == 0 ? State.DONE : State.BODY;
+    }
+
+    private void chunkSize() throws IOException {
+        final String chunk = takeLine();
+        final int extension = chunk.indexOf(';');
+        final String size = (extension == -1 ? chunk : chunk.substring(0, extension)).trim();
+
+        try {
+            remaining = Long.parseLong(size, 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed chunk size: " + chunk);
+        }
+        if (remaining < 0 || length + remaining > Integer.MAX_VALUE - 8) {
+            throw new IOException("Unsupported chunk size: " + chunk);
+        }
+
+        state = remaining == 0 ? State.TRAILERS : State.CHUNK;
+    }
+
+    /**
+     * Copies up to {@code remaining} bytes into the body
+     */
+    private void read(final ByteBuffer in) {
+        final int count = (int) Math.min(remaining, in.remaining());
+        if (length + count > body.length) {
+            body = Arrays.copyOf(body, Math.max(length + count, body.length * 2));
+        }
+
+        in.get(body, length, count);
+        length += count;
+        remaining -= count;
+    }
+
+    private String first(final String name) {
+        final List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+}
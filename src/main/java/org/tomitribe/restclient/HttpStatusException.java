@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class HttpStatusException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Request.Method method;
+    private final URI uri;
+    private final int status;
+    private final Map<String, List<String>> headers;
+    private final String body;
+
+    public HttpStatusException(final Request.Method method, final URI uri, final int status,
+                               final Map<String, List<String>> headers, final String body) {
+        super(String.format("%s %s returned status %s", method, uri, status));
+        this.method = method;
+        this.uri = uri;
+        this.status = status;
+        this.headers = headers == null ? Collections.emptyMap() : headers;
+        this.body = body;
+    }
+
+    public Request.Method getMethod() {
+        return method;
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * The response body, if there was one
+     */
+    public String getBody() {
+        return body;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.MediaType;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Transport built on a JAX-RS {@link Client}.
+ *
+ * Connection pooling and keep-alive belong to the JAX-RS implementation
+ * and are configured on the client it is given; this executor adds the
+ * total and per-host limits on requests in flight, and always reads and
+ * closes each response so its connection goes back to the pool.
+ */
+public class JaxrsRequestExecutor implements RequestExecutor {
+
+    private final Client client;
+    private final URI baseUri;
+    private final ConnectionLimits limits;
+    private final Executor executor;
+
+    JaxrsRequestExecutor(final Client client, final URI baseUri, final ConnectionLimits limits, final Executor executor) {
+        this.client = client;
+        this.baseUri = baseUri;
+        this.limits = limits;
+        this.executor = executor;
+    }
+
+    public static Builder builder(final Client client) {
+        return new Builder(client);
+    }
+
+    @Override
+    public URI resolve(final Request<?> request) {
+        return BaseUri.resolve(baseUri, request);
+    }
+
+    @Override
+    public Response<byte[]> send(final Request<?> request) {
+        final URI uri = resolve(request);
+        final String host = uri.getAuthority();
+
+        limits.acquire(host);
+        try {
+            return send(request, uri);
+        } finally {
+            limits.release(host);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Response<byte[]>> sendAsync(final Request<?> request) {
+        return CompletableFuture.supplyAsync(() -> send(request), executor);
+    }
+
+    private Response<byte[]> send(final Request<?> request, final URI uri) {
+        final Invocation.Builder invocation = client.target(uri).request();
+        for (final Map.Entry<String, String> header : request.getHeaderParams().entrySet()) {
+            invocation.header(header.getKey(), header.getValue());
+        }
+
+        final String method = request.getMethod() == null ? "GET" : request.getMethod().name();
+
+        final javax.ws.rs.core.Response response = request.hasBody()
+                ? invocation.method(method, Entity.entity(request.getBody(), contentType(request)))
+                : invocation.method(method);
+
+        try {
+            final byte[] body = response.hasEntity() ? response.readEntity(byte[].class) : new byte[0];
+
+            final Map<String, List<String>> headers = new LinkedHashMap<>();
+            for (final Map.Entry<String, List<String>> entry : response.getStringHeaders().entrySet()) {
+                headers.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+            }
+
+            return new Response<>(response.getStatus(), headers, body);
+        } finally {
+            response.close();
+        }
+    }
+
+    private static MediaType contentType(final Request<?> request) {
+        final String contentType = request.getHeaderParams().get("content-type");
+        return contentType == null ? MediaType.APPLICATION_JSON_TYPE : MediaType.valueOf(contentType);
+    }
+
+    public static class Builder {
+        private final Client client;
+        private URI baseUri;
+        private int maxConnections;
+        private int maxConnectionsPerHost;
+        private Executor executor;
+
+        Builder(final Client client) {
+            this.client = client;
+        }
+
+        public Builder baseUri(final URI baseUri) {
+            this.baseUri = baseUri;
+            return this;
+        }
+
+        public Builder baseUri(final String baseUri) {
+            return baseUri(URI.create(baseUri));
+        }
+
+        /**
+         * Maximum requests in flight across all hosts, zero for unlimited
+         */
+        public Builder maxConnections(final int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /**
+         * Maximum requests in flight to any one host, zero for unlimited.
+         * Match this to the per-route pool size of the JAX-RS client.
+         */
+        public Builder maxConnectionsPerHost(final int maxConnectionsPerHost) {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+            return this;
+        }
+
+        public Builder executor(final Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public JaxrsRequestExecutor build() {
+            return new JaxrsRequestExecutor(client, baseUri,
+                    new ConnectionLimits(maxConnections, maxConnectionsPerHost),
+                    executor != null ? executor : RequestThreads.executor());
+        }
+    }
+}
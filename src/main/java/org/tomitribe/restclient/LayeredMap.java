@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only view of two maps where entries of {@code top} replace those of
+ * {@code bottom} with the same key.  Iterates in the order a LinkedHashMap
+ * would after {@code putAll(bottom)} then {@code putAll(top)}.  Neither map
+ * may change while the view is in use.
+ */
+class LayeredMap<V> extends AbstractMap<String, V> {
+
+    private final Map<String, V> bottom;
+    private final Map<String, V> top;
+    private int size = -1;
+
+    LayeredMap(final Map<String, V> bottom, final Map<String, V> top) {
+        this.bottom = bottom;
+        this.top = top;
+    }
+
+    /**
+     * Returns the view, or one of the maps if the other is empty
+     */
+    static <V> Map<String, V> of(final Map<String, V> bottom, final Map<String, V> top) {
+        if (bottom.isEmpty()) return top;
+        if (top.isEmpty()) return bottom;
+        return new LayeredMap<>(bottom, top);
+    }
+
+    @Override
+    public V get(final Object key) {
+        final V value = top.get(key);
+        if (value != null || top.containsKey(key)) return value;
+        return bottom.get(key);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return top.containsKey(key) || bottom.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        if (size == -1) {
+            int count = bottom.size();
+            for (final String key : top.keySet()) {
+                if (!bottom.containsKey(key)) count++;
+            }
+            size = count;
+        }
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return new AbstractSet<Entry<String, V>>() {
+            @Override
+            public Iterator<Entry<String, V>> iterator() {
+                return new Entries();
+            }
+
+            @Override
+            public int size() {
+                return LayeredMap.this.size();
+            }
+        };
+    }
+
+    private class Entries implements Iterator<Entry<String, V>> {
+        private final Iterator<Entry<String, V>> bottomEntries = bottom.entrySet().iterator();
+        private final Iterator<Entry<String, V>> topEntries = top.entrySet().iterator();
+        private Entry<String, V> next;
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) return true;
+
+            if (bottomEntries.hasNext()) {
+                final Entry<String, V> entry = bottomEntries.next();
+                final String key = entry.getKey();
+                next = top.containsKey(key) ? new SimpleImmutableEntry<>(key, top.get(key)) : entry;
+                return true;
+            }
+
+            while (topEntries.hasNext()) {
+                final Entry<String, V> entry = topEntries.next();
+                if (bottom.containsKey(entry.getKey())) continue;
+                next = entry;
+                return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        public Entry<String, V> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            final Entry<String, V> entry = next;
+            next = null;
+            return entry;
+        }
+    }
+}
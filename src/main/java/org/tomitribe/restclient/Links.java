@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parses RFC 8288 {@code Link} headers such as GitHub's
+ *
+ * <pre>
+ * &lt;https://api.github.com/repositories/1/issues?page=2&gt;; rel="next",
+ * &lt;https://api.github.com/repositories/1/issues?page=5&gt;; rel="last"
+ * </pre>
+ */
+public class Links {
+
+    private Links() {
+    }
+
+    /**
+     * Returns the link targets keyed by relation type
+     */
+    public static Map<String, URI> parse(final String header) {
+        final Map<String, URI> links = new LinkedHashMap<>();
+        if (header == null) return links;
+
+        int i = 0;
+        while (true) {
+            final int open = header.indexOf('<', i);
+            if (open == -1) break;
+            final int close = header.indexOf('>', open);
+            if (close == -1) break;
+
+            final String target = header.substring(open + 1, close).trim();
+
+            // parameters run until the next link
+            final int next = header.indexOf('<', close);
+            final String params = next == -1 ? header.substring(close + 1) : header.substring(close + 1, next);
+
+            final String rel = parameter(params, "rel");
+            if (rel != null) {
+                final URI uri = URI.create(target);
+                for (final String relation : rel.trim().split(" +")) {
+                    links.putIfAbsent(relation.toLowerCase(), uri);
+                }
+            }
+
+            if (next == -1) break;
+            i = next;
+        }
+
+        return links;
+    }
+
+    private static String parameter(final String params, final String name) {
+        for (final String param : params.split(";")) {
+            final int eq = param.indexOf('=');
+            if (eq == -1) continue;
+            if (!param.substring(0, eq).trim().equalsIgnoreCase(name)) continue;
+
+            String value = param.substring(eq + 1).trim();
+            if (value.endsWith(",")) value = value.substring(0, value.length() - 1).trim();
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            return value;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-process {@link ResponseCache} holding at most {@code maxBytes} of
+ * entries.  The least recently used entries are evicted first.
+ */
+public class MemoryResponseCache implements ResponseCache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<Fingerprint, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    public MemoryResponseCache(final long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public synchronized CacheEntry get(final Fingerprint key) {
+        return entries.get(key);
+    }
+
+    @Override
+    public synchronized void put(final Fingerprint key, final CacheEntry entry) {
+        final long size = entry.size();
+        if (size > maxBytes) {
+            remove(key);
+            return;
+        }
+
+        final CacheEntry previous = entries.put(key, entry);
+        if (previous != null) bytes -= previous.size();
+        bytes += size;
+
+        final Iterator<Map.Entry<Fingerprint, CacheEntry>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().getValue().size();
+            eldest.remove();
+        }
+    }
+
+    @Override
+    public synchronized void remove(final Fingerprint key) {
+        final CacheEntry removed = entries.remove(key);
+        if (removed != null) bytes -= removed.size();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,697 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking HTTP/1.1 transport.  One event loop thread drives every
+ * connection through a {@link Selector}, so requests in flight do not
+ * each hold a thread.  The request line and headers are written straight
+ * from the {@link Request} into pooled direct buffers, and responses are
+ * parsed as their bytes arrive.
+ *
+ * Each host gets up to {@code maxConnectionsPerHost} keep-alive
+ * connections; further requests queue until one is free.  Futures returned
+ * by {@link #sendAsync(Request)} complete on the event loop thread, so
+ * callbacks chained on them must not block.  {@link #executeAsync(Request)}
+ * unmarshals on the configured executor instead.
+ *
+ * Only plain {@code http} URIs are supported.
+ */
+public class NioRequestExecutor implements RequestExecutor, Closeable {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final URI baseUri;
+    private final int maxConnectionsPerHost;
+    private final long connectTimeout;
+    private final long readTimeout;
+    private final Executor executor;
+    private final BufferPool buffers;
+
+    private final Selector selector;
+    private final Thread loop;
+    private final Queue<Exchange> submitted = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    // only touched by the event loop thread
+    private final Map<String, Host> hosts = new HashMap<>();
+    private final Set<Connection> connections = new LinkedHashSet<>();
+
+    NioRequestExecutor(final URI baseUri, final int maxConnectionsPerHost, final long connectTimeout,
+                       final long readTimeout, final int bufferSize, final int maxPooledBuffers, final Executor executor) {
+        this.baseUri = baseUri;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.executor = executor;
+        this.buffers = new BufferPool(bufferSize, maxPooledBuffers);
+
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open selector", e);
+        }
+
+        this.loop = new Thread(this::run, "restclient-nio");
+        this.loop.setDaemon(true);
+        this.loop.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public URI resolve(final Request<?> request) {
+        return BaseUri.resolve(baseUri, request);
+    }
+
+    @Override
+    public Response<byte[]> send(final Request<?> request) {
+        try {
+            return sendAsync(request).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Response<byte[]>> sendAsync(final Request<?> request) {
+        final URI uri = resolve(request);
+        if (!"http".equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException("Only http URIs are supported: " + uri);
+        }
+        validate(request);
+
+        final CompletableFuture<Response<byte[]>> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new IllegalStateException("Executor is closed"));
+            return future;
+        }
+
+        submitted.add(new Exchange(request, ascii(uri), future));
+        selector.wakeup();
+        return future;
+    }
+
+    @Override
+    public <T> CompletableFuture<T> executeAsync(final Request<T> request) {
+        final URI uri = resolve(request);
+        return sendAsync(request).thenApplyAsync(response -> Entities.entity(request, uri, response), executor);
+    }
+
+    /**
+     * Stops the event loop, closes every connection and
+     * fails the requests that have not completed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+
+        try {
+            loop.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        failSubmitted();
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                selector.select(connections.isEmpty() ? 0 : 100);
+
+                for (Exchange exchange; (exchange = submitted.poll()) != null; ) {
+                    host(exchange.uri).dispatch(exchange);
+                }
+
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    ((Connection) key.attachment()).ready(key);
+                }
+
+                expire();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            closed = true;
+        } finally {
+            shutdown();
+        }
+    }
+
+    private Host host(final URI uri) {
+        final String authority = uri.getRawAuthority();
+        Host host = hosts.get(authority);
+        if (host == null) {
+            host = new Host(authority, uri.getHost(), uri.getPort() == -1 ? 80 : uri.getPort());
+            hosts.put(authority, host);
+        }
+        return host;
+    }
+
+    private void expire() {
+        if (connectTimeout <= 0 && readTimeout <= 0) return;
+
+        final long now = System.nanoTime();
+        for (final Connection connection : new ArrayList<>(connections)) {
+            if (connection.deadline != 0 && now - connection.deadline > 0) {
+                connection.failed(new SocketTimeoutException(connection.connected ? "Read timed out" : "Connect timed out"));
+            }
+        }
+    }
+
+    private void shutdown() {
+        final IllegalStateException closedException = new IllegalStateException("Executor is closed");
+
+        for (final Connection connection : new ArrayList<>(connections)) {
+            connection.failed(closedException);
+        }
+
+        for (final Host host : hosts.values()) {
+            for (Exchange exchange; (exchange = host.waiting.poll()) != null; ) {
+                exchange.future.completeExceptionally(closedException);
+            }
+        }
+
+        failSubmitted();
+
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private void failSubmitted() {
+        for (Exchange exchange; (exchange = submitted.poll()) != null; ) {
+            exchange.future.completeExceptionally(new IllegalStateException("Executor is closed"));
+        }
+    }
+
+    SelectionKey register(final SocketChannel channel, final int ops, final Object attachment) throws IOException {
+        return channel.register(selector, ops, attachment);
+    }
+
+    private static long deadline(final long timeout) {
+        if (timeout <= 0) return 0;
+        final long deadline = System.nanoTime() + timeout;
+        return deadline == 0 ? 1 : deadline;
+    }
+
+    /**
+     * Writes the request line, headers and body.  A request too big for
+     * a pooled buffer is written into a heap buffer of sufficient size.
+     */
+    private ByteBuffer encode(final Exchange exchange) {
+        ByteBuffer buffer = buffers.acquire();
+        while (true) {
+            try {
+                encode(exchange, buffer);
+                buffer.flip();
+                return buffer;
+            } catch (BufferOverflowException e) {
+                final int capacity = buffer.capacity() * 2;
+                buffers.release(buffer);
+                buffer = ByteBuffer.allocate(capacity);
+            }
+        }
+    }
+
+    private static void encode(final Exchange exchange, final ByteBuffer buffer) {
+        final Request<?> request = exchange.request;
+        final URI uri = exchange.uri;
+
+        put(buffer, exchange.method.name());
+        buffer.put((byte) ' ');
+        final String path = uri.getRawPath();
+        put(buffer, path == null || path.isEmpty() ? "/" : path);
+        if (uri.getRawQuery() != null) {
+            buffer.put((byte) '?');
+            put(buffer, uri.getRawQuery());
+        }
+        put(buffer, " HTTP/1.1");
+        buffer.put(CRLF);
+
+        final Map<String, String> headers = request.getHeaderParams();
+        if (!headers.containsKey("host")) header(buffer, "Host", uri.getRawAuthority());
+
+        for (final Map.Entry<String, String> header : headers.entrySet()) {
+            if ("content-length".equals(header.getKey())) continue;
+            header(buffer, header.getKey(), header.getValue());
+        }
+
+        if (request.hasBody()) {
+            final byte[] body = request.getBody().getBytes(StandardCharsets.UTF_8);
+            if (!headers.containsKey("content-type")) header(buffer, "Content-Type", "application/json");
+            header(buffer, "Content-Length", Integer.toString(body.length));
+            buffer.put(CRLF);
+            buffer.put(body);
+            return;
+        }
+
+        if (exchange.method == Request.Method.POST || exchange.method == Request.Method.PUT
+                || exchange.method == Request.Method.PATCH) {
+            header(buffer, "Content-Length", "0");
+        }
+        buffer.put(CRLF);
+    }
+
+    /**
+     * Rejects headers that cannot be written as they are.  A CR or LF in
+     * a header would end it early and let the rest be read as further
+     * headers or another request, and chars above 0xFF have no byte.
+     */
+    private static void validate(final Request<?> request) {
+        for (final Map.Entry<String, String> header : request.getHeaderParams().entrySet()) {
+            final String name = header.getKey();
+            if (name.isEmpty()) throw new IllegalArgumentException("Empty header name");
+
+            for (int i = 0; i < name.length(); i++) {
+                final char c = name.charAt(i);
+                if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9') continue;
+                if ("!#$%&'*+-.^_`|~".indexOf(c) != -1) continue;
+                throw new IllegalArgumentException("Invalid character in header name: " + name);
+            }
+
+            final String value = header.getValue();
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                if (c == '\t' || c >= ' ' && c != 0x7F && c <= 0xFF) continue;
+                // the value is left out of the message, it may be a credential
+                throw new IllegalArgumentException("Invalid character in value of header " + name);
+            }
+        }
+    }
+
+    /**
+     * Returns the URI with any chars outside US-ASCII percent-encoded
+     */
+    private static URI ascii(final URI uri) {
+        final String ascii = uri.toASCIIString();
+        return ascii.equals(uri.toString()) ? uri : URI.create(ascii);
+    }
+
+    private static void header(final ByteBuffer buffer, final String name, final String value) {
+        put(buffer, name);
+        buffer.put((byte) ':');
+        buffer.put((byte) ' ');
+        put(buffer, value);
+        buffer.put(CRLF);
+    }
+
+    private static void put(final ByteBuffer buffer, final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    private static class Exchange {
+        private final Request<?> request;
+        private final Request.Method method;
+        private final URI uri;
+        private final CompletableFuture<Response<byte[]>> future;
+        private boolean retried;
+
+        Exchange(final Request<?> request, final URI uri, final CompletableFuture<Response<byte[]>> future) {
+            this.request = request;
+            this.method = request.getMethod() == null ? Request.Method.GET : request.getMethod();
+            this.uri = uri;
+            this.future = future;
+        }
+
+        /**
+         * A request is sent again on a new connection if a kept-alive
+         * connection closed before any of the response arrived, unless
+         * repeating it could have side effects.
+         */
+        boolean retryable() {
+            return !retried && method != Request.Method.POST && method != Request.Method.PATCH;
+        }
+
+        void fail(final Exception e) {
+            if (e instanceof IOException) {
+                future.completeExceptionally(new UncheckedIOException(
+                        String.format("%s %s failed", method, uri), (IOException) e));
+            } else {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private class Host {
+        private final String authority;
+        private final String hostname;
+        private final int port;
+        private final ArrayDeque<Connection> idle = new ArrayDeque<>();
+        private final ArrayDeque<Exchange> waiting = new ArrayDeque<>();
+        private InetSocketAddress address;
+        private int open;
+
+        Host(final String authority, final String hostname, final int port) {
+            this.authority = authority;
+            this.hostname = hostname;
+            this.port = port;
+        }
+
+        void dispatch(final Exchange exchange) {
+            final Connection connection = idle.pollFirst();
+            if (connection != null) {
+                connection.start(exchange);
+            } else if (maxConnectionsPerHost <= 0 || open < maxConnectionsPerHost) {
+                connect(exchange);
+            } else {
+                waiting.add(exchange);
+            }
+        }
+
+        /**
+         * Hands a kept-alive connection to the next waiting request or parks it
+         */
+        void release(final Connection connection) {
+            final Exchange next = waiting.poll();
+            if (next != null) {
+                connection.start(next);
+            } else {
+                idle.addFirst(connection);
+            }
+        }
+
+        void closed(final Connection connection) {
+            open--;
+            idle.remove(connection);
+
+            if (closed) return;
+            final Exchange next = waiting.poll();
+            if (next != null) dispatch(next);
+        }
+
+        private void connect(final Exchange exchange) {
+            try {
+                if (address == null || address.isUnresolved()) address = new InetSocketAddress(hostname, port);
+
+                final SocketChannel channel = SocketChannel.open();
+                Connection connection = null;
+                try {
+                    channel.configureBlocking(false);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    final boolean connected = channel.connect(address);
+
+                    connection = new Connection(this, channel);
+                    open++;
+                    connection.key = register(channel, connected ? 0 : SelectionKey.OP_CONNECT, connection);
+
+                    if (connected) {
+                        connection.connected = true;
+                        connection.start(exchange);
+                    } else {
+                        connection.exchange = exchange;
+                        connection.deadline = deadline(connectTimeout);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // closing the connection gives its slot back to the requests waiting for this host
+                    if (connection != null) {
+                        connection.close();
+                    } else {
+                        channel.close();
+                    }
+                    throw e;
+                }
+            } catch (IOException | RuntimeException e) {
+                exchange.fail(e);
+            }
+        }
+    }
+
+    private class Connection {
+        private final Host host;
+        private final SocketChannel channel;
+        private final ByteBuffer in;
+        private SelectionKey key;
+        private boolean connected;
+        private boolean reused;
+        private boolean received;
+        private long deadline;
+
+        private Exchange exchange;
+        private ByteBuffer out;
+        private HttpResponseParser parser;
+
+        Connection(final Host host, final SocketChannel channel) {
+            this.host = host;
+            this.channel = channel;
+            this.in = buffers.acquire();
+            connections.add(this);
+        }
+
+        void start(final Exchange exchange) {
+            this.exchange = exchange;
+            this.parser = new HttpResponseParser(exchange.method == Request.Method.HEAD);
+            this.received = false;
+
+            try {
+                this.out = encode(exchange);
+                this.deadline = deadline(readTimeout);
+                write();
+            } catch (IOException | RuntimeException e) {
+                failed(e);
+            }
+        }
+
+        void ready(final SelectionKey key) {
+            try {
+                if (!key.isValid()) return;
+                if (key.isConnectable()) finishConnect();
+                if (key.isValid() && key.isWritable()) write();
+                if (key.isValid() && key.isReadable()) read();
+            } catch (IOException | RuntimeException e) {
+                failed(e);
+            }
+        }
+
+        private void finishConnect() throws IOException {
+            if (!channel.finishConnect()) return;
+            connected = true;
+            start(exchange);
+        }
+
+        private void write() throws IOException {
+            channel.write(out);
+            if (out.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+
+            buffers.release(out);
+            out = null;
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        private void read() throws IOException {
+            final int read = channel.read(in);
+            if (read == -1) {
+                eof();
+                return;
+            }
+
+            if (exchange == null) {
+                // an idle connection should not receive anything
+                close();
+                return;
+            }
+
+            if (read == 0) return;
+            received = true;
+            deadline = deadline(readTimeout);
+
+            in.flip();
+            final boolean done = parser.feed(in);
+            in.compact();
+
+            if (done) complete();
+        }
+
+        private void eof() throws IOException {
+            final Exchange current = exchange;
+            if (current == null) {
+                close();
+                return;
+            }
+
+            if (parser.eof()) {
+                exchange = null;
+                close();
+                current.future.complete(response());
+                return;
+            }
+
+            if (reused && !received && current.retryable()) {
+                exchange = null;
+                close();
+                current.retried = true;
+                host.dispatch(current);
+                return;
+            }
+
+            throw new IOException("Connection closed before the response was complete");
+        }
+
+        private void complete() {
+            final Exchange current = exchange;
+            final Response<byte[]> response = response();
+            exchange = null;
+            deadline = 0;
+
+            if (parser.isKeepAlive() && in.position() == 0 && !closed) {
+                reused = true;
+                host.release(this);
+            } else {
+                close();
+            }
+
+            current.future.complete(response);
+        }
+
+        private Response<byte[]> response() {
+            return new Response<>(parser.getStatus(), parser.getHeaders(), parser.getBody());
+        }
+
+        void failed(final Exception e) {
+            final Exchange current = exchange;
+            exchange = null;
+            close();
+            if (current != null) current.fail(e);
+        }
+
+        private void close() {
+            if (!connections.remove(this)) return;
+
+            if (key != null) key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+
+            buffers.release(in);
+            buffers.release(out);
+            out = null;
+            deadline = 0;
+            host.closed(this);
+        }
+    }
+
+    public static class Builder {
+        private URI baseUri;
+        private int maxConnectionsPerHost = 16;
+        private long connectTimeout = TimeUnit.SECONDS.toNanos(10);
+        private long readTimeout = TimeUnit.SECONDS.toNanos(60);
+        private int bufferSize = 8 * 1024;
+        private int maxPooledBuffers = 1024;
+        private Executor executor;
+
+        Builder() {
+        }
+
+        public Builder baseUri(final URI baseUri) {
+            this.baseUri = baseUri;
+            return this;
+        }
+
+        public Builder baseUri(final String baseUri) {
+            return baseUri(URI.create(baseUri));
+        }
+
+        /**
+         * Maximum connections opened to any one host, zero for unlimited.
+         * Requests beyond that wait for a connection without holding a thread.
+         */
+        public Builder maxConnectionsPerHost(final int maxConnectionsPerHost) {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+            return this;
+        }
+
+        public Builder connectTimeout(final long duration, final TimeUnit unit) {
+            this.connectTimeout = unit.toNanos(duration);
+            return this;
+        }
+
+        public Builder readTimeout(final long duration, final TimeUnit unit) {
+            this.readTimeout = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Size of the pooled direct buffers requests are written into
+         * and responses are read through
+         */
+        public Builder bufferSize(final int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        public Builder maxPooledBuffers(final int maxPooledBuffers) {
+            this.maxPooledBuffers = maxPooledBuffers;
+            return this;
+        }
+
+        /**
+         * Executor that {@link #executeAsync(Request)} unmarshals responses on
+         */
+        public Builder executor(final Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public NioRequestExecutor build() {
+            return new NioRequestExecutor(baseUri, maxConnectionsPerHost, connectTimeout, readTimeout,
+                    bufferSize, maxPooledBuffers, executor != null ? executor : RequestThreads.executor());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Spliterator over the items of a known range of page numbers.  Splitting
+ * divides the range in half, so the pages themselves are fetched in
+ * parallel by the fork-join tasks that end up owning them.  Once a single
+ * page is left it is fetched and its items are split further.
+ */
+class PageRangeSpliterator<T> implements Spliterator<T> {
+
+    private final IntFunction<? extends Page<T>> pages;
+    // long, so a range ending at Integer.MAX_VALUE has an end
+    private long next;
+    private final long end;
+    private Spliterator<T> current;
+    private long pageSize = 1;
+
+    /**
+     * @param first the first page number, inclusive
+     * @param end the last page number, exclusive
+     */
+    PageRangeSpliterator(final IntFunction<? extends Page<T>> pages, final long first, final long end) {
+        this(pages, first, end, 1);
+    }
+
+    private PageRangeSpliterator(final IntFunction<? extends Page<T>> pages, final long first, final long end, final long pageSize) {
+        this.pages = pages;
+        this.next = first;
+        this.end = end;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super T> action) {
+        do {
+            if (current != null && current.tryAdvance(action)) return true;
+        } while (fetch());
+
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super T> action) {
+        do {
+            if (current != null) current.forEachRemaining(action);
+        } while (fetch());
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        if (current != null) {
+            // hand off the rest of the page we are reading
+            final Spliterator<T> prefix = current;
+            current = null;
+            return prefix;
+        }
+
+        final long remaining = end - next;
+        if (remaining > 1) {
+            final long mid = next + remaining / 2;
+            final Spliterator<T> prefix = new PageRangeSpliterator<>(pages, next, mid, pageSize);
+            next = mid;
+            return prefix;
+        }
+
+        if (remaining == 1 && fetch()) {
+            return current.trySplit();
+        }
+
+        return null;
+    }
+
+    /**
+     * Exact once the last page is fetched, otherwise an estimate based
+     * on the size of the most recently fetched page.
+     */
+    @Override
+    public long estimateSize() {
+        final long unread = current != null ? current.estimateSize() : 0;
+        return unread + Math.max(0, end - next) * pageSize;
+    }
+
+    @Override
+    public int characteristics() {
+        // not SIZED even once every page is fetched, as characteristics may not change
+        return ORDERED;
+    }
+
+    private boolean fetch() {
+        if (next >= end) {
+            current = null;
+            return false;
+        }
+
+        final Page<T> page = pages.apply((int) next++);
+        final List<T> items = page != null && page.getItems() != null ? page.getItems() : Collections.emptyList();
+        current = items.spliterator();
+        if (items.size() > 0) pageSize = items.size();
+        return true;
+    }
+}
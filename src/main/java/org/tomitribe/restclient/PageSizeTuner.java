@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the page size for a paged endpoint by hill climbing on observed
+ * throughput in items per second.  After a few pages at one size the tuner
+ * doubles or halves the size, and keeps moving in the same direction while
+ * throughput improves.  A page that is slower than the latency limit, larger
+ * than the byte limit, or that fails shrinks the size straight away.
+ *
+ * Sizes only ever move by a factor of two, which lets page-number pagination
+ * switch size without skipping or repeating items.
+ *
+ * One tuner should be used per endpoint; it is safe to share between threads.
+ */
+public class PageSizeTuner {
+
+    private final int min;
+    private final int max;
+    private final int samples;
+    private final long maxLatency;
+    private final long maxBytes;
+
+    private int size;
+    private int direction = 1;
+    private double previous = -1;
+    private int count;
+    private long items;
+    private long nanos;
+
+    PageSizeTuner(final int min, final int max, final int initial, final int samples,
+                  final long maxLatency, final long maxBytes) {
+        if (min < 1 || max < min) throw new IllegalArgumentException("Invalid page size bounds: " + min + " to " + max);
+        this.min = min;
+        this.max = max;
+        this.samples = samples;
+        this.maxLatency = maxLatency;
+        this.maxBytes = maxBytes;
+        this.size = Math.max(min, Math.min(max, initial));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public synchronized int getSize() {
+        return size;
+    }
+
+    /**
+     * Records a page fetched with the given size.  Observations for a size
+     * other than the current one are ignored.
+     *
+     * @param bytes the response size or -1 if unknown
+     */
+    public synchronized void record(final int size, final int items, final long nanos, final long bytes) {
+        if (size != this.size) return;
+
+        if (maxLatency > 0 && nanos > maxLatency || maxBytes > 0 && bytes > maxBytes) {
+            shrink();
+            return;
+        }
+
+        this.items += items;
+        this.nanos += nanos;
+        if (++count < samples) return;
+
+        final double throughput = this.nanos == 0 ? 0 : this.items * 1e9 / this.nanos;
+        if (throughput < previous) direction = -direction;
+        previous = throughput;
+
+        step(direction > 0 ? size * 2 : size / 2);
+    }
+
+    /**
+     * Records a page that could not be fetched with the given size,
+     * for example because the server timed out.
+     */
+    public synchronized void failed(final int size) {
+        if (size != this.size) return;
+        shrink();
+    }
+
+    private void shrink() {
+        direction = -1;
+        previous = -1;
+        step(size / 2);
+    }
+
+    private void step(final int next) {
+        size = Math.max(min, Math.min(max, next));
+        count = 0;
+        items = 0;
+        nanos = 0;
+    }
+
+    public static class Builder {
+        private int min = 10;
+        private int max = 1000;
+        private int initial = 100;
+        private int samples = 2;
+        private long maxLatency;
+        private long maxBytes;
+
+        Builder() {
+        }
+
+        public Builder min(final int min) {
+            this.min = min;
+            return this;
+        }
+
+        public Builder max(final int max) {
+            this.max = max;
+            return this;
+        }
+
+        public Builder initial(final int initial) {
+            this.initial = initial;
+            return this;
+        }
+
+        /**
+         * Number of pages to observe at each size before moving
+         */
+        public Builder samples(final int samples) {
+            this.samples = samples;
+            return this;
+        }
+
+        public Builder maxLatency(final long duration, final TimeUnit unit) {
+            this.maxLatency = unit.toNanos(duration);
+            return this;
+        }
+
+        public Builder maxBytes(final long maxBytes) {
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        public PageSizeTuner build() {
+            return new PageSizeTuner(min, max, initial, samples, maxLatency, maxBytes);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Spliterator over the items of a sequence of pages.  Splitting hands off
+ * whole pages, either the unread part of the current page or the next page
+ * fetched from the supplier, so downstream work on each page can run on
+ * its own fork-join task.
+ *
+ * Pages are always fetched sequentially; the supplier returns null when
+ * there are no more pages.
+ */
+class PageSpliterator<T> implements Spliterator<T> {
+
+    private final Supplier<? extends Page<T>> pages;
+    private List<T> items = Collections.emptyList();
+    private int index;
+    private boolean exhausted;
+
+    PageSpliterator(final Supplier<? extends Page<T>> pages) {
+        this.pages = pages;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super T> action) {
+        while (index >= items.size()) {
+            if (!fetch()) return false;
+        }
+
+        action.accept(items.get(index++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super T> action) {
+        do {
+            while (index < items.size()) {
+                action.accept(items.get(index++));
+            }
+        } while (fetch());
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        if (index >= items.size() && !fetch()) return null;
+
+        final List<T> page = items.subList(index, items.size());
+        items = Collections.emptyList();
+        index = 0;
+        return page.spliterator();
+    }
+
+    @Override
+    public long estimateSize() {
+        return exhausted ? items.size() - index : Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        // not SIZED even once exhausted, as characteristics may not change
+        return ORDERED;
+    }
+
+    private boolean fetch() {
+        if (exhausted) return false;
+
+        final Page<T> page = pages.get();
+        if (page == null) {
+            exhausted = true;
+            items = Collections.emptyList();
+            index = 0;
+            return false;
+        }
+
+        items = page.getItems() != null ? page.getItems() : Collections.emptyList();
+        index = 0;
+        return true;
+    }
+}
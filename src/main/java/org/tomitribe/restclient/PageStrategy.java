@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.tomitribe.restclient.impl.HttpUtils;
+
+import javax.ws.rs.core.MultivaluedMap;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Decides how a {@link Paginator} gets from one page to the next.
+ */
+public interface PageStrategy {
+
+    /**
+     * Adjusts the request for the first page, for example to add a page size
+     */
+    default <P> Request<P> first(final Request<P> request) {
+        return request;
+    }
+
+    /**
+     * Returns the request for the page following the supplied response
+     * or null if this was the last page.
+     */
+    <P> Request<P> next(Request<P> request, Response<? extends Page<?>> response);
+
+    /**
+     * Returns the number of the last page if the response tells us, or -1.
+     * Knowing the last page lets the paginator request the remaining pages
+     * concurrently rather than one after the other.
+     */
+    default int lastPage(final Response<? extends Page<?>> response) {
+        return -1;
+    }
+
+    /**
+     * Returns the page number requested, or -1 if this strategy cannot
+     * address pages by number.
+     */
+    default int pageNumber(final Request<?> request) {
+        return -1;
+    }
+
+    /**
+     * Returns the request for the given page number
+     */
+    default <P> Request<P> page(final Request<P> request, final int number) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot address pages by number");
+    }
+
+    /**
+     * Follows the {@code rel="next"} target of GitHub-style {@code Link}
+     * headers.  The query parameters of the link are applied to the current
+     * request; the path and headers of the request are kept.
+     */
+    static PageStrategy linkHeader() {
+        return new LinkHeader("page");
+    }
+
+    /**
+     * Requests {@code page=1}, {@code page=2}, and so on with the given page
+     * size until a page comes back with fewer items than requested.
+     */
+    static PageStrategy pageNumber(final String pageParam, final String sizeParam, final int size) {
+        return new PageNumber(pageParam, sizeParam, size);
+    }
+
+    /**
+     * Passes the cursor read from each page as a query parameter
+     * of the next request until the cursor is null or empty.
+     */
+    @SuppressWarnings("unchecked")
+    static <P extends Page<?>> PageStrategy cursor(final String param, final Function<P, String> cursor) {
+        return new Cursor(param, (Function<Page<?>, String>) (Function) cursor);
+    }
+
+    class LinkHeader implements PageStrategy {
+        private final String pageParam;
+
+        public LinkHeader(final String pageParam) {
+            this.pageParam = pageParam;
+        }
+
+        @Override
+        public <P> Request<P> next(final Request<P> request, final Response<? extends Page<?>> response) {
+            final URI next = Links.parse(response.getHeader("link")).get("next");
+            if (next == null) return null;
+
+            Request<P> nextRequest = request;
+            for (final Map.Entry<String, List<String>> entry : query(next).entrySet()) {
+                nextRequest = nextRequest.query(entry.getKey(), entry.getValue().get(0));
+            }
+            return nextRequest;
+        }
+
+        @Override
+        public int lastPage(final Response<? extends Page<?>> response) {
+            final URI last = Links.parse(response.getHeader("link")).get("last");
+            if (last == null) return -1;
+
+            final List<String> page = query(last).get(pageParam);
+            return page == null ? -1 : parseInt(page.get(0), -1);
+        }
+
+        @Override
+        public int pageNumber(final Request<?> request) {
+            return parseInt(request.getQueryParams().get(pageParam), 1);
+        }
+
+        @Override
+        public <P> Request<P> page(final Request<P> request, final int number) {
+            return request.query(pageParam, number);
+        }
+
+        private static MultivaluedMap<String, String> query(final URI uri) {
+            return HttpUtils.getStructuredParams(uri.getRawQuery(), "&", true, true);
+        }
+
+        private static int parseInt(final String value, final int defaultValue) {
+            if (value == null) return defaultValue;
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
+        }
+    }
+
+    class PageNumber implements PageStrategy {
+        private final String pageParam;
+        private final String sizeParam;
+        private final int size;
+        private final LinkHeader links;
+
+        public PageNumber(final String pageParam, final String sizeParam, final int size) {
+            this.pageParam = pageParam;
+            this.sizeParam = sizeParam;
+            this.size = size;
+            this.links = new LinkHeader(pageParam);
+        }
+
+        @Override
+        public <P> Request<P> first(final Request<P> request) {
+            if (sizeParam == null || size <= 0) return request;
+            return request.query(sizeParam, size);
+        }
+
+        @Override
+        public <P> Request<P> next(final Request<P> request, final Response<? extends Page<?>> response) {
+            final Page<?> page = response.getEntity();
+            final int items = page == null || page.getItems() == null ? 0 : page.getItems().size();
+            final int requested = sizeParam == null ? size : LinkHeader.parseInt(request.getQueryParams().get(sizeParam), size);
+            if (items == 0 || items < requested) return null;
+
+            return request.query(pageParam, pageNumber(request) + 1);
+        }
+
+        /**
+         * Read from a {@code rel="last"} link or an {@code X-Total-Pages} header
+         */
+        @Override
+        public int lastPage(final Response<? extends Page<?>> response) {
+            final int last = links.lastPage(response);
+            if (last != -1) return last;
+
+            return LinkHeader.parseInt(response.getHeader("x-total-pages"), -1);
+        }
+
+        @Override
+        public int pageNumber(final Request<?> request) {
+            return LinkHeader.parseInt(request.getQueryParams().get(pageParam), 1);
+        }
+
+        @Override
+        public <P> Request<P> page(final Request<P> request, final int number) {
+            return request.query(pageParam, number);
+        }
+    }
+
+    class Cursor implements PageStrategy {
+        private final String param;
+        private final Function<Page<?>, String> cursor;
+
+        public Cursor(final String param, final Function<Page<?>, String> cursor) {
+            this.param = param;
+            this.cursor = cursor;
+        }
+
+        @Override
+        public <P> Request<P> next(final Request<P> request, final Response<? extends Page<?>> response) {
+            final Page<?> page = response.getEntity();
+            if (page == null) return null;
+
+            final String next = cursor.apply(page);
+            if (next == null || next.isEmpty()) return null;
+
+            return request.query(param, next);
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Turns a request for the first page of a paged resource into a stream of
+ * the items on every page.  How the next page is found is up to the
+ * {@link PageStrategy}.  When the first response tells us the number of the
+ * last page and a parallelism greater than one is configured, the remaining
+ * pages are requested concurrently, at most {@code parallelism} at a time,
+ * and their items are still streamed in page order.
+ */
+public class Paginator {
+
+    private final PageStrategy strategy;
+    private final int parallelism;
+    private final Executor executor;
+
+    Paginator(final PageStrategy strategy, final int parallelism, final Executor executor) {
+        this.strategy = strategy;
+        this.parallelism = parallelism;
+        this.executor = executor;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public PageStrategy getStrategy() {
+        return strategy;
+    }
+
+    public <T, P extends Page<T>> Stream<T> stream(final Request<P> request, final Function<Request<P>, Response<P>> fetch) {
+        final Function<Request<P>, Response<P>> observed = strategy instanceof AdaptivePageSize
+                ? observe((AdaptivePageSize) strategy, fetch)
+                : fetch;
+
+        final Pages<T, P> pages = new Pages<>(strategy.first(request), observed, null);
+        return Suppliers.asPagedStream(pages).onClose(pages::close);
+    }
+
+    /**
+     * Streams the items like {@link #stream(Request, Function)} and records
+     * the request for the next page in the checkpoint each time the items of
+     * a page have all been consumed.  If the checkpoint already holds a
+     * request, the crawl resumes there instead of at the first page; if it
+     * records a completed crawl, the stream is empty.
+     *
+     * Progress is only meaningful for sequential streams.
+     */
+    public <T, P extends Page<T>> Stream<T> stream(final Request<P> request, final Function<Request<P>, Response<P>> fetch,
+                                                   final Checkpoint checkpoint) {
+        if (checkpoint.isComplete()) return Stream.empty();
+
+        final Function<Request<P>, Response<P>> observed = strategy instanceof AdaptivePageSize
+                ? observe((AdaptivePageSize) strategy, fetch)
+                : fetch;
+
+        final Request<?> saved = checkpoint.load();
+        @SuppressWarnings("unchecked")
+        final Request<P> first = saved != null
+                ? (Request<P>) request.merge(saved)
+                : strategy.first(request);
+
+        final Pages<T, P> pages = new Pages<>(first, observed, checkpoint);
+        return Suppliers.asPagedStream(pages).onClose(pages::close);
+    }
+
+    /**
+     * Streams the items of a client interface method annotated with
+     * {@link Paged}.  The annotation names the {@link Page} type the
+     * responses are unmarshalled into.
+     */
+    public <T> Stream<T> stream(final java.lang.reflect.Method method, final Object[] args,
+                                final Function<Request<Page<T>>, Response<Page<T>>> fetch) {
+        return stream(method, args, ParamConverters.none(), fetch);
+    }
+
+    <T> Stream<T> stream(final java.lang.reflect.Method method, final Object[] args, final ParamConverters converters,
+                         final Function<Request<Page<T>>, Response<Page<T>>> fetch) {
+        final Class<?> pageType = getPageType(method);
+
+        @SuppressWarnings("unchecked")
+        final Request<Page<T>> request = (Request<Page<T>>) Request.from(method, args, converters).response(pageType);
+        return stream(request, fetch);
+    }
+
+    /**
+     * Times each fetch and reports it to the page size tuner
+     */
+    private static <P extends Page<?>> Function<Request<P>, Response<P>> observe(final AdaptivePageSize adaptive,
+                                                                               final Function<Request<P>, Response<P>> fetch) {
+        final PageSizeTuner tuner = adaptive.getTuner();
+        return request -> {
+            final int size = adaptive.size(request);
+            final long start = System.nanoTime();
+            final Response<P> response;
+            try {
+                response = fetch.apply(request);
+            } catch (RuntimeException e) {
+                tuner.failed(size);
+                throw e;
+            }
+            final long nanos = System.nanoTime() - start;
+
+            if (!response.isSuccessful()) {
+                tuner.failed(size);
+                return response;
+            }
+
+            final Page<?> page = response.getEntity();
+            final int items = page == null || page.getItems() == null ? 0 : page.getItems().size();
+            tuner.record(size, items, nanos, contentLength(response.getHeader("content-length")));
+            return response;
+        };
+    }
+
+    /**
+     * The header's value, or -1 if it is missing or not a valid length
+     */
+    private static long contentLength(final String value) {
+        if (value == null) return -1;
+        try {
+            final long length = Long.parseLong(value.trim());
+            return length < 0 ? -1 : length;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static Class<?> getPageType(final java.lang.reflect.Method method) {
+        Paged paged = method.getAnnotation(Paged.class);
+        if (paged == null) paged = method.getDeclaringClass().getAnnotation(Paged.class);
+
+        if (paged == null) {
+            throw new InvalidMethodSignatureException("Method must be annotated with @Paged", method);
+        }
+
+        if (!Page.class.isAssignableFrom(paged.value())) {
+            throw new InvalidMethodSignatureException("@Paged type must implement Page: " + paged.value().getName(), method);
+        }
+
+        if (!Stream.class.equals(method.getReturnType())) {
+            throw new InvalidMethodSignatureException("@Paged methods must return Stream", method);
+        }
+
+        return paged.value();
+    }
+
+    private class Pages<T, P extends Page<T>> implements Supplier<Page<T>> {
+        private final Request<P> first;
+        private final Function<Request<P>, Response<P>> fetch;
+        private final Checkpoint checkpoint;
+        private Request<P> next;
+        private boolean started;
+        private boolean closed;
+
+        private ArrayDeque<CompletableFuture<Response<P>>> window;
+        private int nextPage;
+        private int lastPage;
+
+        Pages(final Request<P> first, final Function<Request<P>, Response<P>> fetch, final Checkpoint checkpoint) {
+            this.first = first;
+            this.fetch = fetch;
+            this.checkpoint = checkpoint;
+            this.next = first;
+        }
+
+        /**
+         * Called when the items of the previous page have been consumed
+         */
+        @Override
+        public Page<T> get() {
+            if (window != null) return fromWindow();
+            if (next == null) return complete();
+
+            final Request<P> request = next;
+            if (started && checkpoint != null) checkpoint.save(request);
+
+            final Response<P> response = fetch(request);
+
+            if (!started) {
+                started = true;
+                if (fanOut(request, response)) return entity(response);
+            }
+
+            next = strategy.next(request, response);
+            return entity(response);
+        }
+
+        /**
+         * Switches to requesting pages by number if the
+         * first response tells us where the last page is
+         */
+        private boolean fanOut(final Request<P> request, final Response<P> response) {
+            if (parallelism < 2) return false;
+
+            final int current = strategy.pageNumber(request);
+            if (current == -1) return false;
+
+            final int last = strategy.lastPage(response);
+            if (last <= current) return false;
+
+            window = new ArrayDeque<>(parallelism);
+            nextPage = current + 1;
+            lastPage = last;
+            next = null;
+            return true;
+        }
+
+        private Page<T> fromWindow() {
+            while (window.size() < parallelism && nextPage <= lastPage) {
+                final Request<P> request = strategy.page(first, nextPage++);
+                window.add(CompletableFuture.supplyAsync(() -> fetch(request), executor));
+            }
+
+            final int number = nextPage - window.size();
+            final CompletableFuture<Response<P>> head = window.poll();
+            if (head == null) return complete();
+
+            if (checkpoint != null) checkpoint.save(strategy.page(first, number));
+
+            try {
+                return entity(head.join());
+            } catch (CompletionException e) {
+                close();
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw e;
+            }
+        }
+
+        private Page<T> complete() {
+            if (checkpoint != null && started && !closed) checkpoint.complete();
+            return null;
+        }
+
+        private Response<P> fetch(final Request<P> request) {
+            final Response<P> response = fetch.apply(request);
+            if (!response.isSuccessful()) {
+                throw new HttpStatusException(request.getMethod(), request.getURI(), response.getStatus(), response.getHeaders(), null);
+            }
+            return response;
+        }
+
+        private Page<T> entity(final Response<P> response) {
+            final P page = response.getEntity();
+            return page != null ? page : Collections::emptyList;
+        }
+
+        public void close() {
+            closed = true;
+            if (window == null) return;
+            for (final CompletableFuture<Response<P>> future : window) {
+                future.cancel(true);
+            }
+            window.clear();
+            nextPage = lastPage + 1;
+        }
+    }
+
+    public static class Builder {
+        private PageStrategy strategy = PageStrategy.linkHeader();
+        private int parallelism = 1;
+        private Executor executor;
+        private String sizeParam;
+        private PageSizeTuner tuner;
+
+        Builder() {
+        }
+
+        public Builder strategy(final PageStrategy strategy) {
+            this.strategy = strategy;
+            return this;
+        }
+
+        /**
+         * Allows up to {@code parallelism} page requests to run at once on
+         * the executor when the last page number is known.  A null executor
+         * uses the threads the blocking request executors use by default.
+         */
+        public Builder parallelism(final int parallelism, final Executor executor) {
+            if (parallelism < 1) throw new IllegalArgumentException("parallelism must be greater than zero: " + parallelism);
+            this.parallelism = parallelism;
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Lets the tuner choose the value of the page size query parameter
+         * from the latency and size of the pages fetched so far.  Pages
+         * requested concurrently after the first keep the first page's size.
+         */
+        public Builder pageSize(final String sizeParam, final PageSizeTuner tuner) {
+            this.sizeParam = sizeParam;
+            this.tuner = tuner;
+            return this;
+        }
+
+        public Paginator build() {
+            final PageStrategy pageStrategy = tuner != null ? new AdaptivePageSize(strategy, sizeParam, tuner) : strategy;
+            return new Paginator(pageStrategy, parallelism, executor != null ? executor : RequestThreads.executor());
+        }
+    }
+}
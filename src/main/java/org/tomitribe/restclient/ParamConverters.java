@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import javax.ws.rs.ext.ParamConverter;
+import java.lang.reflect.Array;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Turns path, query and header parameter values into strings.
+ *
+ * Scalars go through the {@link ParamConverter} registered for their type,
+ * or for the nearest superclass or interface that has one, and otherwise
+ * through {@code toString()}.  The converter chosen for a type is cached.
+ * Collections and arrays are joined with commas in a single pass, and
+ * primitive arrays are written without boxing.
+ *
+ * A set of converters is built once and cannot change, so it can be shared
+ * between threads.  Give it to the clients that should use it with
+ * {@link RestClient.Builder#converters(ParamConverters)}; the static
+ * methods use no converters.
+ */
+public final class ParamConverters {
+
+    private static final ParamConverters NONE = new ParamConverters(Collections.emptyMap());
+
+    private static final Function<Object, String> TO_STRING = Object::toString;
+
+    // page numbers, sizes and small ids are most of the numbers we send
+    private static final String[] SMALL = new String[1024];
+
+    static {
+        for (int i = 0; i < SMALL.length; i++) {
+            SMALL[i] = Integer.toString(i).intern();
+        }
+    }
+
+    private final Map<Class<?>, ParamConverter<?>> registered;
+    private final Map<Class<?>, Function<Object, String>> resolved = new ConcurrentHashMap<>();
+
+    ParamConverters(final Map<Class<?>, ParamConverter<?>> registered) {
+        this.registered = registered;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Converters that format every value with {@code toString()}
+     */
+    public static ParamConverters none() {
+        return NONE;
+    }
+
+    /**
+     * Returns the converter used for values of the given type, or null if
+     * they are formatted with {@code toString()}
+     */
+    public <T> ParamConverter<T> get(final Class<T> type) {
+        @SuppressWarnings("unchecked")
+        final ParamConverter<T> converter = (ParamConverter<T>) find(type);
+        return converter;
+    }
+
+    public String format(final Object value) {
+        if (value instanceof String) return (String) value;
+        if (!(value instanceof Collection) && !value.getClass().isArray()) return convert(value);
+
+        final StringBuilder sb = new StringBuilder();
+        append(sb, value);
+        return sb.toString();
+    }
+
+    /**
+     * Returns one string per element of a collection or array, or a single
+     * string for any other value.  Nested collections are joined with commas.
+     */
+    public List<String> formatAll(final Object value) {
+        if (value instanceof Collection) {
+            final Collection<?> collection = (Collection<?>) value;
+            if (collection.isEmpty()) return Collections.singletonList("");
+
+            final List<String> strings = new ArrayList<>(collection.size());
+            for (final Object item : collection) {
+                strings.add(format(item));
+            }
+            return strings;
+        }
+
+        if (value instanceof int[]) {
+            final int[] array = (int[]) value;
+            if (array.length == 0) return Collections.singletonList("");
+
+            final List<String> strings = new ArrayList<>(array.length);
+            for (final int item : array) {
+                strings.add(format(item));
+            }
+            return strings;
+        }
+
+        if (value instanceof long[]) {
+            final long[] array = (long[]) value;
+            if (array.length == 0) return Collections.singletonList("");
+
+            final List<String> strings = new ArrayList<>(array.length);
+            for (final long item : array) {
+                strings.add(format(item));
+            }
+            return strings;
+        }
+
+        if (value != null && value.getClass().isArray()) {
+            final int length = Array.getLength(value);
+            if (length == 0) return Collections.singletonList("");
+
+            final List<String> strings = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                strings.add(format(Array.get(value, i)));
+            }
+            return strings;
+        }
+
+        return Collections.singletonList(format(value));
+    }
+
+    /**
+     * Formats without boxing unless a converter applies to Integer
+     */
+    public String format(final int value) {
+        if (resolve(Integer.class) != TO_STRING) return convert(value);
+        if (value >= 0 && value < SMALL.length) return SMALL[value];
+        return Integer.toString(value);
+    }
+
+    /**
+     * Formats without boxing unless a converter applies to Long
+     */
+    public String format(final long value) {
+        if (resolve(Long.class) != TO_STRING) return convert(value);
+        if (value >= 0 && value < SMALL.length) return SMALL[(int) value];
+        return Long.toString(value);
+    }
+
+    /**
+     * Formats without boxing unless a converter applies to Boolean
+     */
+    public String format(final boolean value) {
+        if (resolve(Boolean.class) != TO_STRING) return convert(value);
+        return value ? "true" : "false";
+    }
+
+    public static String toString(final Object value) {
+        return NONE.format(value);
+    }
+
+    public static List<String> toStrings(final Object value) {
+        return NONE.formatAll(value);
+    }
+
+    public static String toString(final int value) {
+        return NONE.format(value);
+    }
+
+    public static String toString(final long value) {
+        return NONE.format(value);
+    }
+
+    public static String toString(final boolean value) {
+        return NONE.format(value);
+    }
+
+    void append(final StringBuilder sb, final Object value) {
+        if (value instanceof String) {
+            sb.append((String) value);
+
+        } else if (value instanceof Collection) {
+            boolean first = true;
+            for (final Object item : (Collection<?>) value) {
+                if (!first) sb.append(',');
+                first = false;
+                append(sb, item);
+            }
+
+        } else if (value instanceof Object[]) {
+            final Object[] array = (Object[]) value;
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) sb.append(',');
+                append(sb, array[i]);
+            }
+
+        } else if (value instanceof int[]) {
+            final int[] array = (int[]) value;
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(format(array[i]));
+            }
+
+        } else if (value instanceof long[]) {
+            final long[] array = (long[]) value;
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(format(array[i]));
+            }
+
+        } else if (value != null && value.getClass().isArray()) {
+            // the remaining primitive arrays are rare enough to box
+            final int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                if (i > 0) sb.append(',');
+                append(sb, Array.get(value, i));
+            }
+
+        } else {
+            sb.append(convert(value));
+        }
+    }
+
+    private String convert(final Object value) {
+        return resolve(value.getClass()).apply(value);
+    }
+
+    private Function<Object, String> resolve(final Class<?> type) {
+        if (registered.isEmpty()) return TO_STRING;
+
+        final Function<Object, String> cached = resolved.get(type);
+        if (cached != null) return cached;
+
+        @SuppressWarnings("unchecked")
+        final ParamConverter<Object> converter = (ParamConverter<Object>) find(type);
+        final Function<Object, String> function = converter == null ? TO_STRING : converter::toString;
+        resolved.put(type, function);
+        return function;
+    }
+
+    private ParamConverter<?> find(final Class<?> type) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            final ParamConverter<?> converter = registered.get(c);
+            if (converter != null) return converter;
+        }
+
+        // interfaces nearest the type first
+        final Deque<Class<?>> interfaces = new ArrayDeque<>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            interfaces.addAll(Arrays.asList(c.getInterfaces()));
+        }
+
+        while (!interfaces.isEmpty()) {
+            final Class<?> anInterface = interfaces.poll();
+            final ParamConverter<?> converter = registered.get(anInterface);
+            if (converter != null) return converter;
+            interfaces.addAll(Arrays.asList(anInterface.getInterfaces()));
+        }
+
+        return null;
+    }
+
+    public static class Builder {
+        private final Map<Class<?>, ParamConverter<?>> registered = new LinkedHashMap<>();
+
+        Builder() {
+        }
+
+        /**
+         * Uses the converter for values of the given type and its subtypes
+         */
+        public <T> Builder register(final Class<T> type, final ParamConverter<T> converter) {
+            registered.put(type, converter);
+            return this;
+        }
+
+        public ParamConverters build() {
+            return new ParamConverters(Collections.unmodifiableMap(new LinkedHashMap<>(registered)));
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.tomitribe.restclient.impl.HttpUtils;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A request path parsed once into a {@link Template}, kept by requests made
+ * from a {@link Request#prototype(String)} so building their URI does not
+ * parse the path again.
+ *
+ * The URI is written directly when the result is certain to be the same as
+ * {@link Request#toUriBuilder()} would give: a path of plain characters and
+ * query params without templates.  Anything else returns null and is left
+ * to the UriBuilder.
+ */
+class PathTemplate {
+
+    private final String path;
+    private final Template template;
+    private final List<String> names;
+    private final boolean direct;
+
+    PathTemplate(final String path) {
+        this.path = path;
+        this.template = new Template(path);
+        this.names = template.getNames();
+        this.direct = path.startsWith("/") && !path.contains("//") && isPlain(path);
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    Template getTemplate() {
+        return template;
+    }
+
+    /**
+     * Returns the URI, or null if it should be built by the UriBuilder
+     */
+    URI toURI(final Map<String, String> pathParams, final Map<String, List<String>> queryValues,
+              final Request.Expansion expansion) {
+        if (!direct) return null;
+
+        final String[] encoded = new String[names.size()];
+        for (int i = 0; i < encoded.length; i++) {
+            final String value = pathParams.get(names.get(i));
+            if (value == null) return null;
+            encoded[i] = HttpUtils.pathEncode(value);
+        }
+
+        final StringBuilder uri = new StringBuilder(path.length() + 64);
+        try {
+            template.substitute(encoded, true, uri);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        boolean first = true;
+        for (final Map.Entry<String, List<String>> entry : queryValues.entrySet()) {
+            final String name = entry.getKey();
+            if (name.indexOf('{') != -1) return null;
+
+            if (expansion == Request.Expansion.CSV) {
+                uri.append(first ? '?' : '&').append(name).append('=');
+                first = false;
+
+                final List<String> values = entry.getValue();
+                for (int i = 0; i < values.size(); i++) {
+                    if (i > 0) uri.append(',');
+                    if (!appendValue(uri, values.get(i))) return null;
+                }
+            } else {
+                for (final String value : entry.getValue()) {
+                    uri.append(first ? '?' : '&').append(name).append('=');
+                    first = false;
+                    if (!appendValue(uri, value)) return null;
+                }
+            }
+        }
+
+        try {
+            return new URI(uri.toString());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    private static boolean appendValue(final StringBuilder uri, final String value) {
+        if (value.indexOf('{') != -1) return false;
+        uri.append(HttpUtils.encodePartiallyEncoded(value, true));
+        return true;
+    }
+
+    /**
+     * True if the path outside its variables only has characters the
+     * UriBuilder leaves as they are
+     */
+    private static boolean isPlain(final String path) {
+        int depth = 0;
+        for (int i = 0; i < path.length(); i++) {
+            final char c = path.charAt(i);
+            if (c == '{') depth++;
+            if (c == '}') depth--;
+            if (depth > 0 || c == '}') continue;
+            if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9') continue;
+            if (c == '/' || c == '-' || c == '.' || c == '_' || c == '~') continue;
+            return false;
+        }
+        return true;
+    }
+}
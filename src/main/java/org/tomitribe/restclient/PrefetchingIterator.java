@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Iterator that calls the supplier on a background task and keeps up to
+ * {@code lookAhead} results queued ahead of the consumer.  The supplier is
+ * still called sequentially, so the order of the results is preserved.
+ *
+ * Closing the iterator cancels the background task and wakes a consumer
+ * waiting for the next element, which then sees no more.  If the iterator is
+ * abandoned without being closed, as happens when a stream is short-circuited,
+ * the background task stops once the iterator has been garbage collected.
+ */
+class PrefetchingIterator<T> implements Iterator<T>, AutoCloseable {
+
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final FutureTask<Void> task;
+    private Object next;
+
+    PrefetchingIterator(final Supplier<T> supplier, final Executor executor, final int lookAhead) {
+        if (lookAhead < 1) throw new IllegalArgumentException("lookAhead must be greater than zero: " + lookAhead);
+
+        this.queue = new ArrayBlockingQueue<>(lookAhead);
+        this.task = new FutureTask<>(new Producer<>(supplier, queue, closed, new WeakReference<>(this)), null);
+        executor.execute(task);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            if (closed.get()) return false;
+            try {
+                // polls rather than takes, so a consumer waiting when the iterator is closed wakes up
+                while ((next = queue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                    if (closed.get()) return false;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the next element", e);
+            }
+        }
+
+        if (next instanceof Failure) {
+            close();
+            throw ((Failure) next).exception;
+        }
+
+        return next != END;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) throw new NoSuchElementException();
+
+        @SuppressWarnings("unchecked")
+        final T element = (T) next;
+        next = null;
+        return element;
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            task.cancel(true);
+            queue.clear();
+        }
+    }
+
+    private static class Producer<T> implements Runnable {
+        private final Supplier<T> supplier;
+        private final BlockingQueue<Object> queue;
+        private final AtomicBoolean closed;
+        private final WeakReference<PrefetchingIterator<T>> owner;
+
+        public Producer(final Supplier<T> supplier, final BlockingQueue<Object> queue,
+                        final AtomicBoolean closed, final WeakReference<PrefetchingIterator<T>> owner) {
+            this.supplier = supplier;
+            this.queue = queue;
+            this.closed = closed;
+            this.owner = owner;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed.get()) {
+                    final Object element = fetch();
+                    if (!offer(element)) return;
+                    if (element == END || element instanceof Failure) return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private Object fetch() {
+            try {
+                final T element = supplier.get();
+                return element != null ? element : END;
+            } catch (RuntimeException e) {
+                return new Failure(e);
+            }
+        }
+
+        /**
+         * Waits for room in the queue, giving up if the consumer
+         * closed or abandoned the iterator in the meantime.
+         */
+        private boolean offer(final Object element) throws InterruptedException {
+            while (!queue.offer(element, 100, TimeUnit.MILLISECONDS)) {
+                if (closed.get() || owner.get() == null) return false;
+            }
+            return true;
+        }
+    }
+
+    private static class Failure {
+        private final RuntimeException exception;
+
+        public Failure(final RuntimeException exception) {
+            this.exception = exception;
+        }
+    }
+}
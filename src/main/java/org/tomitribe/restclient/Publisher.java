@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+/**
+ * Demand-driven source of elements.  The interfaces have exactly the shape of
+ * {@code java.util.concurrent.Flow} and the Reactive Streams API, which are
+ * not available on the Java 8 baseline, so adapting to either is a matter of
+ * delegating each method.
+ */
+public interface Publisher<T> {
+
+    void subscribe(Subscriber<? super T> subscriber);
+
+    interface Subscriber<T> {
+
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    interface Subscription {
+
+        void request(long n);
+
+        void cancel();
+    }
+}
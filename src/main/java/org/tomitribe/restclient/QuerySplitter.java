@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.tomitribe.restclient.impl.HttpUtils;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Splits a GET request whose URI would be longer than {@code maxUriLength}
+ * because of a collection-valued query parameter.  The values are divided
+ * into chunks that each fit, the chunks are sent concurrently through a
+ * {@link ScatterGather} with at most {@code maxConcurrency} in flight, and
+ * the response bodies are concatenated before being unmarshalled, so the
+ * caller still sees a single result.
+ *
+ * Bodies that are JSON arrays are joined into one array.  Bodies that are
+ * JSON objects, such as a {@link Page}, are joined on their {@code items}
+ * property, or on their only array property; the other properties come
+ * from the first response.
+ */
+public class QuerySplitter {
+
+    private final int maxUriLength;
+    private final int maxConcurrency;
+
+    QuerySplitter(final int maxUriLength, final int maxConcurrency) {
+        this.maxUriLength = maxUriLength;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getMaxUriLength() {
+        return maxUriLength;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Returns the requests to send in place of the request built for the
+     * client interface method, or a list holding just that request if it
+     * does not need splitting.
+     */
+    public <T> List<Request<T>> split(final Request<T> request, final java.lang.reflect.Method method,
+                                      final Object[] args, final RequestExecutor executor) {
+        if (request.getMethod() != null && request.getMethod() != Request.Method.GET) return single(request);
+
+        // Split the largest collection; the others are kept whole in every chunk
+        Param<?> largest = null;
+        for (final Param<?> param : Param.from(method, args)) {
+            if (param.getType() != Param.Type.QUERY || !(param.get() instanceof Collection)) continue;
+            if (largest == null || size(param) > size(largest)) largest = param;
+        }
+
+        if (largest == null) return single(request);
+
+        // the values as the request's converters formatted them
+        final List<String> values = request.getQueryValues().get(largest.getName());
+        if (values == null) return single(request);
+        return split(request, largest.getName(), values, executor);
+    }
+
+    /**
+     * Returns one request per chunk of the values of the named query
+     * parameter, or a list holding just the request if the URI fits.
+     */
+    public <T> List<Request<T>> split(final Request<T> request, final String name, final Collection<?> values,
+                                      final RequestExecutor executor) {
+        final int length = length(executor.resolve(request));
+        if (length <= maxUriLength || values.size() < 2) return single(request);
+
+        final int base = length(executor.resolve(request.query(name, "")));
+        final int separator = request.getExpansion() == Request.Expansion.MULTI
+                ? HttpUtils.encodePartiallyEncoded(name, true).length() + 2
+                : HttpUtils.encodePartiallyEncoded("a,b", true).length() - 2;
+        final int budget = maxUriLength - base;
+        if (budget <= 0) {
+            throw new IllegalArgumentException(String.format("URI without %s is already %s characters, maxUriLength is %s",
+                    name, base, maxUriLength));
+        }
+
+        final List<Request<T>> requests = new ArrayList<>();
+        List<Object> chunk = new ArrayList<>();
+        int used = 0;
+
+        for (final Object value : values) {
+            final int cost = HttpUtils.encodePartiallyEncoded(ParamConverters.toString(value), true).length();
+            final int added = chunk.isEmpty() ? cost : cost + separator;
+
+            if (!chunk.isEmpty() && used + added > budget) {
+                requests.add(request.query(name, chunk));
+                chunk = new ArrayList<>();
+                used = 0;
+                chunk.add(value);
+                used += cost;
+                continue;
+            }
+
+            chunk.add(value);
+            used += added;
+        }
+
+        if (!chunk.isEmpty()) requests.add(request.query(name, chunk));
+        return requests;
+    }
+
+    /**
+     * Sends the requests, at most {@code maxConcurrency} at a time, and
+     * unmarshals their concatenated bodies into the response type.  If any
+     * request fails the future fails with the first error.
+     */
+    public <T> CompletableFuture<T> executeAsync(final List<Request<T>> requests, final RequestExecutor executor) {
+        if (requests.size() == 1) return executor.executeAsync(requests.get(0));
+
+        final List<Request<byte[]>> bodies = new ArrayList<>(requests.size());
+        for (final Request<T> request : requests) {
+            bodies.add(request.response(byte[].class));
+        }
+
+        final ScatterGather scatterGather = ScatterGather.builder(executor)
+                .maxConcurrency(maxConcurrency)
+                .maxConcurrencyPerHost(0)
+                .build();
+
+        final Class<T> type = requests.get(0).getResponseType();
+        return scatterGather.executeAllAsync(bodies)
+                .thenApply(results -> {
+                    final List<ScatterGather.Result<byte[]>> failures = results.getFailures();
+                    if (!failures.isEmpty()) throw new CompletionException(failures.get(0).getError());
+
+                    return Entities.read(type, concat(results.getValues()));
+                });
+    }
+
+    public <T> T execute(final List<Request<T>> requests, final RequestExecutor executor) {
+        try {
+            return executeAsync(requests, executor).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    static byte[] concat(final List<byte[]> bodies) {
+        final List<JsonValue> values = new ArrayList<>(bodies.size());
+        for (final byte[] body : bodies) {
+            if (body == null || body.length == 0) continue;
+            try (final JsonReader reader = Json.createReader(new ByteArrayInputStream(body))) {
+                values.add(reader.readValue());
+            }
+        }
+
+        if (values.isEmpty()) return new byte[0];
+
+        final JsonValue first = values.get(0);
+        final JsonValue merged;
+        if (first.getValueType() == JsonValue.ValueType.ARRAY) {
+            merged = concatArrays(values);
+        } else if (first.getValueType() == JsonValue.ValueType.OBJECT) {
+            merged = concatObjects(values);
+        } else {
+            throw new IllegalStateException("Cannot concatenate responses of type " + first.getValueType());
+        }
+
+        return merged.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static JsonArray concatArrays(final List<JsonValue> values) {
+        final JsonArrayBuilder builder = Json.createArrayBuilder();
+        for (final JsonValue value : values) {
+            if (value.getValueType() != JsonValue.ValueType.ARRAY) {
+                throw new IllegalStateException("Cannot concatenate an array with " + value.getValueType());
+            }
+            for (final JsonValue item : value.asJsonArray()) {
+                builder.add(item);
+            }
+        }
+        return builder.build();
+    }
+
+    private static JsonObject concatObjects(final List<JsonValue> values) {
+        final JsonObject first = values.get(0).asJsonObject();
+        final String property = itemsProperty(first);
+
+        final List<JsonValue> arrays = new ArrayList<>(values.size());
+        for (final JsonValue value : values) {
+            if (value.getValueType() != JsonValue.ValueType.OBJECT) {
+                throw new IllegalStateException("Cannot concatenate an object with " + value.getValueType());
+            }
+            final JsonValue items = value.asJsonObject().get(property);
+            if (items != null && items.getValueType() == JsonValue.ValueType.ARRAY) arrays.add(items);
+        }
+
+        final JsonObjectBuilder builder = Json.createObjectBuilder();
+        for (final Map.Entry<String, JsonValue> entry : first.entrySet()) {
+            builder.add(entry.getKey(), property.equals(entry.getKey()) ? concatArrays(arrays) : entry.getValue());
+        }
+        return builder.build();
+    }
+
+    private static String itemsProperty(final JsonObject object) {
+        final JsonValue items = object.get("items");
+        if (items != null && items.getValueType() == JsonValue.ValueType.ARRAY) return "items";
+
+        String found = null;
+        for (final Map.Entry<String, JsonValue> entry : object.entrySet()) {
+            if (entry.getValue().getValueType() != JsonValue.ValueType.ARRAY) continue;
+            if (found != null) {
+                throw new IllegalStateException("Cannot tell which array to concatenate: " + found + " or " + entry.getKey());
+            }
+            found = entry.getKey();
+        }
+
+        if (found == null) throw new IllegalStateException("Response object has no array to concatenate");
+        return found;
+    }
+
+    private static int size(final Param<?> param) {
+        return ((Collection<?>) param.get()).size();
+    }
+
+    private static int length(final URI uri) {
+        return uri.toASCIIString().length();
+    }
+
+    private static <T> List<Request<T>> single(final Request<T> request) {
+        final List<Request<T>> list = new ArrayList<>(1);
+        list.add(request);
+        return list;
+    }
+
+    public static class Builder {
+        private int maxUriLength = 2048;
+        private int maxConcurrency = 4;
+
+        Builder() {
+        }
+
+        /**
+         * Longest URI, in characters, to send before splitting
+         */
+        public Builder maxUriLength(final int maxUriLength) {
+            if (maxUriLength < 1) throw new IllegalArgumentException("maxUriLength must be greater than zero: " + maxUriLength);
+            this.maxUriLength = maxUriLength;
+            return this;
+        }
+
+        /**
+         * Maximum chunks of one call in flight, zero for unlimited
+         */
+        public Builder maxConcurrency(final int maxConcurrency) {
+            if (maxConcurrency < 0) throw new IllegalArgumentException("maxConcurrency must not be negative: " + maxConcurrency);
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public QuerySplitter build() {
+            return new QuerySplitter(maxUriLength, maxConcurrency);
+        }
+    }
+}
@@ -17,7 +17,6 @@
 package org.tomitribe.restclient;
 
 import org.tomitribe.restclient.impl.UriBuilderImpl;
-import org.tomitribe.util.Join;
 
 import javax.json.bind.Jsonb;
 import javax.json.bind.annotation.JsonbProperty;
@@ -37,13 +36,15 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.UriBuilder;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Array;
 import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
 import java.net.URI;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -52,7 +53,10 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -66,27 +70,80 @@ public class Request<ResponseType> {
     private final String body;
     private final Class<ResponseType> responseType;
     private final Map<String, String> pathParams;
-    private final Map<String, String> queryParams;
-    private final Map<String, String> headerParams;
+    private final Map<String, List<String>> queryValues;
+    private final Map<String, List<String>> headerValues;
+    // null until set, so merging can tell an explicit CSV from the default
+    private final Expansion expansion;
+    private final RequestDefaults defaults;
+    private final PathTemplate pathTemplate;
+    private Map<String, String> queryParams;
+    private Map<String, String> headerParams;
+    private Fingerprint fingerprint;
 
     Request(final Method method, final String path, final String body,
             final Map<String, String> queryParams, final Map<String, String> headerParams,
             final Map<String, String> pathParams, final Class<ResponseType> responseType) {
+        this(method, path, body, singleValued(queryParams), singleValued(headerParams), pathParams, responseType, null);
+    }
+
+    Request(final Method method, final String path, final String body,
+            final Map<String, List<String>> queryValues, final Map<String, List<String>> headerValues,
+            final Map<String, String> pathParams, final Class<ResponseType> responseType, final Expansion expansion) {
+        this(method, path, body, queryValues, headerValues, pathParams, responseType, expansion, null);
+    }
+
+    Request(final Method method, final String path, final String body,
+            final Map<String, List<String>> queryValues, final Map<String, List<String>> headerValues,
+            final Map<String, String> pathParams, final Class<ResponseType> responseType, final Expansion expansion,
+            final RequestDefaults defaults) {
+        this(method, path, body, queryValues, headerValues, pathParams, responseType, expansion, defaults, null);
+    }
+
+    Request(final Method method, final String path, final String body,
+            final Map<String, List<String>> queryValues, final Map<String, List<String>> headerValues,
+            final Map<String, String> pathParams, final Class<ResponseType> responseType, final Expansion expansion,
+            final RequestDefaults defaults, final PathTemplate pathTemplate) {
         this.method = method;
         this.path = path;
         this.body = body;
         this.responseType = responseType;
-        this.queryParams = Collections.unmodifiableMap(new LinkedHashMap<>(queryParams));
+        this.expansion = expansion;
+        this.defaults = defaults;
+        this.pathTemplate = template(path, pathTemplate);
         this.pathParams = Collections.unmodifiableMap(new LinkedHashMap<>(pathParams));
 
-        // Lower case all headers
-        final LinkedHashMap<String, String> headers = new LinkedHashMap<>();
-        for (final Map.Entry<String, String> entry : headerParams.entrySet()) {
-            headers.put(entry.getKey().toLowerCase(), entry.getValue());
+        final LinkedHashMap<String, List<String>> query = new LinkedHashMap<>();
+        for (final Map.Entry<String, List<String>> entry : queryValues.entrySet()) {
+            query.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
         }
+        this.queryValues = Collections.unmodifiableMap(query);
 
-        this.headerParams = Collections.unmodifiableMap(headers);
+        // Lower case all headers
+        final LinkedHashMap<String, List<String>> headers = new LinkedHashMap<>();
+        for (final Map.Entry<String, List<String>> entry : headerValues.entrySet()) {
+            headers.put(entry.getKey().toLowerCase(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+        }
+        this.headerValues = Collections.unmodifiableMap(headers);
+    }
 
+    /**
+     * Uses the maps as they are.  They must be unmodifiable, hold
+     * unmodifiable lists and have lower-case header names.
+     */
+    private Request(final Method method, final String path, final String body, final Class<ResponseType> responseType,
+                    final Map<String, String> pathParams, final Map<String, List<String>> queryValues,
+                    final Map<String, List<String>> headerValues, final Expansion expansion,
+                    final RequestDefaults defaults, final PathTemplate pathTemplate) {
+        this.method = method;
+        this.path = path;
+        this.body = body;
+        this.responseType = responseType;
+        this.pathParams = pathParams;
+        this.queryValues = queryValues;
+        this.headerValues = headerValues;
+        this.expansion = expansion;
+        this.defaults = defaults;
+        this.pathTemplate = template(path, pathTemplate);
     }
 
     public static <ResponseType> Builder<ResponseType> builder() {
@@ -105,6 +162,42 @@ public class Request<ResponseType> {
         return toBuilder().header(name, value).build();
     }
 
+    public Request<ResponseType> path(final String name, final int value) {
+        return toBuilder().path(name, value).build();
+    }
+
+    public Request<ResponseType> path(final String name, final long value) {
+        return toBuilder().path(name, value).build();
+    }
+
+    public Request<ResponseType> path(final String name, final boolean value) {
+        return toBuilder().path(name, value).build();
+    }
+
+    public Request<ResponseType> query(final String name, final int value) {
+        return toBuilder().query(name, value).build();
+    }
+
+    public Request<ResponseType> query(final String name, final long value) {
+        return toBuilder().query(name, value).build();
+    }
+
+    public Request<ResponseType> query(final String name, final boolean value) {
+        return toBuilder().query(name, value).build();
+    }
+
+    public Request<ResponseType> header(final String name, final int value) {
+        return toBuilder().header(name, value).build();
+    }
+
+    public Request<ResponseType> header(final String name, final long value) {
+        return toBuilder().header(name, value).build();
+    }
+
+    public Request<ResponseType> header(final String name, final boolean value) {
+        return toBuilder().header(name, value).build();
+    }
+
     public Request<ResponseType> body(final Object value) {
         final String json = JsonMarshalling.toFormattedJson(value);
         return toBuilder().body(json)
@@ -118,8 +211,11 @@ public class Request<ResponseType> {
                 .path(this.path)
                 .body(this.body)
                 .pathParams(this.pathParams)
-                .queryParams(this.queryParams)
-                .headerParams(this.headerParams)
+                .queryValues(this.queryValues)
+                .headerValues(this.headerValues)
+                .expansion(this.expansion)
+                .defaults(this.defaults)
+                .pathTemplate(this.pathTemplate)
                 .responseType(responseType).build();
     }
 
@@ -144,40 +240,167 @@ public class Request<ResponseType> {
     }
 
     public URI getURI() {
+        if (pathTemplate != null) {
+            final URI uri = pathTemplate.toURI(pathParams, getQueryValues(), getExpansion());
+            if (uri != null) return uri;
+        }
+
         return toUriBuilder().resolveTemplates((Map) this.pathParams).build();
     }
 
+    /**
+     * Query params with the values of each joined by commas,
+     * including those from the defaults
+     */
     public Map<String, String> getQueryParams() {
-        return queryParams;
+        Map<String, String> params = this.queryParams;
+        if (params == null) {
+            params = joined(queryValues);
+            if (defaults != null) params = LayeredMap.of(defaults.getQueryParams(), params);
+            this.queryParams = params;
+        }
+        return params;
     }
 
+    /**
+     * Header params with the values of each joined by commas,
+     * including those from the defaults
+     */
     public Map<String, String> getHeaderParams() {
-        return headerParams;
+        Map<String, String> params = this.headerParams;
+        if (params == null) {
+            params = joined(headerValues);
+            if (defaults != null) params = LayeredMap.of(defaults.getHeaderParams(), params);
+            this.headerParams = params;
+        }
+        return params;
+    }
+
+    public Map<String, List<String>> getQueryValues() {
+        if (defaults == null) return queryValues;
+        return LayeredMap.of(defaults.getQueryValues(), queryValues);
+    }
+
+    public Map<String, List<String>> getHeaderValues() {
+        if (defaults == null) return headerValues;
+        return LayeredMap.of(defaults.getHeaderValues(), headerValues);
+    }
+
+    /**
+     * Returns the shared defaults under this request's own params, or null
+     */
+    public RequestDefaults getDefaults() {
+        return defaults;
+    }
+
+    /**
+     * Returns a copy of this request that falls back to the defaults
+     * for headers and query params it does not set itself
+     */
+    public Request<ResponseType> defaults(final RequestDefaults defaults) {
+        return new Request<>(method, path, body, responseType, pathParams, queryValues, headerValues, expansion, defaults, pathTemplate);
+    }
+
+    /**
+     * How query params with several values are written in the URI
+     */
+    public Expansion getExpansion() {
+        return expansion == null ? Expansion.CSV : expansion;
     }
 
     public String getBody() {
         return body;
     }
 
+    /**
+     * Returns the fingerprint of this request, computed on first use
+     */
+    public Fingerprint fingerprint() {
+        Fingerprint fingerprint = this.fingerprint;
+        if (fingerprint == null) {
+            fingerprint = Fingerprint.of(this, null);
+            this.fingerprint = fingerprint;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Returns a fingerprint that only includes the named headers
+     */
+    public Fingerprint fingerprint(final Collection<String> headers) {
+        final Set<String> names = new HashSet<>();
+        for (final String header : headers) {
+            names.add(header.toLowerCase());
+        }
+        return Fingerprint.of(this, names);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Request)) return false;
+        final Request<?> that = (Request<?>) o;
+        return method == that.method
+                && Objects.equals(path, that.path)
+                && Objects.equals(body, that.body)
+                && Objects.equals(responseType, that.responseType)
+                && getExpansion() == that.getExpansion()
+                && pathParams.equals(that.pathParams)
+                && getQueryValues().equals(that.getQueryValues())
+                && getHeaderValues().equals(that.getHeaderValues());
+    }
+
+    @Override
+    public int hashCode() {
+        return fingerprint().hashCode();
+    }
+
     public Entity<String> getEntity() {
         return hasBody() ? Entity.entity(this.getBody(), MediaType.APPLICATION_JSON_TYPE) : null;
     }
 
     public UriBuilder toUriBuilder() {
-        final UriBuilder builder = new UriBuilderImpl().path(path);
+        final UriBuilder builder = new UriBuilderImpl()
+                .queryValueIsCollection(getExpansion() == Expansion.CSV)
+                .path(path);
 
-        for (Map.Entry<String, String> entry : queryParams.entrySet()) {
-            builder.queryParam(entry.getKey(), entry.getValue());
+        for (Map.Entry<String, List<String>> entry : getQueryValues().entrySet()) {
+            builder.queryParam(entry.getKey(), entry.getValue().toArray());
         }
 
         return builder;
     }
 
     public static Request<?> target(final String path, final Object... pathParameters) {
-        final Template template = new Template(path);
-        final HashMap<String, String> pathParams = new HashMap<>();
+        final PathTemplate template = new PathTemplate(path);
+        final Map<String, String> pathParams = bind(template, new HashMap<>(), pathParameters);
+        return new Request<>(null, path, null, new HashMap<>(), new HashMap<>(), pathParams, null, null, null, template);
+    }
 
-        final List<String> variables = template.getVariables();
+    /**
+     * Parses the path template once.  Requests made from the prototype with
+     * {@link #bind(Object...)} or the builder keep the parsed template, so
+     * building their URI does not parse the path again.
+     */
+    public static Request<?> prototype(final String path) {
+        return target(path);
+    }
+
+    /**
+     * Returns a copy of this request with the values set as the path params
+     * in the order their variables appear in the path
+     */
+    public Request<ResponseType> bind(final Object... values) {
+        final PathTemplate template = pathTemplate != null ? pathTemplate : new PathTemplate(path);
+        final Map<String, String> params = bind(template, new LinkedHashMap<>(pathParams), values);
+        return new Request<>(method, path, body, responseType, Collections.unmodifiableMap(params),
+                queryValues, headerValues, expansion, defaults, template);
+    }
+
+    private static Map<String, String> bind(final PathTemplate template, final Map<String, String> pathParams,
+                                            final Object... pathParameters) {
+        final String path = template.getPath();
+        final List<String> variables = template.getTemplate().getVariables();
         final ListIterator<String> iterator = variables.listIterator();
         for (int i = 0; i < pathParameters.length; i++) {
             if (!iterator.hasNext()) {
@@ -187,25 +410,37 @@ public class Request<ResponseType> {
             }
             final String name = iterator.next();
             final Object parameter = pathParameters[i];
-            final String stringValue = stringValue(name, parameter);
+            final String stringValue = ParamConverters.toString(parameter);
             pathParams.put(name, stringValue);
         }
 
-        return new Request<>(null, path, null, new HashMap<>(), new HashMap<>(), pathParams, null);
+        return pathParams;
+    }
+
+    /**
+     * Keeps the parsed template only if it is for this path
+     */
+    private static PathTemplate template(final String path, final PathTemplate template) {
+        if (template == null || !template.getPath().equals(path)) return null;
+        return template;
     }
 
     public static Request<?> from(final String pathTemplate, final Object annotatedObject) {
+        return from(pathTemplate, annotatedObject, ParamConverters.none());
+    }
+
+    private static Request<?> from(final String pathTemplate, final Object annotatedObject, final ParamConverters converters) {
         final Map<AnnotatedField.Type, List<AnnotatedField>> fields = Stream.of(annotatedObject.getClass().getDeclaredFields())
                 .map(field -> AnnotatedField.from(field, annotatedObject))
                 .collect(Collectors.groupingBy(AnnotatedField::getType));
 
-        final Map<String, String> queryParams = mapToObject(fields, AnnotatedField.Type.QUERY);
-        final Map<String, String> headerParams = mapToObject(fields, AnnotatedField.Type.HEADER);
-        final Map<String, String> pathParams = mapToObject(fields, AnnotatedField.Type.PATH);
+        final Map<String, List<String>> queryValues = mapToValues(fields, AnnotatedField.Type.QUERY, converters);
+        final Map<String, List<String>> headerValues = mapToValues(fields, AnnotatedField.Type.HEADER, converters);
+        final Map<String, String> pathParams = mapToObject(fields, AnnotatedField.Type.PATH, converters);
 
         final String json = fields.get(AnnotatedField.Type.BODY) == null ? null : toJson(annotatedObject);
 
-        return new Request<>(null, pathTemplate, json, queryParams, headerParams, pathParams, null);
+        return new Request<>(null, pathTemplate, json, queryValues, headerValues, pathParams, null, null);
     }
 
     public static Request<?> from(final Object annotatedObject) {
@@ -213,6 +448,13 @@ public class Request<ResponseType> {
     }
 
     public static Request<?> from(final java.lang.reflect.Method method, final Object[] args) {
+        return from(method, args, ParamConverters.none());
+    }
+
+    /**
+     * Builds the request with the parameter values formatted by the converters
+     */
+    static Request<?> from(final java.lang.reflect.Method method, final Object[] args, final ParamConverters converters) {
         final Path pathAnnotation = method.getAnnotation(Path.class);
         final String path = pathAnnotation.value();
 
@@ -231,30 +473,66 @@ public class Request<ResponseType> {
         final Request<?> requestFromObject;
         if (unknown.size() == 1) {
             final Object annotatedObject = unknown.get(0);
-            requestFromObject = from(annotatedObject);
+            requestFromObject = from(null, annotatedObject, converters);
         } else {
             requestFromObject = null;
         }
 
         final List<Param<Field>> fields = new ArrayList<>();
-        final Map<String, String> pathParams = mapParams(params, fields, Param.Type.PATH);
-        final Map<String, String> queryParams = mapParams(params, fields, Param.Type.QUERY);
-        final Map<String, String> headerParams = mapParams(params, fields, Param.Type.HEADER);
-
-        if (!Void.TYPE.equals(method.getReturnType())) {
-            final Set<String> accept = getAccept(headerParams);
-            accept.add("application/json");
-            headerParams.put("accept", Join.join(", ", accept));
+        final Map<String, String> pathParams = mapParams(params, fields, Param.Type.PATH, converters);
+        final Map<String, List<String>> queryValues = mapValues(params, fields, Param.Type.QUERY, converters);
+        final Map<String, List<String>> headerValues = mapValues(params, fields, Param.Type.HEADER, converters);
+
+        @SuppressWarnings("unchecked")
+        final Class<Object> responseType = (Class<Object>) getResponseType(method);
+        if (responseType != null) {
+            final List<String> accept = new ArrayList<>(headerValues.getOrDefault("accept", Collections.emptyList()));
+            if (!containsToken(accept, "application/json")) accept.add("application/json");
+            headerValues.put("accept", accept);
         }
 
 
         final Method httpMethod = getRequestMethod(method);
-        final Request<Object> requestFromParameters = new Request<>(httpMethod, path, null, queryParams, headerParams, pathParams, null);
+        final Request<Object> requestFromParameters = new Request<>(httpMethod, path, null, queryValues, headerValues, pathParams, responseType, null);
 
         if (requestFromObject == null) return requestFromParameters;
         return requestFromObject.merge(requestFromParameters);
     }
 
+    /**
+     * Returns true if the method returns a CompletableFuture or CompletionStage
+     */
+    static boolean isAsync(final java.lang.reflect.Method method) {
+        final Class<?> returnType = method.getReturnType();
+        return CompletableFuture.class.equals(returnType) || CompletionStage.class.equals(returnType);
+    }
+
+    /**
+     * Returns the type the response body should be unmarshalled into, or
+     * null if the method does not expect one.  For methods returning a
+     * CompletableFuture or CompletionStage this is the type it completes with.
+     */
+    static Class<?> getResponseType(final java.lang.reflect.Method method) {
+        final Class<?> returnType = method.getReturnType();
+        if (Void.TYPE.equals(returnType)) return null;
+        if (!isAsync(method)) return returnType;
+
+        final java.lang.reflect.Type genericType = method.getGenericReturnType();
+        if (!(genericType instanceof ParameterizedType)) return Object.class;
+
+        final Class<?> type = rawType(((ParameterizedType) genericType).getActualTypeArguments()[0]);
+        return Void.class.equals(type) ? null : type;
+    }
+
+    private static Class<?> rawType(final java.lang.reflect.Type type) {
+        if (type instanceof Class) return (Class<?>) type;
+        if (type instanceof ParameterizedType) return rawType(((ParameterizedType) type).getRawType());
+        if (type instanceof GenericArrayType) {
+            return Array.newInstance(rawType(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        }
+        return Object.class;
+    }
+
     private static Method getRequestMethod(final java.lang.reflect.Method method) {
         if (method.isAnnotationPresent(GET.class)) return Method.GET;
         if (method.isAnnotationPresent(POST.class)) return Method.POST;
@@ -266,17 +544,33 @@ public class Request<ResponseType> {
         throw new InvalidMethodSignatureException("Method must be annotated with one of @GET, @POST, @PUT, @DELETE, @PATCH, @OPTIONS or @HEAD", method);
     }
 
-    private static Set<String> getAccept(final Map<String, String> headerParams) {
-        final Object accept = headerParams.get("accept");
-
-        if (accept == null) return new HashSet<>();
-        final String[] values = (accept + "").split(" *, *");
-        return new HashSet<>(Arrays.asList(values));
+    /**
+     * Returns true if one of the values, or one of the comma-separated
+     * items within a value, equals the token
+     */
+    private static boolean containsToken(final List<String> values, final String token) {
+        for (final String value : values) {
+            int start = 0;
+            while (start <= value.length()) {
+                int end = value.indexOf(',', start);
+                if (end == -1) end = value.length();
+
+                int from = start;
+                int to = end;
+                while (from < to && value.charAt(from) == ' ') from++;
+                while (to > from && value.charAt(to - 1) == ' ') to--;
+
+                if (to - from == token.length() && value.regionMatches(from, token, 0, token.length())) return true;
+                start = end + 1;
+            }
+        }
+        return false;
     }
 
-    private static Map<String, String> mapParams(final List<Param<Parameter>> params, final List<Param<Field>> fields, final Param.Type path) {
+    private static Map<String, String> mapParams(final List<Param<Parameter>> params, final List<Param<Field>> fields, final Param.Type path,
+                                                 final ParamConverters converters) {
         final Function<Param<? extends AnnotatedElement>, String> value = param -> {
-            return stringValue(param.getName(), param.get());
+            return converters.format(param.get());
         };
         return Stream.concat(fields.stream(), params.stream())
                 .filter(param -> path.equals(param.getType()))
@@ -284,11 +578,37 @@ public class Request<ResponseType> {
                 .collect(Collectors.toMap(Param::getName, value));
     }
 
-    private static Map<String, String> mapToObject(final Map<AnnotatedField.Type, List<AnnotatedField>> fields, final AnnotatedField.Type type) {
+    private static Map<String, List<String>> mapValues(final List<Param<Parameter>> params, final List<Param<Field>> fields, final Param.Type type,
+                                                       final ParamConverters converters) {
+        final Map<String, List<String>> values = new LinkedHashMap<>();
+        Stream.concat(fields.stream(), params.stream())
+                .filter(param -> type.equals(param.getType()))
+                .filter(param -> param.get() != null)
+                .forEach(param -> {
+                    if (values.put(param.getName(), converters.formatAll(param.get())) != null) {
+                        throw new IllegalStateException("Duplicate key " + param.getName());
+                    }
+                });
+        return values;
+    }
+
+    private static Map<String, List<String>> mapToValues(final Map<AnnotatedField.Type, List<AnnotatedField>> fields, final AnnotatedField.Type type,
+                                                         final ParamConverters converters) {
+        final Map<String, List<String>> values = new LinkedHashMap<>();
+        for (final AnnotatedField field : fields.getOrDefault(type, Collections.emptyList())) {
+            if (values.put(field.getName(), converters.formatAll(field.getValue())) != null) {
+                throw new IllegalStateException("Duplicate key " + field.getName());
+            }
+        }
+        return values;
+    }
+
+    private static Map<String, String> mapToObject(final Map<AnnotatedField.Type, List<AnnotatedField>> fields, final AnnotatedField.Type type,
+                                                   final ParamConverters converters) {
         final List<AnnotatedField> list = fields.getOrDefault(type, Collections.EMPTY_LIST);
 
         final Function<AnnotatedField, String> getValue = annotatedField -> {
-            return stringValue(annotatedField.getName(), annotatedField.getValue());
+            return converters.format(annotatedField.getValue());
         };
         return list.stream()
                 .collect(Collectors.toMap(AnnotatedField::getName, getValue));
@@ -306,36 +626,81 @@ public class Request<ResponseType> {
                 .body(this.body)
                 .responseType(this.responseType)
                 .pathParams(new LinkedHashMap<>(this.pathParams))
-                .queryParams(new LinkedHashMap<>(this.queryParams))
-                .headerParams(new LinkedHashMap<>(this.headerParams));
+                .queryValues(this.queryValues)
+                .headerValues(this.headerValues)
+                .expansion(this.expansion)
+                .defaults(this.defaults)
+                .pathTemplate(this.pathTemplate);
     }
 
+    @SuppressWarnings("unchecked")
     public <T> Request<T> merge(final Request<T> that) {
-        // Start with a copy of this request
-        final Builder<T> merged = new Builder<T>()
-                .method(this.method)
-                .path(this.path)
-                .body(this.body)
-                .pathParams(new LinkedHashMap<>(this.pathParams))
-                .queryParams(new LinkedHashMap<>(this.queryParams))
-                .headerParams(new LinkedHashMap<>(this.headerParams));
+        return (Request<T>) mergeAll(this, that);
+    }
 
-        // Override with the supplied request
-        merged.queryParams.putAll(that.queryParams);
-        merged.pathParams.putAll(that.pathParams);
-        merged.headerParams.putAll(that.headerParams);
+    /**
+     * Merges the requests in one pass.  Each request overrides the ones
+     * before it, as if they were combined with {@link #merge(Request)}
+     * from left to right.  A map that only one request has entries for is
+     * shared with the result rather than copied, so a request holding
+     * default headers can be merged into many others cheaply.
+     *
+     * Only the params set on the requests themselves are merged.  The
+     * result falls back to the {@link RequestDefaults} of the last request
+     * that has any, so defaults never replace an explicit param.
+     */
+    public static Request<?> mergeAll(final Request<?>... requests) {
+        Method method = null;
+        String path = null;
+        PathTemplate pathTemplate = null;
+        String body = null;
+        Class<?> responseType = null;
+        Expansion expansion = null;
+        RequestDefaults defaults = null;
+
+        for (final Request<?> request : requests) {
+            if (request.method != null) method = request.method;
+            if (request.path != null) {
+                path = request.path;
+                pathTemplate = request.pathTemplate;
+            }
+            if (request.body != null) body = request.body;
+            if (request.responseType != null) responseType = request.responseType;
+            if (request.expansion != null) expansion = request.expansion;
+            if (request.defaults != null) defaults = request.defaults;
+        }
 
-        if (that.body != null) merged.body(that.body);
-        if (that.path != null) merged.path(that.path);
-        if (that.method != null) merged.method(that.method);
+        @SuppressWarnings("unchecked")
+        final Class<Object> type = (Class<Object>) responseType;
+        return new Request<>(method, path, body, type,
+                layer(requests, request -> request.pathParams),
+                layer(requests, request -> request.queryValues),
+                layer(requests, request -> request.headerValues),
+                expansion, defaults, pathTemplate);
+    }
 
-        if (that.responseType != null) {
-            merged.responseType(that.responseType);
-        } else if (this.responseType != null) {
-            merged.responseType((Class<T>) this.responseType);
+    /**
+     * Returns the map of the only request that has entries, or the
+     * entries of all of them with later requests taking precedence
+     */
+    private static <V> Map<String, V> layer(final Request<?>[] requests, final Function<Request<?>, Map<String, V>> map) {
+        Map<String, V> only = null;
+        int count = 0;
+        for (final Request<?> request : requests) {
+            final Map<String, V> entries = map.apply(request);
+            if (entries.isEmpty()) continue;
+            only = entries;
+            count++;
         }
 
-        return merged.build();
+        if (count == 0) return Collections.emptyMap();
+        if (count == 1) return only;
+
+        final Map<String, V> merged = new LinkedHashMap<>();
+        for (final Request<?> request : requests) {
+            merged.putAll(map.apply(request));
+        }
+        return Collections.unmodifiableMap(merged);
     }
 
     private static class AnnotatedField {
@@ -424,14 +789,31 @@ public class Request<ResponseType> {
         GET, POST, PUT, DELETE, PATCH, HEAD, OPTIONS
     }
 
+    /**
+     * How a query param with several values is written in the URI
+     */
+    public enum Expansion {
+        /**
+         * {@code ?id=1,2}
+         */
+        CSV,
+        /**
+         * {@code ?id=1&id=2}
+         */
+        MULTI
+    }
+
     public static class Builder<ResponseType> {
         private Method method;
         private String path;
         private String body;
         private Class<ResponseType> responseType;
         private Map<String, String> pathParams = new LinkedHashMap<>();
-        private Map<String, String> queryParams = new LinkedHashMap<>();
-        private Map<String, String> headerParams = new LinkedHashMap<>();
+        private Map<String, List<String>> queryValues = new LinkedHashMap<>();
+        private Map<String, List<String>> headerValues = new LinkedHashMap<>();
+        private Expansion expansion;
+        private RequestDefaults defaults;
+        private PathTemplate pathTemplate;
 
         Builder() {
         }
@@ -469,21 +851,54 @@ public class Request<ResponseType> {
         }
 
         public Builder<ResponseType> queryParams(Map<String, String> queryParams) {
-            this.queryParams = queryParams;
+            this.queryValues = singleValued(queryParams);
             return this;
         }
 
         public Builder<ResponseType> headerParams(Map<String, String> headerParams) {
-            this.headerParams = new LinkedHashMap<>();
-            for (final Map.Entry<String, String> entry : headerParams.entrySet()) {
-                this.headerParams.put(entry.getKey().toLowerCase(), entry.getValue());
+            return headerValues(singleValued(headerParams));
+        }
+
+        public Builder<ResponseType> queryValues(Map<String, List<String>> queryValues) {
+            this.queryValues = new LinkedHashMap<>(queryValues);
+            return this;
+        }
+
+        public Builder<ResponseType> headerValues(Map<String, List<String>> headerValues) {
+            this.headerValues = new LinkedHashMap<>();
+            for (final Map.Entry<String, List<String>> entry : headerValues.entrySet()) {
+                this.headerValues.put(entry.getKey().toLowerCase(), entry.getValue());
             }
             return this;
         }
 
+        public Builder<ResponseType> expansion(final Expansion expansion) {
+            this.expansion = expansion;
+            return this;
+        }
+
+        /**
+         * Falls back to the shared defaults for headers and query params
+         * not set on the request
+         */
+        public Builder<ResponseType> defaults(final RequestDefaults defaults) {
+            this.defaults = defaults;
+            return this;
+        }
+
+        /**
+         * Sets the header; a collection or array gives it one value per element
+         */
         public Builder<ResponseType> header(final String name, final Object value) {
-            final String stringValue = stringValue(name, value);
-            headerParams.put(name.toLowerCase(), stringValue);
+            headerValues.put(name.toLowerCase(), ParamConverters.toStrings(value));
+            return this;
+        }
+
+        /**
+         * Adds to the values of the header
+         */
+        public Builder<ResponseType> addHeader(final String name, final Object value) {
+            add(headerValues, name.toLowerCase(), value);
             return this;
         }
 
@@ -493,37 +908,122 @@ public class Request<ResponseType> {
          * @param value value of the path parameter
          */
         public Builder<ResponseType> path(final String name, final Object value) {
-            final String stringValue = stringValue(name, value);
+            final String stringValue = ParamConverters.toString(value);
             pathParams.put(name, stringValue);
             return this;
         }
 
+        /**
+         * Sets the query param; a collection or array gives it one value per element
+         */
         public Builder<ResponseType> query(final String name, final Object value) {
-            final String stringValue = stringValue(name, value);
-            queryParams.put(name, stringValue);
+            queryValues.put(name, ParamConverters.toStrings(value));
+            return this;
+        }
+
+        /**
+         * Adds to the values of the query param
+         */
+        public Builder<ResponseType> addQuery(final String name, final Object value) {
+            add(queryValues, name, value);
+            return this;
+        }
+
+        public Builder<ResponseType> header(final String name, final int value) {
+            headerValues.put(name.toLowerCase(), Collections.singletonList(ParamConverters.toString(value)));
+            return this;
+        }
+
+        public Builder<ResponseType> header(final String name, final long value) {
+            headerValues.put(name.toLowerCase(), Collections.singletonList(ParamConverters.toString(value)));
+            return this;
+        }
+
+        public Builder<ResponseType> header(final String name, final boolean value) {
+            headerValues.put(name.toLowerCase(), Collections.singletonList(ParamConverters.toString(value)));
+            return this;
+        }
+
+        public Builder<ResponseType> path(final String name, final int value) {
+            pathParams.put(name, ParamConverters.toString(value));
+            return this;
+        }
+
+        public Builder<ResponseType> path(final String name, final long value) {
+            pathParams.put(name, ParamConverters.toString(value));
+            return this;
+        }
+
+        public Builder<ResponseType> path(final String name, final boolean value) {
+            pathParams.put(name, ParamConverters.toString(value));
+            return this;
+        }
+
+        public Builder<ResponseType> query(final String name, final int value) {
+            queryValues.put(name, Collections.singletonList(ParamConverters.toString(value)));
+            return this;
+        }
+
+        public Builder<ResponseType> query(final String name, final long value) {
+            queryValues.put(name, Collections.singletonList(ParamConverters.toString(value)));
+            return this;
+        }
+
+        public Builder<ResponseType> query(final String name, final boolean value) {
+            queryValues.put(name, Collections.singletonList(ParamConverters.toString(value)));
             return this;
         }
 
         public Request<ResponseType> build() {
-            return new Request<>(method, path, body, queryParams, headerParams, pathParams, responseType);
+            return new Request<>(method, path, body, queryValues, headerValues, pathParams, responseType, expansion, defaults, pathTemplate);
+        }
+
+        /**
+         * The parsed path, used only while it matches the path being built
+         */
+        Builder<ResponseType> pathTemplate(final PathTemplate pathTemplate) {
+            this.pathTemplate = pathTemplate;
+            return this;
+        }
+
+        private static void add(final Map<String, List<String>> map, final String name, final Object value) {
+            final List<String> values = new ArrayList<>(map.getOrDefault(name, Collections.emptyList()));
+            values.addAll(ParamConverters.toStrings(value));
+            map.put(name, values);
         }
 
         public String toString() {
             return "Request.Builder(method=" + this.method + ", path=" + this.path + ", body=" + this.body +
-                    ", responseType=" + this.responseType + ", pathParams=" + this.pathParams + ", queryParams=" +
-                    this.queryParams + ", headerParams=" + this.headerParams + ")";
+                    ", responseType=" + this.responseType + ", pathParams=" + this.pathParams + ", queryValues=" +
+                    this.queryValues + ", headerValues=" + this.headerValues + ", expansion=" + this.expansion +
+                    ", defaults=" + this.defaults + ")";
         }
     }
 
-    private static String stringValue(final String name, final Object value) {
-        if (value instanceof Collection) {
-            final Collection<?> collection = (Collection<?>) value;
-            final String stringValue = collection.stream()
-                    .map(o -> stringValue(name, o))
-                    .reduce((o, o2) -> o + "," + o2)
-                    .orElse("");
-            return stringValue;
+    private static Map<String, List<String>> singleValued(final Map<String, String> params) {
+        final Map<String, List<String>> values = new LinkedHashMap<>();
+        for (final Map.Entry<String, String> entry : params.entrySet()) {
+            values.put(entry.getKey(), Collections.singletonList(entry.getValue()));
+        }
+        return values;
+    }
+
+    static Map<String, String> joined(final Map<String, List<String>> values) {
+        final Map<String, String> params = new LinkedHashMap<>();
+        for (final Map.Entry<String, List<String>> entry : values.entrySet()) {
+            final List<String> list = entry.getValue();
+            if (list.size() == 1) {
+                params.put(entry.getKey(), list.get(0));
+                continue;
+            }
+
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) sb.append(',');
+                sb.append(list.get(i));
+            }
+            params.put(entry.getKey(), sb.toString());
         }
-        return value.toString();
+        return Collections.unmodifiableMap(params);
     }
 }
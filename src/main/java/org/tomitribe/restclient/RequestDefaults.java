@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Headers and query params shared by every request of a client, such as
+ * authorization, tracing and user-agent headers.  Requests hold a reference
+ * to the defaults rather than a copy; they are consulted whenever the
+ * request's params are read, and params set on the request replace the
+ * defaults of the same name.
+ *
+ * Instances are immutable and safe to share between threads.
+ */
+public final class RequestDefaults {
+
+    private final Map<String, List<String>> headerValues;
+    private final Map<String, List<String>> queryValues;
+    private final Map<String, String> headerParams;
+    private final Map<String, String> queryParams;
+
+    RequestDefaults(final Map<String, List<String>> headerValues, final Map<String, List<String>> queryValues) {
+        this.headerValues = immutable(headerValues);
+        this.queryValues = immutable(queryValues);
+        this.headerParams = Request.joined(this.headerValues);
+        this.queryParams = Request.joined(this.queryValues);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Map<String, List<String>> getHeaderValues() {
+        return headerValues;
+    }
+
+    public Map<String, List<String>> getQueryValues() {
+        return queryValues;
+    }
+
+    /**
+     * Header params with the values of each joined by commas
+     */
+    public Map<String, String> getHeaderParams() {
+        return headerParams;
+    }
+
+    /**
+     * Query params with the values of each joined by commas
+     */
+    public Map<String, String> getQueryParams() {
+        return queryParams;
+    }
+
+    public boolean isEmpty() {
+        return headerValues.isEmpty() && queryValues.isEmpty();
+    }
+
+    private static Map<String, List<String>> immutable(final Map<String, List<String>> map) {
+        final Map<String, List<String>> copy = new LinkedHashMap<>();
+        for (final Map.Entry<String, List<String>> entry : map.entrySet()) {
+            copy.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    @Override
+    public String toString() {
+        return "RequestDefaults(headers=" + headerValues + ", query=" + queryValues + ")";
+    }
+
+    public static class Builder {
+        private final Map<String, List<String>> headerValues = new LinkedHashMap<>();
+        private final Map<String, List<String>> queryValues = new LinkedHashMap<>();
+
+        Builder() {
+        }
+
+        public Builder header(final String name, final Object value) {
+            headerValues.put(name.toLowerCase(), ParamConverters.toStrings(value));
+            return this;
+        }
+
+        public Builder query(final String name, final Object value) {
+            queryValues.put(name, ParamConverters.toStrings(value));
+            return this;
+        }
+
+        public RequestDefaults build() {
+            return new RequestDefaults(headerValues, queryValues);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Executes the HTTP call a {@link Request} describes.
+ *
+ * Implementations only need to provide {@link #send(Request)}, which
+ * returns the raw response body.  Unmarshalling into the request's
+ * response type is done here so every transport behaves the same.
+ */
+public interface RequestExecutor {
+
+    /**
+     * Sends the request and returns the response with its body unread.
+     * Non-2xx responses are returned, not thrown.
+     */
+    Response<byte[]> send(Request<?> request);
+
+    /**
+     * Sends the request without blocking the caller.  The default runs
+     * {@link #send(Request)} on the calling thread; transports that can do
+     * better override this.
+     */
+    default CompletableFuture<Response<byte[]>> sendAsync(final Request<?> request) {
+        final CompletableFuture<Response<byte[]>> future = new CompletableFuture<>();
+        try {
+            future.complete(send(request));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Sends the request and unmarshals the body of a successful response.
+     * Unsuccessful responses are returned with a null entity.
+     */
+    default <T> Response<T> exchange(final Request<T> request) {
+        final Response<byte[]> response = send(request);
+        return response.map(body -> response.isSuccessful() ? Entities.read(request.getResponseType(), body) : null);
+    }
+
+    /**
+     * Sends the request and returns the unmarshalled body
+     *
+     * @throws HttpStatusException if the response status is not 2xx
+     */
+    default <T> T execute(final Request<T> request) {
+        return Entities.entity(request, resolve(request), send(request));
+    }
+
+    default <T> CompletableFuture<T> executeAsync(final Request<T> request) {
+        final URI uri = resolve(request);
+        return sendAsync(request).thenApply(response -> Entities.entity(request, uri, response));
+    }
+
+    /**
+     * Returns the absolute URI the request will be sent to
+     */
+    default URI resolve(final Request<?> request) {
+        return request.getURI();
+    }
+}
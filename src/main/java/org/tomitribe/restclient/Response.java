@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+public class Response<EntityType> {
+
+    private final int status;
+    private final Map<String, List<String>> headers;
+    private final EntityType entity;
+
+    public Response(final int status, final Map<String, List<String>> headers, final EntityType entity) {
+        this.status = status;
+        this.entity = entity;
+
+        // Lower case all headers
+        final LinkedHashMap<String, List<String>> map = new LinkedHashMap<>();
+        for (final Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (entry.getKey() == null) continue; // the status line in HttpURLConnection
+            map.put(entry.getKey().toLowerCase(), Collections.unmodifiableList(entry.getValue()));
+        }
+
+        this.headers = Collections.unmodifiableMap(map);
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isSuccessful() {
+        return status >= 200 && status < 300;
+    }
+
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Returns the first value of the named header or null
+     */
+    public String getHeader(final String name) {
+        final List<String> values = headers.get(name.toLowerCase());
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    public EntityType getEntity() {
+        return entity;
+    }
+
+    public <T> Response<T> map(final Function<EntityType, T> function) {
+        return new Response<>(status, headers, function.apply(entity));
+    }
+
+    @Override
+    public String toString() {
+        return "Response(status=" + status + ", headers=" + headers + ", entity=" + entity + ")";
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+/**
+ * Storage for the {@link CachingRequestExecutor}.  Implementations must
+ * be safe to use from many threads and may drop entries at any time.
+ */
+public interface ResponseCache {
+
+    /**
+     * Returns the entry stored under the key or null
+     */
+    CacheEntry get(Fingerprint key);
+
+    void put(Fingerprint key, CacheEntry entry);
+
+    void remove(Fingerprint key);
+}
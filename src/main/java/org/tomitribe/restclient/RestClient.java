@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Implements client interfaces by turning each call into a {@link Request}
+ * with {@link Request#from(java.lang.reflect.Method, Object[])} and sending
+ * it with a {@link RequestExecutor}.
+ *
+ * Methods returning {@code CompletableFuture<T>} or {@code CompletionStage<T>}
+ * are sent with {@link RequestExecutor#executeAsync(Request)} and return
+ * straight away, so one caller can have many calls in flight.  Methods
+ * annotated with {@link Paged} return a stream fed by the {@link Paginator}.
+ * If a {@link QuerySplitter} is supplied, calls whose collection-valued query
+ * parameters make the URI too long are sent as several smaller requests.
+ * {@link RequestDefaults} supply headers and query params every call
+ * shares without copying them into each request, and
+ * {@link ParamConverters} format the parameter values of that client.
+ * Default methods of the interface are called as they are.
+ */
+public class RestClient {
+
+    private RestClient() {
+    }
+
+    public static <T> T create(final Class<T> type, final RequestExecutor executor) {
+        return create(type, executor, Paginator.builder().build());
+    }
+
+    public static <T> T create(final Class<T> type, final RequestExecutor executor, final Paginator paginator) {
+        return create(type, executor, paginator, null);
+    }
+
+    public static <T> T create(final Class<T> type, final RequestExecutor executor, final Paginator paginator,
+                               final QuerySplitter splitter) {
+        return create(type, executor, paginator, splitter, null, ParamConverters.none());
+    }
+
+    public static <T> Builder<T> builder(final Class<T> type, final RequestExecutor executor) {
+        return new Builder<>(type, executor);
+    }
+
+    private static <T> T create(final Class<T> type, final RequestExecutor executor, final Paginator paginator,
+                                final QuerySplitter splitter, final RequestDefaults defaults,
+                                final ParamConverters converters) {
+        final InvocationHandler handler = (proxy, method, args) -> {
+            if (Object.class.equals(method.getDeclaringClass())) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return type.getName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                }
+            }
+
+            if (method.isDefault()) return DefaultMethods.invoke(proxy, method, args);
+
+            if (isPaged(method)) {
+                if (defaults == null) return paginator.stream(method, args, converters, executor::exchange);
+                return paginator.stream(method, args, converters, page -> executor.exchange(page.defaults(defaults)));
+            }
+
+            @SuppressWarnings("unchecked")
+            final Request<Object> from = (Request<Object>) Request.from(method, args, converters);
+            final Request<Object> request = defaults == null ? from : from.defaults(defaults);
+
+            if (splitter != null) {
+                final List<Request<Object>> requests = splitter.split(request, method, args, executor);
+                if (requests.size() > 1) {
+                    if (Request.isAsync(method)) return splitter.executeAsync(requests, executor);
+                    return splitter.execute(requests, executor);
+                }
+            }
+
+            if (Request.isAsync(method)) {
+                return executor.executeAsync(request);
+            }
+
+            return executor.execute(request);
+        };
+
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static boolean isPaged(final java.lang.reflect.Method method) {
+        if (!Stream.class.equals(method.getReturnType())) return false;
+        return method.isAnnotationPresent(Paged.class) || method.getDeclaringClass().isAnnotationPresent(Paged.class);
+    }
+
+    public static class Builder<T> {
+        private final Class<T> type;
+        private final RequestExecutor executor;
+        private Paginator paginator = Paginator.builder().build();
+        private QuerySplitter splitter;
+        private RequestDefaults defaults;
+        private ParamConverters converters = ParamConverters.none();
+
+        Builder(final Class<T> type, final RequestExecutor executor) {
+            this.type = type;
+            this.executor = executor;
+        }
+
+        public Builder<T> paginator(final Paginator paginator) {
+            this.paginator = paginator;
+            return this;
+        }
+
+        public Builder<T> splitter(final QuerySplitter splitter) {
+            this.splitter = splitter;
+            return this;
+        }
+
+        public Builder<T> defaults(final RequestDefaults defaults) {
+            this.defaults = defaults;
+            return this;
+        }
+
+        /**
+         * Formats the parameter values of this client's methods
+         */
+        public Builder<T> converters(final ParamConverters converters) {
+            this.converters = converters;
+            return this;
+        }
+
+        public T build() {
+            return create(type, executor, paginator, splitter, defaults, converters);
+        }
+    }
+}
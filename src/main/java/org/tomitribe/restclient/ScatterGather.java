@@ -0,0 +1,590 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Executes many requests with at most {@code maxConcurrency} in flight in
+ * total and {@code maxConcurrencyPerHost} to any one host.  Hosts with
+ * work waiting take turns, so one slow host cannot hold every slot.
+ *
+ * Every request gets a {@link Result}, holding either its value or the
+ * error it failed with; one failure does not stop the rest.  When all have
+ * finished, {@link Stats} on throughput and latency are passed to the
+ * {@code onComplete} callback.
+ *
+ * Requests are sent with {@link RequestExecutor#executeAsync(Request)},
+ * so no thread is held per request when the executor is non-blocking.
+ */
+public class ScatterGather {
+
+    public enum Order {
+        /**
+         * Results come in the order of the requests
+         */
+        ORDERED,
+        /**
+         * Results come as soon as each request finishes
+         */
+        AS_COMPLETED
+    }
+
+    private final RequestExecutor executor;
+    private final int maxConcurrency;
+    private final int maxConcurrencyPerHost;
+    private final Consumer<Stats> onComplete;
+
+    ScatterGather(final RequestExecutor executor, final int maxConcurrency, final int maxConcurrencyPerHost,
+                  final Consumer<Stats> onComplete) {
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+        this.maxConcurrencyPerHost = maxConcurrencyPerHost;
+        this.onComplete = onComplete;
+    }
+
+    public static Builder builder(final RequestExecutor executor) {
+        return new Builder(executor);
+    }
+
+    /**
+     * Executes every request and waits for all of them.
+     * The results are in the order of the requests.
+     */
+    public <T> Results<T> executeAll(final Collection<Request<T>> requests) {
+        final Run<T> run = new Run<>(new ArrayList<>(requests));
+        run.start();
+        return new Results<>(run.awaitAll(), run.awaitStats());
+    }
+
+    /**
+     * Starts executing every request.  The future completes once all of
+     * them have finished, with the results in the order of the requests.
+     */
+    public <T> CompletableFuture<Results<T>> executeAllAsync(final Collection<Request<T>> requests) {
+        final Run<T> run = new Run<>(new ArrayList<>(requests));
+        run.start();
+        return run.stats.thenApply(stats -> new Results<>(run.awaitAll(), stats));
+    }
+
+    /**
+     * Starts executing every request and streams the results in the given
+     * order.  Closing the stream stops requests that have not started.
+     */
+    public <T> Stream<Result<T>> stream(final Collection<Request<T>> requests, final Order order) {
+        final Run<T> run = new Run<>(new ArrayList<>(requests));
+        run.start();
+
+        final Iterator<Result<T>> iterator = order == Order.ORDERED ? run.ordered() : run.asCompleted();
+        // not SIZED, closing the stream cancels requests and leaves fewer results
+        final Spliterator<Result<T>> spliterator = Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.NONNULL | (order == Order.ORDERED ? Spliterator.ORDERED : 0));
+
+        return StreamSupport.stream(spliterator, false).onClose(run::cancel);
+    }
+
+    private class Run<T> {
+        private final List<Request<T>> requests;
+        private final List<CompletableFuture<Result<T>>> slots;
+        private final BlockingQueue<Result<T>> completed = new LinkedBlockingQueue<>();
+        private final long[] latencies;
+
+        private final Lock lock = new ReentrantLock();
+        private final Map<String, ArrayDeque<Integer>> pending = new HashMap<>();
+        private final ArrayDeque<String> hosts = new ArrayDeque<>();
+        private final Map<String, Integer> active = new HashMap<>();
+        private int activeTotal;
+        private int remaining;
+        private int completedCount;
+        private int failures;
+        private long startNanos;
+        // requests that have started or will, written under the lock
+        private volatile int scheduled;
+
+        private final AtomicInteger wip = new AtomicInteger();
+        private final CompletableFuture<Stats> stats = new CompletableFuture<>();
+
+        Run(final List<Request<T>> requests) {
+            this.requests = requests;
+            this.latencies = new long[requests.size()];
+            this.remaining = requests.size();
+            this.scheduled = requests.size();
+
+            final List<CompletableFuture<Result<T>>> futures = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                futures.add(new CompletableFuture<>());
+            }
+            this.slots = Collections.unmodifiableList(futures);
+        }
+
+        void start() {
+            startNanos = System.nanoTime();
+
+            for (int i = 0; i < requests.size(); i++) {
+                final String host = host(i);
+                pending.computeIfAbsent(host, h -> {
+                    hosts.add(h);
+                    return new ArrayDeque<>();
+                }).add(i);
+            }
+
+            if (remaining == 0) finish();
+            pump();
+        }
+
+        private String host(final int index) {
+            try {
+                final String authority = executor.resolve(requests.get(index)).getAuthority();
+                return authority == null ? "" : authority;
+            } catch (RuntimeException e) {
+                return "";
+            }
+        }
+
+        /**
+         * Starts requests while there are free slots.  Requests completing
+         * on the calling thread re-enter here; the counter turns that into
+         * another pass of the loop rather than recursion.
+         */
+        private void pump() {
+            if (wip.getAndIncrement() != 0) return;
+
+            do {
+                for (Started next; (next = next()) != null; ) {
+                    send(next);
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        private Started next() {
+            lock.lock();
+            try {
+                if (maxConcurrency > 0 && activeTotal >= maxConcurrency) return null;
+
+                for (int i = hosts.size(); i > 0; i--) {
+                    final String host = hosts.poll();
+                    final ArrayDeque<Integer> queue = pending.get(host);
+                    final int running = active.getOrDefault(host, 0);
+
+                    if (maxConcurrencyPerHost > 0 && running >= maxConcurrencyPerHost) {
+                        hosts.add(host);
+                        continue;
+                    }
+
+                    final int index = queue.poll();
+                    if (queue.isEmpty()) {
+                        pending.remove(host);
+                    } else {
+                        hosts.add(host);
+                    }
+
+                    active.put(host, running + 1);
+                    activeTotal++;
+                    return new Started(index, host);
+                }
+                return null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void send(final Started started) {
+            final long start = System.nanoTime();
+            final Request<T> request = requests.get(started.index);
+
+            CompletableFuture<T> future;
+            try {
+                future = executor.executeAsync(request);
+            } catch (RuntimeException e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+
+            future.whenComplete((value, throwable) -> {
+                final long latency = System.nanoTime() - start;
+                final Throwable error = throwable instanceof CompletionException && throwable.getCause() != null
+                        ? throwable.getCause()
+                        : throwable;
+
+                complete(started, new Result<>(started.index, request, value, error, latency));
+            });
+        }
+
+        private void complete(final Started started, final Result<T> result) {
+            final boolean done;
+            lock.lock();
+            try {
+                active.merge(started.host, -1, Integer::sum);
+                activeTotal--;
+                latencies[completedCount++] = result.getLatency();
+                if (!result.isSuccess()) failures++;
+                done = --remaining == 0;
+            } finally {
+                lock.unlock();
+            }
+
+            slots.get(started.index).complete(result);
+            completed.add(result);
+
+            if (done) finish();
+            pump();
+        }
+
+        private void finish() {
+            final Stats result;
+            lock.lock();
+            try {
+                result = new Stats(completedCount, failures, System.nanoTime() - startNanos,
+                        Arrays.copyOf(latencies, completedCount));
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                if (onComplete != null) onComplete.accept(result);
+            } finally {
+                stats.complete(result);
+            }
+        }
+
+        /**
+         * Drops the requests that have not started
+         */
+        void cancel() {
+            final boolean done;
+            lock.lock();
+            try {
+                if (pending.isEmpty()) return;
+
+                for (final ArrayDeque<Integer> queue : pending.values()) {
+                    for (final Integer index : queue) {
+                        slots.get(index).cancel(false);
+                        remaining--;
+                        scheduled--;
+                    }
+                }
+                pending.clear();
+                hosts.clear();
+                done = remaining == 0;
+            } finally {
+                lock.unlock();
+            }
+
+            if (done) finish();
+        }
+
+        List<Result<T>> awaitAll() {
+            final List<Result<T>> results = new ArrayList<>(slots.size());
+            for (final CompletableFuture<Result<T>> slot : slots) {
+                results.add(slot.join());
+            }
+            return results;
+        }
+
+        Stats awaitStats() {
+            return stats.join();
+        }
+
+        Iterator<Result<T>> ordered() {
+            final Iterator<CompletableFuture<Result<T>>> iterator = slots.iterator();
+            return new Iterator<Result<T>>() {
+                private Result<T> next;
+
+                @Override
+                public boolean hasNext() {
+                    while (next == null && iterator.hasNext()) {
+                        final CompletableFuture<Result<T>> slot = iterator.next();
+                        try {
+                            next = slot.join();
+                        } catch (CancellationException e) {
+                            // not started before the stream was closed, possibly while waiting here
+                        }
+                    }
+                    return next != null;
+                }
+
+                @Override
+                public Result<T> next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    final Result<T> result = next;
+                    next = null;
+                    return result;
+                }
+            };
+        }
+
+        Iterator<Result<T>> asCompleted() {
+            return new Iterator<Result<T>>() {
+                private int taken;
+
+                @Override
+                public boolean hasNext() {
+                    return taken < scheduled;
+                }
+
+                @Override
+                public Result<T> next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    try {
+                        final Result<T> result = completed.take();
+                        taken++;
+                        return result;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted waiting for results", e);
+                    }
+                }
+            };
+        }
+    }
+
+    private static class Started {
+        private final int index;
+        private final String host;
+
+        Started(final int index, final String host) {
+            this.index = index;
+            this.host = host;
+        }
+    }
+
+    public static class Result<T> {
+        private final int index;
+        private final Request<T> request;
+        private final T value;
+        private final Throwable error;
+        private final long latency;
+
+        Result(final int index, final Request<T> request, final T value, final Throwable error, final long latency) {
+            this.index = index;
+            this.request = request;
+            this.value = value;
+            this.error = error;
+            this.latency = latency;
+        }
+
+        /**
+         * Position of the request in the collection supplied
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public Request<T> getRequest() {
+            return request;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        /**
+         * Returns the value, or throws the error the request failed with
+         */
+        public T get() {
+            if (error instanceof RuntimeException) throw (RuntimeException) error;
+            if (error instanceof Error) throw (Error) error;
+            if (error != null) throw new IllegalStateException(error);
+            return value;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        /**
+         * In nanoseconds
+         */
+        public long getLatency() {
+            return latency;
+        }
+
+        @Override
+        public String toString() {
+            return "Result(index=" + index + ", value=" + value + ", error=" + error + ")";
+        }
+    }
+
+    public static class Results<T> {
+        private final List<Result<T>> results;
+        private final Stats stats;
+
+        Results(final List<Result<T>> results, final Stats stats) {
+            this.results = Collections.unmodifiableList(results);
+            this.stats = stats;
+        }
+
+        /**
+         * One result per request, in the order of the requests
+         */
+        public List<Result<T>> getResults() {
+            return results;
+        }
+
+        public Stats getStats() {
+            return stats;
+        }
+
+        /**
+         * The values of the successful requests, in order
+         */
+        public List<T> getValues() {
+            final List<T> values = new ArrayList<>();
+            for (final Result<T> result : results) {
+                if (result.isSuccess()) values.add(result.value);
+            }
+            return values;
+        }
+
+        public List<Result<T>> getFailures() {
+            final List<Result<T>> failures = new ArrayList<>();
+            for (final Result<T> result : results) {
+                if (!result.isSuccess()) failures.add(result);
+            }
+            return failures;
+        }
+    }
+
+    public static class Stats {
+        private final int count;
+        private final int failures;
+        private final long elapsed;
+        private final long[] latencies;
+
+        Stats(final int count, final int failures, final long elapsed, final long[] latencies) {
+            this.count = count;
+            this.failures = failures;
+            this.elapsed = elapsed;
+            this.latencies = latencies;
+            Arrays.sort(this.latencies);
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public int getFailures() {
+            return failures;
+        }
+
+        /**
+         * Wall-clock time for the whole batch in nanoseconds
+         */
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        /**
+         * Requests completed per second
+         */
+        public double getThroughput() {
+            return elapsed == 0 ? 0 : count * 1e9 / elapsed;
+        }
+
+        /**
+         * Latency at the given percentile, from 0 to 100, in nanoseconds
+         */
+        public long getLatency(final double percentile) {
+            if (latencies.length == 0) return 0;
+            final int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(latencies.length - 1, index))];
+        }
+
+        public long getMeanLatency() {
+            if (latencies.length == 0) return 0;
+            long total = 0;
+            for (final long latency : latencies) {
+                total += latency;
+            }
+            return total / latencies.length;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s requests, %s failed in %.3fs (%.1f/s), latency mean=%.1fms p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms",
+                    count, failures, elapsed / 1e9, getThroughput(),
+                    millis(getMeanLatency()), millis(getLatency(50)), millis(getLatency(95)),
+                    millis(getLatency(99)), millis(getLatency(100)));
+        }
+
+        private static double millis(final long nanos) {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+
+    public static class Builder {
+        private final RequestExecutor executor;
+        private int maxConcurrency = 64;
+        private int maxConcurrencyPerHost = 8;
+        private Consumer<Stats> onComplete;
+
+        Builder(final RequestExecutor executor) {
+            this.executor = executor;
+        }
+
+        /**
+         * Maximum requests in flight in total, zero for unlimited
+         */
+        public Builder maxConcurrency(final int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Maximum requests in flight to any one host, zero for unlimited
+         */
+        public Builder maxConcurrencyPerHost(final int maxConcurrencyPerHost) {
+            this.maxConcurrencyPerHost = maxConcurrencyPerHost;
+            return this;
+        }
+
+        /**
+         * Called with the statistics once every request has finished
+         */
+        public Builder onComplete(final Consumer<Stats> onComplete) {
+            this.onComplete = onComplete;
+            return this;
+        }
+
+        public ScatterGather build() {
+            return new ScatterGather(executor, maxConcurrency, maxConcurrencyPerHost, onComplete);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Publisher that asks the supplier for the next element only once there is
+ * outstanding demand.  Each call to the supplier starts an asynchronous fetch
+ * and a null result completes the subscription.  Fetches never overlap, so
+ * elements are published in the order the supplier produces them.
+ *
+ * The supplier is stateful, so only one subscriber is allowed.
+ */
+class SupplierPublisher<T> implements Publisher<T> {
+
+    private final Supplier<? extends CompletionStage<T>> fetch;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    SupplierPublisher(final Supplier<? extends CompletionStage<T>> fetch) {
+        this.fetch = fetch;
+    }
+
+    @Override
+    public void subscribe(final Subscriber<? super T> subscriber) {
+        if (subscriber == null) throw new NullPointerException("subscriber");
+
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(final long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Publisher allows only one subscriber"));
+            return;
+        }
+
+        final FetchSubscription<T> subscription = new FetchSubscription<>(fetch, subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private static class FetchSubscription<T> implements Subscription {
+        private final Supplier<? extends CompletionStage<T>> fetch;
+        private final Subscriber<? super T> subscriber;
+
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile boolean inFlight;
+        private volatile CompletionStage<T> current;
+
+        public FetchSubscription(final Supplier<? extends CompletionStage<T>> fetch, final Subscriber<? super T> subscriber) {
+            this.fetch = fetch;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (cancelled) return;
+
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Requested elements must be positive: " + n));
+                return;
+            }
+
+            demand.accumulateAndGet(n, (a, b) -> {
+                final long sum = a + b;
+                return sum < 0 ? Long.MAX_VALUE : sum;
+            });
+
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+
+            final CompletionStage<T> stage = current;
+            if (stage instanceof Future) {
+                ((Future<?>) stage).cancel(true);
+            }
+        }
+
+        /**
+         * Starts the next fetch if there is demand and none is running.
+         * Completions re-enter here from whatever thread finished the fetch,
+         * the work-in-progress counter keeps that from recursing.
+         */
+        private void drain() {
+            if (wip.getAndIncrement() != 0) return;
+
+            do {
+                if (!cancelled && !inFlight && demand.get() > 0) {
+                    inFlight = true;
+                    start();
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        private void start() {
+            final CompletionStage<T> stage;
+            try {
+                stage = fetch.get();
+            } catch (RuntimeException e) {
+                fail(e);
+                return;
+            }
+
+            current = stage;
+            stage.whenComplete(this::onFetched);
+        }
+
+        private void onFetched(final T element, final Throwable throwable) {
+            current = null;
+            if (cancelled) return;
+
+            if (throwable != null) {
+                fail(throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable);
+                return;
+            }
+
+            if (element == null) {
+                cancelled = true;
+                subscriber.onComplete();
+                return;
+            }
+
+            demand.decrementAndGet();
+            try {
+                subscriber.onNext(element);
+            } catch (RuntimeException e) {
+                cancel();
+                throw e;
+            }
+
+            inFlight = false;
+            drain();
+        }
+
+        private void fail(final Throwable throwable) {
+            cancelled = true;
+            subscriber.onError(throwable);
+        }
+    }
+}
@@ -20,6 +20,10 @@ import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -36,6 +40,55 @@ public class Suppliers {
         return new SupplierIterator<>(supplier);
     }
 
+    /**
+     * Returns a stream that fetches up to {@code lookAhead} elements ahead of
+     * the consumer on the supplied executor.  Closing the stream cancels any
+     * fetch still in progress.
+     */
+    public static <T> Stream<T> asStream(final Supplier<T> supplier, final Executor executor, final int lookAhead) {
+        final PrefetchingIterator<T> iterator = new PrefetchingIterator<>(supplier, executor, lookAhead);
+        return asStream(iterator).onClose(iterator::close);
+    }
+
+    public static <T> Iterator<T> asIterator(final Supplier<T> supplier, final Executor executor, final int lookAhead) {
+        return new PrefetchingIterator<>(supplier, executor, lookAhead);
+    }
+
+    /**
+     * Returns a stream of the items on each page.  When made parallel the
+     * stream splits on page boundaries, handing each fetched page to its
+     * own task.  The supplier returns null when there are no more pages.
+     */
+    public static <T> Stream<T> asPagedStream(final Supplier<? extends Page<T>> pages) {
+        return StreamSupport.stream(new PageSpliterator<>(pages), false);
+    }
+
+    /**
+     * Returns a stream of the items on pages {@code first} through {@code last}
+     * inclusive.  When made parallel the page range is split, so the pages
+     * are fetched concurrently as well as processed concurrently.
+     */
+    public static <T> Stream<T> asPagedStream(final IntFunction<? extends Page<T>> pages, final int first, final int last) {
+        return StreamSupport.stream(new PageRangeSpliterator<>(pages, first, last + 1L), false);
+    }
+
+    /**
+     * Returns a publisher that calls the supplier on the executor each time
+     * the subscriber signals demand for another element.
+     */
+    public static <T> Publisher<T> asPublisher(final Supplier<T> supplier, final Executor executor) {
+        return asPublisher(() -> CompletableFuture.supplyAsync(supplier, executor));
+    }
+
+    /**
+     * Returns a publisher that starts the next asynchronous fetch each time
+     * the subscriber signals demand for another element.  A fetch completing
+     * with null completes the subscription.
+     */
+    public static <T> Publisher<T> asPublisher(final Supplier<? extends CompletionStage<T>> fetch) {
+        return new SupplierPublisher<>(fetch);
+    }
+
     public static <T> Stream<T> asStream(final Iterator<T> iterator) {
         return StreamSupport.stream(
                 Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED),
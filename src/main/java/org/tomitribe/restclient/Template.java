@@ -16,6 +16,10 @@
  */
 package org.tomitribe.restclient;
 
+import org.tomitribe.restclient.impl.HttpUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -35,29 +39,48 @@ public class Template {
     private final String template;
     private final List<String> variables = new ArrayList<String>();
     private final List<String> customVariables = new ArrayList<String>();
-    private final Pattern templateRegexPattern;
-    private final String literals;
+    private final List<String> names = new ArrayList<String>();
     private final List<UriChunk> uriChunks;
 
+    // built on first use; most templates are only substituted, never matched
+    private volatile Pattern templateRegexPattern;
+    private volatile String literals;
+
     public Template(final String theTemplate) {
         template = theTemplate;
-        final StringBuilder literalChars = new StringBuilder();
-        final StringBuilder patternBuilder = new StringBuilder();
         final CurlyBraceTokenizer tok = new CurlyBraceTokenizer(template);
         uriChunks = new ArrayList<>();
         while (tok.hasNext()) {
             final String templatePart = tok.next();
             final UriChunk chunk = UriChunk.createUriChunk(templatePart);
             uriChunks.add(chunk);
-            if (chunk instanceof Literal) {
-                final String substr = escapeCharacters(chunk.getValue());
-                literalChars.append(substr);
-                patternBuilder.append(substr);
-            } else if (chunk instanceof Variable) {
+            if (chunk instanceof Variable) {
                 final Variable var = (Variable) chunk;
                 variables.add(var.getName());
                 if (var.getPattern() != null) {
                     customVariables.add(var.getName());
+                }
+
+                var.slot = names.indexOf(var.getName());
+                if (var.slot == -1) {
+                    var.slot = names.size();
+                    names.add(var.getName());
+                }
+            }
+        }
+    }
+
+    private Pattern pattern() {
+        Pattern pattern = templateRegexPattern;
+        if (pattern != null) return pattern;
+
+        final StringBuilder patternBuilder = new StringBuilder();
+        for (final UriChunk chunk : uriChunks) {
+            if (chunk instanceof Literal) {
+                patternBuilder.append(escapeCharacters(chunk.getValue()));
+            } else if (chunk instanceof Variable) {
+                final Variable var = (Variable) chunk;
+                if (var.getPattern() != null) {
                     patternBuilder.append('(');
                     patternBuilder.append(var.getPattern());
                     patternBuilder.append(')');
@@ -66,7 +89,6 @@ public class Template {
                 }
             }
         }
-        literals = literalChars.toString();
 
         final int endPos = patternBuilder.length() - 1;
         final boolean endsWithSlash = (endPos >= 0) && patternBuilder.charAt(endPos) == '/';
@@ -75,11 +97,24 @@ public class Template {
         }
         patternBuilder.append(LIMITED_REGEX_SUFFIX);
 
-        templateRegexPattern = Pattern.compile(patternBuilder.toString());
+        pattern = Pattern.compile(patternBuilder.toString());
+        templateRegexPattern = pattern;
+        return pattern;
     }
 
     public String getLiteralChars() {
-        return literals;
+        String chars = literals;
+        if (chars != null) return chars;
+
+        final StringBuilder literalChars = new StringBuilder();
+        for (final UriChunk chunk : uriChunks) {
+            if (chunk instanceof Literal) {
+                literalChars.append(escapeCharacters(chunk.getValue()));
+            }
+        }
+        chars = literalChars.toString();
+        literals = chars;
+        return chars;
     }
 
     public String getValue() {
@@ -87,7 +122,7 @@ public class Template {
     }
 
     public String getPatternValue() {
-        return templateRegexPattern.toString();
+        return pattern().toString();
     }
 
     public List<String> getVariables() {
@@ -98,6 +133,14 @@ public class Template {
         return Collections.unmodifiableList(customVariables);
     }
 
+    /**
+     * The distinct variable names in order of first appearance.  The index
+     * of a name is the slot its value takes in {@link #substitute(Object[], boolean, Appendable)}.
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(names);
+    }
+
     private static String escapeCharacters(final String expression) {
         final StringBuilder sb = new StringBuilder();
         for (int i = 0; i < expression.length(); i++) {
@@ -114,14 +157,10 @@ public class Template {
     public boolean match(final String uri, final Map<String, List<String>> templateVariableToValue) {
 
         if (uri == null) {
-            return (templateRegexPattern == null);
-        }
-
-        if (templateRegexPattern == null) {
             return false;
         }
 
-        Matcher m = templateRegexPattern.matcher(uri);
+        final Matcher m = pattern().matcher(uri);
         if (!m.matches()) {
             return false;
         }
@@ -208,7 +247,7 @@ public class Template {
                                 + var.getPattern());
                     }
                     if (encodePathSlashVars.contains(var.getName())) {
-                        sval = sval.replaceAll("/", "%2F");
+                        sval = HttpUtils.encodeSlashes(sval);
                     }
                     sb.append(sval);
                 } else if (allowUnresolved) {
@@ -224,6 +263,56 @@ public class Template {
         return sb.toString();
     }
 
+    /**
+     * Writes the template to {@code out} with each variable replaced by the
+     * value in its slot, see {@link #getNames()}.  A variable with no value
+     * is an error.
+     *
+     * @param encodeSlashes write '/' in the values as "%2F"
+     */
+    public <A extends Appendable> A substitute(final Object[] values, final boolean encodeSlashes, final A out)
+            throws IllegalArgumentException {
+        try {
+            for (final UriChunk chunk : uriChunks) {
+                if (!(chunk instanceof Variable)) {
+                    out.append(chunk.getValue());
+                    continue;
+                }
+
+                final Variable var = (Variable) chunk;
+                final Object value = var.slot < values.length ? values[var.slot] : null;
+                if (value == null) {
+                    throw new IllegalArgumentException("Template variable " + var.getName()
+                            + " has no matching value");
+                }
+
+                final String sval = value.toString();
+                if (!var.matches(sval)) {
+                    throw new IllegalArgumentException("Value '" + sval + "' does not match variable "
+                            + var.getName() + " with value "
+                            + var.getPattern());
+                }
+
+                if (!encodeSlashes) {
+                    out.append(sval);
+                    continue;
+                }
+
+                for (int i = 0; i < sval.length(); i++) {
+                    final char c = sval.charAt(i);
+                    if (c == '/') {
+                        out.append("%2F");
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out;
+    }
+
     private abstract static class UriChunk {
         public static UriChunk createUriChunk(final String uriChunk) {
             if (uriChunk == null || "".equals(uriChunk)) {
@@ -271,6 +360,7 @@ public class Template {
         private static final Pattern VARIABLE_PATTERN = Pattern.compile("(\\w[-\\w\\.]*[ ]*)(\\:(.+))?");
         private String name;
         private Pattern pattern;
+        private int slot;
 
         private Variable() {
             // empty constructor
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+/**
+ * Puts a fast cache, usually a {@link MemoryResponseCache}, in front of a
+ * larger one, usually a {@link DiskResponseCache}.  Entries found only in
+ * the second tier are copied into the first.
+ */
+public class TieredResponseCache implements ResponseCache {
+
+    private final ResponseCache first;
+    private final ResponseCache second;
+
+    public TieredResponseCache(final ResponseCache first, final ResponseCache second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public CacheEntry get(final Fingerprint key) {
+        final CacheEntry entry = first.get(key);
+        if (entry != null) return entry;
+
+        final CacheEntry stored = second.get(key);
+        if (stored != null) first.put(key, stored);
+        return stored;
+    }
+
+    @Override
+    public void put(final Fingerprint key, final CacheEntry entry) {
+        first.put(key, entry);
+        second.put(key, entry);
+    }
+
+    @Override
+    public void remove(final Fingerprint key) {
+        first.remove(key);
+        second.remove(key);
+    }
+}
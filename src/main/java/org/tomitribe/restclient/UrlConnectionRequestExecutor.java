@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.tomitribe.util.IO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Dependency-free transport built on {@link HttpURLConnection}.
+ *
+ * Connections are kept alive and reused through the JDK's keep-alive cache,
+ * which only takes back a connection whose response has been read to the
+ * end; every body, including error bodies, is therefore read fully and
+ * closed.  The JDK keeps at most {@code http.maxConnections} idle connections
+ * per host (5 by default), so set that system property to match
+ * {@code maxConnectionsPerHost} when raising it.
+ *
+ * HttpURLConnection cannot send PATCH.  PATCH requests are rejected unless
+ * {@link Builder#methodOverride(boolean)} is set, in which case they are
+ * sent as POST with an {@code X-HTTP-Method-Override: PATCH} header; only
+ * use that with servers known to honour the header.
+ */
+public class UrlConnectionRequestExecutor implements RequestExecutor {
+
+    private final URI baseUri;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final ConnectionLimits limits;
+    private final Executor executor;
+    private final boolean methodOverride;
+
+    UrlConnectionRequestExecutor(final URI baseUri, final int connectTimeout, final int readTimeout,
+                                 final ConnectionLimits limits, final Executor executor, final boolean methodOverride) {
+        this.baseUri = baseUri;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.limits = limits;
+        this.executor = executor;
+        this.methodOverride = methodOverride;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public URI resolve(final Request<?> request) {
+        return BaseUri.resolve(baseUri, request);
+    }
+
+    @Override
+    public Response<byte[]> send(final Request<?> request) {
+        if (request.getMethod() == Request.Method.PATCH && !methodOverride) {
+            throw new UnsupportedOperationException("HttpURLConnection cannot send PATCH; "
+                    + "enable methodOverride to send it as POST with X-HTTP-Method-Override");
+        }
+
+        final URI uri = resolve(request);
+        final String host = uri.getAuthority();
+
+        limits.acquire(host);
+        try {
+            return send(request, uri);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("%s %s failed", request.getMethod(), uri), e);
+        } finally {
+            limits.release(host);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Response<byte[]>> sendAsync(final Request<?> request) {
+        return CompletableFuture.supplyAsync(() -> send(request), executor);
+    }
+
+    private Response<byte[]> send(final Request<?> request, final URI uri) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+
+        final Request.Method method = request.getMethod() == null ? Request.Method.GET : request.getMethod();
+        if (method == Request.Method.PATCH) {
+            // HttpURLConnection rejects PATCH, so only sent when methodOverride is set
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("X-HTTP-Method-Override", "PATCH");
+        } else {
+            connection.setRequestMethod(method.name());
+        }
+
+        for (final Map.Entry<String, String> header : request.getHeaderParams().entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+
+        if (request.hasBody()) {
+            final byte[] body = request.getBody().getBytes(StandardCharsets.UTF_8);
+            if (!request.getHeaderParams().containsKey("content-type")) {
+                connection.setRequestProperty("Content-Type", "application/json");
+            }
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            try (final OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+
+        final int status = connection.getResponseCode();
+        final byte[] body;
+        try (final InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream()) {
+            body = in == null ? new byte[0] : IO.readBytes(in);
+        }
+
+        return new Response<>(status, connection.getHeaderFields(), body);
+    }
+
+    public static class Builder {
+        private URI baseUri;
+        private int connectTimeout = 10_000;
+        private int readTimeout = 60_000;
+        private int maxConnections;
+        private int maxConnectionsPerHost = 5;
+        private Executor executor;
+        private boolean methodOverride;
+
+        Builder() {
+        }
+
+        public Builder baseUri(final URI baseUri) {
+            this.baseUri = baseUri;
+            return this;
+        }
+
+        public Builder baseUri(final String baseUri) {
+            return baseUri(URI.create(baseUri));
+        }
+
+        public Builder connectTimeout(final int millis) {
+            this.connectTimeout = millis;
+            return this;
+        }
+
+        public Builder readTimeout(final int millis) {
+            this.readTimeout = millis;
+            return this;
+        }
+
+        /**
+         * Maximum requests in flight across all hosts, zero for unlimited
+         */
+        public Builder maxConnections(final int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /**
+         * Maximum requests in flight to any one host, zero for unlimited
+         */
+        public Builder maxConnectionsPerHost(final int maxConnectionsPerHost) {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+            return this;
+        }
+
+        /**
+         * Executor that {@link #sendAsync(Request)} blocks on
+         */
+        public Builder executor(final Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Send PATCH as POST with an {@code X-HTTP-Method-Override} header
+         * rather than rejecting it
+         */
+        public Builder methodOverride(final boolean methodOverride) {
+            this.methodOverride = methodOverride;
+            return this;
+        }
+
+        public UrlConnectionRequestExecutor build() {
+            return new UrlConnectionRequestExecutor(baseUri, connectTimeout, readTimeout,
+                    new ConnectionLimits(maxConnections, maxConnectionsPerHost),
+                    executor != null ? executor : RequestThreads.executor(), methodOverride);
+        }
+    }
+}
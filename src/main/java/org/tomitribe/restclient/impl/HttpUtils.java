@@ -283,6 +283,28 @@ public class HttpUtils {
         return result;
     }
 
+    /**
+     * Replaces each '/' with "%2F" without going through a regex
+     */
+    public static String encodeSlashes(String value) {
+        int slash = value.indexOf('/');
+        if (slash == -1) {
+            return value;
+        }
+
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+        sb.append(value, 0, slash);
+        for (int i = slash; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '/') {
+                sb.append("%2F");
+            } else {
+                sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+
     public static MultivaluedMap<String, String> getMatrixParams(String path, boolean decode) {
         int index = path.indexOf(';');
         return index == -1 ? new MetadataMap<String, String>()
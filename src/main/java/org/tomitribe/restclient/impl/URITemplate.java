@@ -48,31 +48,43 @@ public final class URITemplate {
     private final String template;
     private final List<String> variables = new ArrayList<>();
     private final List<String> customVariables = new ArrayList<>();
-    private final Pattern templateRegexPattern;
-    private final String literals;
     private final List<UriChunk> uriChunks;
 
+    // built on first use; templates used only for substitution never need them
+    private volatile Pattern templateRegexPattern;
+    private volatile String literals;
+
     public URITemplate(String theTemplate) {
         template = theTemplate;
-        StringBuilder literalChars = new StringBuilder();
-        StringBuilder patternBuilder = new StringBuilder();
         CurlyBraceTokenizer tok = new CurlyBraceTokenizer(template);
         uriChunks = new ArrayList<>();
         while (tok.hasNext()) {
             String templatePart = tok.next();
             UriChunk chunk = UriChunk.createUriChunk(templatePart);
             uriChunks.add(chunk);
-            if (chunk instanceof Literal) {
-                String encodedValue = HttpUtils.encodePartiallyEncoded(chunk.getValue(), false);
-                String substr = escapeCharacters(encodedValue);
-                literalChars.append(substr);
-                patternBuilder.append(substr);
-            } else if (chunk instanceof Variable) {
+            if (chunk instanceof Variable) {
                 Variable var = (Variable) chunk;
                 variables.add(var.getName());
-                String pattern = var.getPattern();
-                if (pattern != null) {
+                if (var.getPattern() != null) {
                     customVariables.add(var.getName());
+                }
+            }
+        }
+    }
+
+    private Pattern pattern() {
+        Pattern compiled = templateRegexPattern;
+        if (compiled != null) {
+            return compiled;
+        }
+
+        StringBuilder patternBuilder = new StringBuilder();
+        for (UriChunk chunk : uriChunks) {
+            if (chunk instanceof Literal) {
+                patternBuilder.append(escapeCharacters(HttpUtils.encodePartiallyEncoded(chunk.getValue(), false)));
+            } else if (chunk instanceof Variable) {
+                String pattern = ((Variable) chunk).getPattern();
+                if (pattern != null) {
                     // Add parenthesis to the pattern to identify a regex in the pattern, 
                     // however do not add them if they already exist since that will cause the Matcher
                     // to create extraneous values.  Parens identify a group so multiple parens would
@@ -89,7 +101,6 @@ public final class URITemplate {
                 }
             }
         }
-        literals = literalChars.toString();
 
         int endPos = patternBuilder.length() - 1;
         boolean endsWithSlash = (endPos >= 0) && patternBuilder.charAt(endPos) == '/';
@@ -98,11 +109,26 @@ public final class URITemplate {
         }
         patternBuilder.append(LIMITED_REGEX_SUFFIX);
 
-        templateRegexPattern = Pattern.compile(patternBuilder.toString());
+        compiled = Pattern.compile(patternBuilder.toString());
+        templateRegexPattern = compiled;
+        return compiled;
     }
 
     public String getLiteralChars() {
-        return literals;
+        String chars = literals;
+        if (chars != null) {
+            return chars;
+        }
+
+        StringBuilder literalChars = new StringBuilder();
+        for (UriChunk chunk : uriChunks) {
+            if (chunk instanceof Literal) {
+                literalChars.append(escapeCharacters(HttpUtils.encodePartiallyEncoded(chunk.getValue(), false)));
+            }
+        }
+        chars = literalChars.toString();
+        literals = chars;
+        return chars;
     }
 
     public String getValue() {
@@ -110,7 +136,7 @@ public final class URITemplate {
     }
 
     public String getPatternValue() {
-        return templateRegexPattern.toString();
+        return pattern().toString();
     }
 
     /**
@@ -173,14 +199,11 @@ public final class URITemplate {
     public boolean match(String uri, MultivaluedMap<String, String> templateVariableToValue) {
 
         if (uri == null) {
-            return (templateRegexPattern == null) ? true : false;
-        }
-
-        if (templateRegexPattern == null) {
             return false;
         }
 
-        Matcher m = templateRegexPattern.matcher(uri);
+        Pattern compiled = pattern();
+        Matcher m = compiled.matcher(uri);
         if (!m.matches() || template.equals(SLASH) && uri.startsWith(SLASH_QUOTE)) {
             if (uri.contains(";")) {
                 // we might be trying to match one or few path segments
@@ -205,7 +228,7 @@ public final class URITemplate {
                 if (uri.isEmpty()) {
                     uri = SLASH;
                 }
-                m = templateRegexPattern.matcher(uri);
+                m = compiled.matcher(uri);
                 if (!m.matches()) {
                     return false;
                 }
@@ -319,7 +342,7 @@ public final class URITemplate {
                                 + var.getPattern());
                     }
                     if (encodePathSlashVars.contains(var.getName())) {
-                        sval = sval.replaceAll("/", "%2F");
+                        sval = HttpUtils.encodeSlashes(sval);
                     }
                     sb.append(sval);
                 } else if (allowUnresolved) {
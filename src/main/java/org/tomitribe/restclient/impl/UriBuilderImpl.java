@@ -84,6 +84,14 @@ public class UriBuilderImpl extends UriBuilder implements Cloneable {
         setUriParts(uri);
     }
 
+    /**
+     * Expands multi-valued query parameters as "name=v1,v2" rather than "name=v1&name=v2"
+     */
+    public UriBuilderImpl queryValueIsCollection(final boolean queryValueIsCollection) {
+        this.queryValueIsCollection = queryValueIsCollection;
+        return this;
+    }
+
     @Override
     public URI build(Object... values) throws IllegalArgumentException, UriBuilderException {
         return doBuild(false, true, values);
@@ -565,7 +573,7 @@ public class UriBuilderImpl extends UriBuilder implements Cloneable {
             segments = HttpUtils.getPathSegments(path, false, false);
         } else {
             segments = new ArrayList<>();
-            path = path.replaceAll("/", "%2F");
+            path = HttpUtils.encodeSlashes(path);
             segments.add(new PathSegmentImpl(path, false));
         }
         if (!paths.isEmpty() && !matrix.isEmpty()) {
@@ -852,7 +860,7 @@ public class UriBuilderImpl extends UriBuilder implements Cloneable {
                 }
                 String strValue = value.toString();
                 if (encodeSlash) {
-                    strValue = strValue.replaceAll("/", "%2F");
+                    strValue = HttpUtils.encodeSlashes(strValue);
                 }
                 list.add(strValue);
             }
@@ -891,7 +899,7 @@ public class UriBuilderImpl extends UriBuilder implements Cloneable {
                         if (!templateValue) {
                             val = HttpUtils.encodePartiallyEncoded(val, isQuery);
                             if (!isQuery) {
-                                val = val.replaceAll("/", "%2F");
+                                val = HttpUtils.encodeSlashes(val);
                             }
                         } else {
                             val = URITemplate.createExactTemplate(val).encodeLiteralCharacters(isQuery);
@@ -923,7 +931,7 @@ public class UriBuilderImpl extends UriBuilder implements Cloneable {
                         if (!templateValue) {
                             val = HttpUtils.encodePartiallyEncoded(val, isQuery);
                             if (!isQuery) {
-                                val = val.replaceAll("/", "%2F");
+                                val = HttpUtils.encodeSlashes(val);
                             }
                         } else {
                             val = URITemplate.createExactTemplate(val).encodeLiteralCharacters(isQuery);
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import java.util.Objects;
+import java.util.concurrent.Flow;
+
+/**
+ * Java 21 only.  Converts between {@link Publisher} and
+ * {@link java.util.concurrent.Flow.Publisher}; each adapter delegates
+ * every method unchanged.  Package-private because a versioned layer of
+ * the multi-release jar may not add public API.
+ */
+class FlowPublishers {
+
+    private FlowPublishers() {
+    }
+
+    static <T> Flow.Publisher<T> toFlow(final Publisher<T> publisher) {
+        Objects.requireNonNull(publisher, "publisher");
+        return subscriber -> publisher.subscribe(new ToFlow<T>(Objects.requireNonNull(subscriber, "subscriber")));
+    }
+
+    static <T> Publisher<T> fromFlow(final Flow.Publisher<T> publisher) {
+        Objects.requireNonNull(publisher, "publisher");
+        return subscriber -> publisher.subscribe(new FromFlow<T>(Objects.requireNonNull(subscriber, "subscriber")));
+    }
+
+    private static class ToFlow<T> implements Publisher.Subscriber<T> {
+        private final Flow.Subscriber<? super T> subscriber;
+
+        ToFlow(final Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void onSubscribe(final Publisher.Subscription subscription) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(final long n) {
+                    subscription.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    subscription.cancel();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(final T item) {
+            subscriber.onNext(item);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            subscriber.onComplete();
+        }
+    }
+
+    private static class FromFlow<T> implements Flow.Subscriber<T> {
+        private final Publisher.Subscriber<? super T> subscriber;
+
+        FromFlow(final Publisher.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            subscriber.onSubscribe(new Publisher.Subscription() {
+                @Override
+                public void request(final long n) {
+                    subscription.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    subscription.cancel();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(final T item) {
+            subscriber.onNext(item);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            subscriber.onComplete();
+        }
+    }
+}
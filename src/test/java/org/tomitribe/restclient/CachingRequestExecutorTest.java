@@ -0,0 +1,448 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CachingRequestExecutorTest {
+
+    private final MutableClock clock = new MutableClock();
+    private final List<Request<?>> sent = new ArrayList<>();
+    private final List<Runnable> background = new ArrayList<>();
+
+    @Test
+    public void freshResponsesAreServedFromCache() {
+        final CachingRequestExecutor executor = executor(request -> response(200, "orange", "Cache-Control", "max-age=60"));
+        final Request<String> request = Request.target("/colors/orange").response(String.class);
+
+        assertEquals("orange", executor.execute(request));
+        clock.advance(59);
+        assertEquals("orange", executor.execute(request));
+
+        assertEquals(1, sent.size());
+        assertEquals(1, executor.getHits());
+
+        clock.advance(2);
+        assertEquals("orange", executor.execute(request));
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void ageCountsAgainstFreshness() {
+        final CachingRequestExecutor executor = executor(request -> response(200, "orange", "Cache-Control", "max-age=60", "Age", "50"));
+        final Request<String> request = Request.target("/colors/orange").response(String.class);
+
+        executor.execute(request);
+        clock.advance(11);
+        executor.execute(request);
+
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void expires() {
+        final String now = date(clock.millis());
+        final String later = date(clock.millis() + TimeUnit.SECONDS.toMillis(30));
+        final CachingRequestExecutor executor = executor(request -> response(200, "orange", "Date", now, "Expires", later));
+        final Request<String> request = Request.target("/colors/orange").response(String.class);
+
+        executor.execute(request);
+        clock.advance(29);
+        executor.execute(request);
+        assertEquals(1, sent.size());
+
+        clock.advance(2);
+        executor.execute(request);
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void revalidateWithETag() {
+        final CachingRequestExecutor executor = executor(request -> {
+            if ("\"v1\"".equals(request.getHeaderParams().get("if-none-match"))) {
+                return response(304, "", "ETag", "\"v1\"", "Cache-Control", "max-age=10");
+            }
+            return response(200, "orange", "ETag", "\"v1\"", "Cache-Control", "max-age=10");
+        });
+        final Request<String> request = Request.target("/colors/orange").response(String.class);
+
+        assertEquals("orange", executor.execute(request));
+        clock.advance(11);
+        assertEquals("orange", executor.execute(request));
+
+        assertEquals(2, sent.size());
+        assertEquals("\"v1\"", sent.get(1).getHeaderParams().get("if-none-match"));
+        assertEquals(1, executor.getRevalidated());
+
+        // the 304 made the entry fresh again
+        clock.advance(5);
+        assertEquals("orange", executor.execute(request));
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void revalidateWithLastModified() {
+        final String modified = date(clock.millis() - TimeUnit.DAYS.toMillis(1));
+        final CachingRequestExecutor executor = executor(request -> {
+            if (request.getHeaderParams().containsKey("if-modified-since")) return response(304, "");
+            return response(200, "orange", "Last-Modified", modified, "Cache-Control", "no-cache");
+        });
+        final Request<String> request = Request.target("/colors/orange").response(String.class);
+
+        assertEquals("orange", executor.execute(request));
+        assertEquals("orange", executor.execute(request));
+
+        assertEquals(modified, sent.get(1).getHeaderParams().get("if-modified-since"));
+        assertEquals(1, executor.getRevalidated());
+    }
+
+    @Test
+    public void noStore() {
+        final CachingRequestExecutor executor = executor(request -> response(200, "orange", "Cache-Control", "no-store, max-age=60"));
+        final Request<String> request = Request.target("/colors/orange").response(String.class);
+
+        executor.execute(request);
+        executor.execute(request);
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void requestNoCache() {
+        final CachingRequestExecutor executor = executor(request -> response(200, "orange", "Cache-Control", "max-age=60"));
+        final Request<String> request = Request.target("/colors/orange").response(String.class);
+
+        executor.execute(request);
+        executor.execute(request.header("Cache-Control", "no-cache"));
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void vary() {
+        final CachingRequestExecutor executor = executor(request -> response(200, request.getHeaderParams().get("accept-language"),
+                "Cache-Control", "max-age=60", "Vary", "Accept-Language"));
+        final Request<String> request = Request.target("/colors/orange").response(String.class);
+
+        assertEquals("en", executor.execute(request.header("Accept-Language", "en")));
+        assertEquals("en", executor.execute(request.header("Accept-Language", "en")));
+        assertEquals("fr", executor.execute(request.header("Accept-Language", "fr")));
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void authorizationIsPartOfTheKey() {
+        final CachingRequestExecutor executor = executor(request -> response(200, request.getHeaderParams().get("authorization"),
+                "Cache-Control", "max-age=60"));
+        final Request<String> request = Request.target("/user").response(String.class);
+
+        assertEquals("alice", executor.execute(request.header("Authorization", "alice")));
+        assertEquals("bob", executor.execute(request.header("Authorization", "bob")));
+        assertEquals("alice", executor.execute(request.header("Authorization", "alice")));
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void unsafeMethodsInvalidate() {
+        final CachingRequestExecutor executor = executor(request -> response(200, "orange", "Cache-Control", "max-age=60"));
+        final Request<String> request = Request.target("/colors/orange").response(String.class);
+
+        executor.execute(request);
+        executor.send(request.toBuilder().method(Request.Method.PUT).body("{}").build());
+        executor.execute(request);
+
+        assertEquals(3, sent.size());
+    }
+
+    @Test
+    public void safeMethodsDoNotInvalidate() {
+        final CachingRequestExecutor executor = executor(request -> response(200, "orange", "Cache-Control", "max-age=60"));
+        final Request<String> request = Request.target("/colors/orange").response(String.class);
+
+        executor.execute(request);
+        executor.send(request.header("If-None-Match", "\"v1\""));
+        executor.send(request.header("Cache-Control", "no-store"));
+        executor.send(request.toBuilder().method(Request.Method.HEAD).build());
+        executor.execute(request);
+
+        assertEquals(4, sent.size());
+        assertEquals(1, executor.getHits());
+    }
+
+    @Test
+    public void errorsAreNotCached() {
+        final CachingRequestExecutor executor = executor(request -> response(500, "boom", "Cache-Control", "max-age=60"));
+        final Request<String> request = Request.target("/colors/orange").response(String.class);
+
+        assertEquals(500, executor.send(request).getStatus());
+        assertEquals(500, executor.send(request).getStatus());
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void async() {
+        final CachingRequestExecutor executor = executor(request -> response(200, "orange", "Cache-Control", "max-age=60"));
+        final Request<String> request = Request.target("/colors/orange").response(String.class);
+
+        assertEquals("orange", executor.executeAsync(request).join());
+        assertEquals("orange", executor.executeAsync(request).join());
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    public void memoryCacheEvictsLeastRecentlyUsed() {
+        final MemoryResponseCache cache = new MemoryResponseCache(1000);
+        final Fingerprint a = Request.target("/a").fingerprint();
+        final Fingerprint b = Request.target("/b").fingerprint();
+        final Fingerprint c = Request.target("/c").fingerprint();
+
+        cache.put(a, entry(400));
+        cache.put(b, entry(400));
+        cache.get(a);
+        cache.put(c, entry(400));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get(b));
+        assertEquals(400 + 64, cache.get(a).size());
+        assertEquals(2 * (400 + 64), cache.getBytes());
+
+        cache.put(a, entry(2000));
+        assertNull(cache.get(a));
+        assertEquals(400 + 64, cache.getBytes());
+    }
+
+    @Test
+    public void staleWhileRevalidate() {
+        final AtomicInteger version = new AtomicInteger();
+        final CachingRequestExecutor executor = executor(request -> response(200, "v" + version.incrementAndGet(),
+                "Cache-Control", "max-age=10, stale-while-revalidate=60"));
+        final Request<String> request = Request.target("/colors/orange").response(String.class);
+
+        assertEquals("v1", executor.execute(request));
+        clock.advance(20);
+
+        // stale responses are served at once and only one refresh is started
+        assertEquals("v1", executor.execute(request));
+        assertEquals("v1", executor.execute(request));
+        assertEquals(1, background.size());
+        assertEquals(1, sent.size());
+        assertEquals(2, executor.getStale());
+
+        background.remove(0).run();
+        assertEquals("v2", executor.execute(request));
+        assertEquals(2, sent.size());
+
+        // past the window the request waits for the server
+        clock.advance(100);
+        assertEquals("v3", executor.execute(request));
+        assertEquals(0, background.size());
+    }
+
+    @Test
+    public void failedRefreshKeepsStaleEntry() {
+        final AtomicInteger status = new AtomicInteger(200);
+        final CachingRequestExecutor executor = executor(request -> response(status.get(), "v" + sent.size(),
+                "Cache-Control", "max-age=10, stale-while-revalidate=60"));
+        final Request<String> request = Request.target("/colors/orange").response(String.class);
+
+        assertEquals("v1", executor.execute(request));
+        clock.advance(20);
+
+        status.set(500);
+        assertEquals("v1", executor.execute(request));
+        background.remove(0).run();
+        assertEquals(2, sent.size());
+
+        // still stale, so served again while another refresh is tried
+        assertEquals("v1", executor.execute(request));
+        assertEquals(1, background.size());
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void staleWhileRevalidateDefault() {
+        final CachingRequestExecutor executor = CachingRequestExecutor.builder(request -> {
+            sent.add(request);
+            return response(200, "orange", "Cache-Control", "max-age=10");
+        }).clock(clock).executor(background::add).staleWhileRevalidate(30, TimeUnit.SECONDS).build();
+        final Request<String> request = Request.target("/colors/orange").response(String.class);
+
+        executor.execute(request);
+        clock.advance(20);
+        executor.execute(request);
+
+        assertEquals(1, sent.size());
+        assertEquals(1, background.size());
+    }
+
+    @Test
+    public void mustRevalidateIsNeverServedStale() {
+        final CachingRequestExecutor executor = executor(request -> response(200, "orange",
+                "Cache-Control", "max-age=10, must-revalidate, stale-while-revalidate=60"));
+        final Request<String> request = Request.target("/colors/orange").response(String.class);
+
+        executor.execute(request);
+        clock.advance(20);
+        executor.execute(request);
+
+        assertEquals(2, sent.size());
+        assertEquals(0, background.size());
+    }
+
+    @Test
+    public void negativeCaching() {
+        final CachingRequestExecutor executor = CachingRequestExecutor.builder(request -> {
+            sent.add(request);
+            return response(request.getMethod() == Request.Method.PUT ? 201 : 404, "{}");
+        }).clock(clock).negativeTtl(30, TimeUnit.SECONDS).build();
+        final Request<String> request = Request.target("/colors/mauve").response(String.class);
+
+        assertEquals(404, executor.send(request).getStatus());
+        assertEquals(404, executor.send(request).getStatus());
+        assertEquals(1, sent.size());
+        assertEquals(404, executor.send(Request.target("/colors/taupe")).getStatus());
+        assertEquals(2, sent.size());
+
+        clock.advance(31);
+        executor.send(request);
+        assertEquals(3, sent.size());
+
+        executor.send(request.toBuilder().method(Request.Method.PUT).body("{}").build());
+        executor.send(request);
+        assertEquals(5, sent.size());
+    }
+
+    @Test
+    public void negativeCachingHonoursCacheControlAndVary() {
+        final CachingRequestExecutor executor = CachingRequestExecutor.builder(request -> {
+            sent.add(request);
+            final String path = request.getPath();
+            if (path.endsWith("no-store")) return response(404, "{}", "Cache-Control", "no-store");
+            if (path.endsWith("private")) return response(404, "{}", "Cache-Control", "private");
+            return response(404, "{}", "Vary", "Accept-Language");
+        }).clock(clock).negativeTtl(30, TimeUnit.SECONDS).build();
+
+        executor.send(Request.target("/colors/no-store"));
+        executor.send(Request.target("/colors/no-store"));
+        executor.send(Request.target("/colors/private"));
+        executor.send(Request.target("/colors/private"));
+        assertEquals(4, sent.size());
+
+        final Request<?> request = Request.target("/colors/mauve");
+        executor.send(request.header("Accept-Language", "en"));
+        executor.send(request.header("Accept-Language", "en"));
+        assertEquals(5, sent.size());
+        executor.send(request.header("Accept-Language", "fr"));
+        assertEquals(6, sent.size());
+    }
+
+    @Test
+    public void negativeCachingIsOffByDefault() {
+        final CachingRequestExecutor executor = executor(request -> response(404, "{}"));
+        final Request<String> request = Request.target("/colors/mauve").response(String.class);
+
+        executor.send(request);
+        executor.send(request);
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void bloomFilter() {
+        final BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add(Request.target("/added/{i}", i).fingerprint());
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain(Request.target("/added/{i}", i).fingerprint()));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain(Request.target("/other/{i}", i).fingerprint())) falsePositives++;
+        }
+        assertTrue(falsePositives < 300, "false positives " + falsePositives);
+    }
+
+    private CachingRequestExecutor executor(final Function<Request<?>, Response<byte[]>> server) {
+        final RequestExecutor delegate = request -> {
+            sent.add(request);
+            return server.apply(request);
+        };
+        return CachingRequestExecutor.builder(delegate).clock(clock).executor(background::add).build();
+    }
+
+    private static CacheEntry entry(final int bytes) {
+        return new CacheEntry(200, new LinkedHashMap<>(), new byte[bytes], new LinkedHashMap<>(), 0, 0);
+    }
+
+    private static Response<byte[]> response(final int status, final String body, final String... headers) {
+        final Map<String, List<String>> map = new LinkedHashMap<>();
+        for (int i = 0; i < headers.length; i += 2) {
+            map.put(headers[i], Arrays.asList(headers[i + 1]));
+        }
+        return new Response<>(status, map, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String date(final long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC));
+    }
+
+    private static class MutableClock extends Clock {
+        private long millis = TimeUnit.SECONDS.toMillis(1_600_000_000L);
+
+        void advance(final long seconds) {
+            millis += TimeUnit.SECONDS.toMillis(seconds);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+    }
+}
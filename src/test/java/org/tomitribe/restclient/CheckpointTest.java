@@ -0,0 +1,223 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CheckpointTest {
+
+    private static final int PAGES = 10;
+    private static final int PAGE_SIZE = 10;
+
+    private File file;
+    private final AtomicInteger fetched = new AtomicInteger();
+
+    @BeforeEach
+    public void before() throws IOException {
+        file = File.createTempFile("crawl", ".checkpoint");
+        assertTrue(file.delete());
+    }
+
+    @AfterEach
+    public void after() {
+        file.delete();
+    }
+
+    @Test
+    public void resume() {
+        final Paginator paginator = Paginator.builder()
+                .strategy(PageStrategy.pageNumber("page", "per_page", PAGE_SIZE))
+                .build();
+
+        // consume the first three pages and part of the fourth
+        final List<Integer> first = paginator.stream(request(), this::server, new Checkpoint(file))
+                .limit(35)
+                .collect(Collectors.toList());
+        assertEquals(expected().subList(0, 35), first);
+        assertEquals(4, fetched.get());
+
+        // a new crawl starts again from page four
+        fetched.set(0);
+        final List<Integer> rest = paginator.stream(request(), this::server, new Checkpoint(file))
+                .collect(Collectors.toList());
+        assertEquals(expected().subList(30, PAGES * PAGE_SIZE), rest);
+        assertEquals(PAGES - 3 + 1, fetched.get());
+        assertTrue(new Checkpoint(file).isComplete());
+
+        // the crawl is done
+        fetched.set(0);
+        assertEquals(0, paginator.stream(request(), this::server, new Checkpoint(file)).count());
+        assertEquals(0, fetched.get());
+    }
+
+    @Test
+    public void resumeFanOut() {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Paginator paginator = Paginator.builder()
+                    .strategy(PageStrategy.pageNumber("page", "per_page", PAGE_SIZE))
+                    .parallelism(3, executor)
+                    .build();
+
+            final Function<Request<Items>, Response<Items>> server = request -> {
+                final Response<Items> response = server(request);
+                return new Response<>(200, Collections.singletonMap("X-Total-Pages", Collections.singletonList(PAGES + "")), response.getEntity());
+            };
+
+            final List<Integer> first = paginator.stream(request(), server, new Checkpoint(file))
+                    .limit(55)
+                    .collect(Collectors.toList());
+            assertEquals(expected().subList(0, 55), first);
+            assertEquals("6", new Checkpoint(file).load().getQueryParams().get("page"));
+
+            final List<Integer> rest = paginator.stream(request(), server, new Checkpoint(file))
+                    .collect(Collectors.toList());
+            assertEquals(expected().subList(50, PAGES * PAGE_SIZE), rest);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void credentialsAreNotWritten() throws IOException {
+        final Checkpoint checkpoint = new Checkpoint(file);
+        checkpoint.save(request()
+                .header("Authorization", "token secret")
+                .header("Accept", "application/json"));
+
+        final String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        assertFalse(content.contains("secret"));
+
+        final Request<?> loaded = checkpoint.load();
+        assertNull(loaded.getHeaderParams().get("authorization"));
+        assertEquals("application/json", loaded.getHeaderParams().get("accept"));
+        assertEquals("/repos/{owner}/items", loaded.getPath());
+        assertEquals("tomi tribe", loaded.getPathParams().get("owner"));
+    }
+
+    @Test
+    public void tornRecordIsIgnored() throws IOException {
+        final Checkpoint checkpoint = new Checkpoint(file);
+        checkpoint.save(request().query("page", 2));
+        checkpoint.save(request().query("page", 3));
+
+        Files.write(file.toPath(), "1\t\t%2Frepos%2F%7Bowner%7D%2Fitems\towner=tom".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        assertEquals("3", checkpoint.load().getQueryParams().get("page"));
+    }
+
+    @Test
+    public void saveAfterTornRecord() throws IOException {
+        final Checkpoint checkpoint = new Checkpoint(file);
+        checkpoint.save(request().query("page", 2));
+
+        Files.write(file.toPath(), "1\t\t%2Frepos%2F%7Bowner%7D%2Fitems\towner=tom".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        checkpoint.save(request().query("page", 3));
+        assertEquals("3", checkpoint.load().getQueryParams().get("page"));
+    }
+
+    @Test
+    public void defaultsAreNotWritten() {
+        final RequestDefaults defaults = RequestDefaults.builder()
+                .header("X-Api-Version", "1")
+                .query("api_key", "old")
+                .build();
+
+        final Checkpoint checkpoint = new Checkpoint(file);
+        checkpoint.save(request().query("page", 2).header("Accept", "application/json").defaults(defaults));
+
+        final Request<?> loaded = checkpoint.load();
+        assertEquals("application/json", loaded.getHeaderParams().get("accept"));
+        assertNull(loaded.getHeaderParams().get("x-api-version"));
+        assertNull(loaded.getQueryParams().get("api_key"));
+
+        // resuming keeps the defaults of the live request
+        final RequestDefaults live = RequestDefaults.builder()
+                .header("X-Api-Version", "2")
+                .query("api_key", "new")
+                .build();
+        final Request<?> resumed = request().defaults(live).merge(loaded);
+        assertEquals("2", resumed.getHeaderParams().get("x-api-version"));
+        assertEquals("new", resumed.getQueryParams().get("api_key"));
+        assertEquals("2", resumed.getQueryParams().get("page"));
+    }
+
+    @Test
+    public void compacts() {
+        final Checkpoint checkpoint = new Checkpoint(file, Collections.emptyList(), 1024);
+        for (int i = 0; i < 200; i++) {
+            checkpoint.save(request().query("page", i));
+        }
+
+        assertTrue(file.length() <= 1024, "" + file.length());
+        assertEquals("199", checkpoint.load().getQueryParams().get("page"));
+    }
+
+    private Request<Items> request() {
+        return Request.target("/repos/{owner}/items", "tomi tribe").response(Items.class);
+    }
+
+    private Response<Items> server(final Request<Items> request) {
+        fetched.incrementAndGet();
+        final int page = Integer.parseInt(request.getQueryParams().getOrDefault("page", "1"));
+        final int size = Integer.parseInt(request.getQueryParams().get("per_page"));
+
+        final int start = Math.min(PAGES * PAGE_SIZE, (page - 1) * size);
+        final int end = Math.min(PAGES * PAGE_SIZE, start + size);
+        return new Response<>(200, Collections.emptyMap(), new Items(IntStream.range(start, end).boxed().collect(Collectors.toList())));
+    }
+
+    private static List<Integer> expected() {
+        return IntStream.range(0, PAGES * PAGE_SIZE).boxed().collect(Collectors.toList());
+    }
+
+    public static class Items implements Page<Integer> {
+        private final List<Integer> items;
+
+        public Items(final List<Integer> items) {
+            this.items = items;
+        }
+
+        @Override
+        public List<Integer> getItems() {
+            return items;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CoalescingRequestExecutorTest {
+
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+    private final AtomicInteger sent = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    public void after() {
+        release.countDown();
+        threads.shutdownNow();
+    }
+
+    @Test
+    public void concurrentRequestsShareOneExecution() throws Exception {
+        final CoalescingRequestExecutor executor = CoalescingRequestExecutor.builder(blocking("orange")).build();
+        final Request<String> request = Request.target("/colors/{name}", "orange").response(String.class);
+
+        final List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            results.add(threads.submit(() -> executor.execute(request)));
+        }
+
+        awaitCoalesced(executor, 49);
+        release.countDown();
+
+        for (final Future<String> result : results) {
+            assertEquals("orange", result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, sent.get());
+    }
+
+    @Test
+    public void async() throws Exception {
+        final CoalescingRequestExecutor executor = CoalescingRequestExecutor.builder(blocking("orange")).build();
+        final Request<String> request = Request.target("/colors/{name}", "orange").response(String.class);
+
+        final CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> executor.execute(request), threads);
+        awaitSent(1);
+
+        final CompletableFuture<String> second = executor.executeAsync(request);
+        final CompletableFuture<String> third = executor.executeAsync(request);
+        third.cancel(true);
+
+        release.countDown();
+        assertEquals("orange", first.get(10, TimeUnit.SECONDS));
+        assertEquals("orange", second.get(10, TimeUnit.SECONDS));
+        assertEquals(1, sent.get());
+    }
+
+    @Test
+    public void keyHeaders() throws Exception {
+        final CoalescingRequestExecutor executor = CoalescingRequestExecutor.builder(blocking("orange"))
+                .keyHeaders("Authorization")
+                .build();
+
+        final Request<String> request = Request.target("/colors/{name}", "orange").response(String.class);
+
+        final Future<String> alice = threads.submit(() -> executor.execute(request.header("Authorization", "alice").header("X-Trace", "1")));
+        awaitSent(1);
+
+        final Future<String> aliceAgain = threads.submit(() -> executor.execute(request.header("Authorization", "alice").header("X-Trace", "2")));
+        final Future<String> bob = threads.submit(() -> executor.execute(request.header("Authorization", "bob")));
+        awaitSent(2);
+        awaitCoalesced(executor, 1);
+
+        release.countDown();
+        assertEquals("orange", alice.get(10, TimeUnit.SECONDS));
+        assertEquals("orange", aliceAgain.get(10, TimeUnit.SECONDS));
+        assertEquals("orange", bob.get(10, TimeUnit.SECONDS));
+        assertEquals(2, sent.get());
+    }
+
+    @Test
+    public void postIsNotCoalesced() throws Exception {
+        final CoalescingRequestExecutor executor = CoalescingRequestExecutor.builder(blocking("orange")).build();
+        final Request<String> request = Request.<String>builder()
+                .method(Request.Method.POST)
+                .path("/colors")
+                .body("{}")
+                .responseType(String.class)
+                .build();
+
+        final Future<String> first = threads.submit(() -> executor.execute(request));
+        final Future<String> second = threads.submit(() -> executor.execute(request));
+        awaitSent(2);
+
+        release.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        assertEquals(0, executor.getCoalesced());
+    }
+
+    @Test
+    public void failureIsShared() throws Exception {
+        final RequestExecutor failing = request -> {
+            sent.incrementAndGet();
+            await();
+            return new Response<>(503, Collections.emptyMap(), new byte[0]);
+        };
+        final CoalescingRequestExecutor executor = CoalescingRequestExecutor.builder(failing).build();
+        final Request<String> request = Request.target("/colors").response(String.class);
+
+        final Future<String> first = threads.submit(() -> executor.execute(request));
+        awaitSent(1);
+        final Future<String> second = threads.submit(() -> executor.execute(request));
+        awaitCoalesced(executor, 1);
+
+        release.countDown();
+        assertTrue(assertThrows(Exception.class, () -> first.get(10, TimeUnit.SECONDS)).getCause() instanceof HttpStatusException);
+        assertTrue(assertThrows(Exception.class, () -> second.get(10, TimeUnit.SECONDS)).getCause() instanceof HttpStatusException);
+        assertEquals(1, sent.get());
+    }
+
+    @Test
+    public void completedRequestsAreNotReused() {
+        release.countDown();
+        final CoalescingRequestExecutor executor = CoalescingRequestExecutor.builder(blocking("orange")).build();
+        final Request<String> request = Request.target("/colors").response(String.class);
+
+        executor.execute(request);
+        executor.execute(request);
+        assertEquals(2, sent.get());
+    }
+
+    private RequestExecutor blocking(final String body) {
+        return request -> {
+            sent.incrementAndGet();
+            await();
+            return new Response<>(200, Collections.emptyMap(), body.getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    private void await() {
+        try {
+            release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitSent(final int count) throws InterruptedException {
+        for (int i = 0; i < 1000 && sent.get() < count; i++) Thread.sleep(10);
+        assertEquals(count, sent.get());
+    }
+
+    private static void awaitCoalesced(final CoalescingRequestExecutor executor, final int count) throws InterruptedException {
+        for (int i = 0; i < 1000 && executor.getCoalesced() < count; i++) Thread.sleep(10);
+        assertEquals(count, executor.getCoalesced());
+    }
+}
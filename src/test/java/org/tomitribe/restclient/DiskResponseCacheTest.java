@@ -0,0 +1,185 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DiskResponseCacheTest {
+
+    @TempDir
+    File directory;
+
+    @Test
+    public void roundTrip() {
+        final DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024);
+        final Fingerprint key = key("orange");
+
+        cache.put(key, entry("orange"));
+
+        final CacheEntry entry = cache.get(key);
+        assertEquals(200, entry.getStatus());
+        assertEquals("\"v1\"", entry.getETag());
+        assertEquals(Arrays.asList("a", "b"), entry.getHeaders().get("x-multi"));
+        assertEquals("en", entry.getVaryValues().get("accept-language"));
+        assertEquals(1000, entry.getRequestTime());
+        assertEquals(1100, entry.getResponseTime());
+        assertArrayEquals("orange".getBytes(StandardCharsets.UTF_8), entry.getBody());
+        assertNull(cache.get(key("red")));
+    }
+
+    @Test
+    public void survivesRestart() {
+        final DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024);
+        cache.put(key("orange"), entry("orange"));
+        cache.put(key("red"), entry("red"));
+        cache.put(key("orange"), entry("orange 2"));
+        cache.remove(key("red"));
+        cache.close();
+
+        final DiskResponseCache reopened = new DiskResponseCache(directory, 1024 * 1024);
+        assertEquals(1, reopened.size());
+        assertEquals("orange 2", new String(reopened.get(key("orange")).getBody(), StandardCharsets.UTF_8));
+        assertNull(reopened.get(key("red")));
+    }
+
+    @Test
+    public void tornRecordIsIgnored() throws IOException {
+        final DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024);
+        cache.put(key("orange"), entry("orange"));
+        cache.put(key("red"), entry("red"));
+        cache.close();
+
+        // corrupt the last byte of the second record
+        final File segment = directory.listFiles()[0];
+        try (final RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            long end = file.length() - 1;
+            while (end > 0) {
+                file.seek(end);
+                if (file.read() != 0) break;
+                end--;
+            }
+            file.seek(end);
+            file.write(0x7F);
+        }
+
+        final DiskResponseCache reopened = new DiskResponseCache(directory, 1024 * 1024);
+        assertNotNull(reopened.get(key("orange")));
+        assertNull(reopened.get(key("red")));
+
+        // and writing resumes where the torn record started
+        reopened.put(key("blue"), entry("blue"));
+        final DiskResponseCache again = new DiskResponseCache(directory, 1024 * 1024);
+        assertNotNull(again.get(key("orange")));
+        assertNotNull(again.get(key("blue")));
+    }
+
+    @Test
+    public void compaction() {
+        final int segmentSize = 64 * 1024;
+        final DiskResponseCache cache = new DiskResponseCache(directory, 4 * segmentSize, segmentSize);
+        final byte[] body = new byte[4000];
+
+        for (int i = 0; i < 500; i++) {
+            cache.put(key("" + i), new CacheEntry(200, Collections.emptyMap(), body, Collections.emptyMap(), i, i));
+            if (i % 10 == 0) assertNotNull(cache.get(key("0")));
+            assertTrue(cache.getDiskBytes() <= 4 * segmentSize, "disk bytes " + cache.getDiskBytes());
+        }
+
+        // recently used entries are kept, the least recently used are gone
+        assertNotNull(cache.get(key("0")));
+        assertNotNull(cache.get(key("499")));
+        assertNull(cache.get(key("1")));
+        assertTrue(directory.listFiles().length <= 4);
+
+        final DiskResponseCache reopened = new DiskResponseCache(directory, 4 * segmentSize, segmentSize);
+        assertNotNull(reopened.get(key("0")));
+        assertNotNull(reopened.get(key("499")));
+    }
+
+    @Test
+    public void removeAfterEvictionSurvivesRestart() {
+        final int segmentSize = 64 * 1024;
+        final DiskResponseCache cache = new DiskResponseCache(directory, 4 * segmentSize, segmentSize);
+        final byte[] body = new byte[4000];
+
+        for (int i = 1; i <= 20; i++) {
+            cache.put(key("" + i), new CacheEntry(200, Collections.emptyMap(), body, Collections.emptyMap(), i, i));
+        }
+        cache.put(key("0"), new CacheEntry(200, Collections.emptyMap(), body, Collections.emptyMap(), 0, 0));
+
+        // used more recently than "0", which is evicted first although written last
+        for (int i = 1; i <= 20; i++) {
+            assertNotNull(cache.get(key("" + i)));
+        }
+        for (int i = 21; i <= 32; i++) {
+            cache.put(key("" + i), new CacheEntry(200, Collections.emptyMap(), body, Collections.emptyMap(), i, i));
+        }
+        assertNull(cache.get(key("0")));
+
+        cache.remove(key("0"));
+        cache.close();
+
+        final DiskResponseCache reopened = new DiskResponseCache(directory, 4 * segmentSize, segmentSize);
+        assertNotNull(reopened.get(key("32")));
+        assertNull(reopened.get(key("0")));
+    }
+
+    @Test
+    public void tiered() {
+        final MemoryResponseCache memory = new MemoryResponseCache(1024 * 1024);
+        final DiskResponseCache disk = new DiskResponseCache(directory, 1024 * 1024);
+        final TieredResponseCache cache = new TieredResponseCache(memory, disk);
+
+        disk.put(key("orange"), entry("orange"));
+        assertNull(memory.get(key("orange")));
+
+        assertNotNull(cache.get(key("orange")));
+        assertNotNull(memory.get(key("orange")));
+
+        cache.remove(key("orange"));
+        assertNull(memory.get(key("orange")));
+        assertNull(disk.get(key("orange")));
+    }
+
+    private static Fingerprint key(final String name) {
+        return Request.target("/colors/{name}", name).fingerprint();
+    }
+
+    private static CacheEntry entry(final String body) {
+        final Map<String, List<String>> headers = new LinkedHashMap<>();
+        headers.put("ETag", Collections.singletonList("\"v1\""));
+        headers.put("X-Multi", Arrays.asList("a", "b"));
+        return new CacheEntry(200, headers, body.getBytes(StandardCharsets.UTF_8),
+                Collections.singletonMap("accept-language", "en"), 1000, 1100);
+    }
+}
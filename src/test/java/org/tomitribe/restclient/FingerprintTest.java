@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class FingerprintTest {
+
+    @Test
+    public void murmur3() {
+        final byte[] data = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+        final Fingerprint fingerprint = Fingerprint.hash(data, data.length);
+
+        assertEquals(0xe34bbc7bbc071b6cL, fingerprint.getHigh());
+        assertEquals(0x7a433ca9c49a9347L, fingerprint.getLow());
+    }
+
+    @Test
+    public void paramOrderDoesNotMatter() {
+        final Request<?> a = Request.target("/repos/{owner}/{repo}", "tomitribe", "crest")
+                .query("state", "open")
+                .query("sort", "created")
+                .header("Accept", "application/json");
+
+        final Request<?> b = Request.target("/repos/{owner}/{repo}", "tomitribe", "crest")
+                .header("accept", "application/json")
+                .query("sort", "created")
+                .query("state", "open");
+
+        assertEquals(a.fingerprint(), b.fingerprint());
+        assertArrayEquals(a.fingerprint().toBytes(), b.fingerprint().toBytes());
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+    }
+
+    @Test
+    public void differences() {
+        final Request<?> request = Request.target("/repos/{owner}", "tomitribe").query("state", "open");
+
+        assertNotEquals(request.fingerprint(), request.query("state", "closed").fingerprint());
+        assertNotEquals(request.fingerprint(), request.path("owner", "apache").fingerprint());
+        assertNotEquals(request.fingerprint(), request.header("authorization", "token").fingerprint());
+        assertNotEquals(request.fingerprint(), request.toBuilder().method(Request.Method.DELETE).build().fingerprint());
+        assertNotEquals(request.fingerprint(), request.toBuilder().body("{}").build().fingerprint());
+        assertNotEquals(request, request.query("page", 2));
+    }
+
+    @Test
+    public void noAmbiguity() {
+        final Request<?> a = Request.target("/search").query("q", "a").query("r", "b");
+        final Request<?> b = Request.target("/search").query("q", "ar").query("", "b");
+
+        assertNotEquals(a.fingerprint(), b.fingerprint());
+    }
+
+    @Test
+    public void selectedHeaders() {
+        final Request<?> request = Request.target("/repos").header("Authorization", "token");
+        final Set<String> headers = new HashSet<>(Collections.singletonList("Authorization"));
+
+        assertEquals(request.fingerprint(headers), request.header("X-Trace", "1").fingerprint(headers));
+        assertNotEquals(request.fingerprint(headers), request.header("Authorization", "other").fingerprint(headers));
+    }
+
+    @Test
+    public void stable() {
+        final Request<?> request = Request.target("/repos/{owner}", "tomitribe").query("state", "open");
+
+        // fingerprints may be stored, so the encoding must not change
+        assertEquals("871df32fe12933b05ef6a6e92a42b77a", request.fingerprint().toString());
+        assertEquals(request.fingerprint(), Fingerprint.of(request.fingerprint().toBytes()));
+    }
+
+    @Test
+    public void collidingHashes() {
+        final Fingerprint a = Request.target("/repos/a").fingerprint();
+        final Fingerprint b = Request.target("/repos/b").fingerprint();
+
+        // the same hash with a different encoding must not be the same key
+        final Fingerprint forged = new Fingerprint(a.getHigh(), a.getLow(), b.toBytes());
+        assertNotEquals(a, forged);
+        assertEquals(a, new Fingerprint(a.getHigh(), a.getLow(), a.toBytes()));
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.tomitribe.util.IO;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NioRequestExecutorTest {
+
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private HttpServer server;
+    private NioRequestExecutor executor;
+
+    @BeforeEach
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(threads);
+
+        server.createContext("/widgets/", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            final String id = exchange.getRequestURI().getPath().substring("/widgets/".length());
+            if ("missing".equals(id)) {
+                respond(exchange, 404, "{\"error\":\"not found\"}");
+                return;
+            }
+            respond(exchange, 200, "{\"id\":\"" + id + "\",\"color\":\"" + exchange.getRequestURI().getQuery() + "\"}");
+        });
+
+        server.createContext("/echo", exchange -> {
+            final String body = new String(IO.readBytes(exchange.getRequestBody()), StandardCharsets.UTF_8);
+            respond(exchange, 200, exchange.getRequestMethod() + " "
+                    + exchange.getRequestHeaders().getFirst("Content-Type") + " "
+                    + exchange.getRequestHeaders().getFirst("X-Trace") + " "
+                    + body);
+        });
+
+        server.createContext("/chunked", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (final OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < 1000; i++) {
+                    out.write(("line " + i + "\n").getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            }
+        });
+
+        server.createContext("/large", exchange -> {
+            final byte[] bytes = new byte[300 * 1024];
+            Arrays.fill(bytes, (byte) 'x');
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (final OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+
+        server.createContext("/hang", exchange -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "late");
+        });
+
+        server.start();
+
+        executor = NioRequestExecutor.builder()
+                .baseUri("http://127.0.0.1:" + server.getAddress().getPort())
+                .maxConnectionsPerHost(8)
+                .build();
+    }
+
+    @AfterEach
+    public void after() {
+        executor.close();
+        release.countDown();
+        server.stop(0);
+        threads.shutdownNow();
+    }
+
+    @Test
+    public void headerInjection() {
+        final Request<String> request = Request.<String>builder()
+                .path("/echo")
+                .header("X-Trace", "abc\r\nX-Injected: yes")
+                .responseType(String.class)
+                .build();
+
+        assertThrows(IllegalArgumentException.class, () -> executor.executeAsync(request));
+        assertThrows(IllegalArgumentException.class, () -> executor.execute(request.header("X-Trace", "\u0100")));
+        assertThrows(IllegalArgumentException.class, () -> executor.execute(request.header("X-Trace", "ok").header("Bad Name", "1")));
+        assertEquals("GET null ok ", executor.execute(request.header("X-Trace", "ok")));
+    }
+
+    @Test
+    public void largeBody() {
+        final Response<byte[]> response = executor.send(Request.target("/large"));
+        assertEquals(300 * 1024, response.getEntity().length);
+    }
+
+    @Test
+    public void get() {
+        final Widget widget = executor.execute(Request.target("/widgets/{id}", "42")
+                .query("color", "red")
+                .response(Widget.class));
+
+        assertEquals("42", widget.getId());
+        assertEquals("color=red", widget.getColor());
+    }
+
+    @Test
+    public void post() {
+        final Request<String> request = Request.<String>builder()
+                .method(Request.Method.POST)
+                .path("/echo")
+                .header("X-Trace", "abc")
+                .body("{\"name\":\"orange\"}")
+                .responseType(String.class)
+                .build();
+
+        assertEquals("POST application/json abc {\"name\":\"orange\"}", executor.execute(request));
+    }
+
+    @Test
+    public void chunked() {
+        final String body = executor.execute(Request.target("/chunked").response(String.class));
+
+        final String[] lines = body.split("\n");
+        assertEquals(1000, lines.length);
+        assertEquals("line 999", lines[999]);
+    }
+
+    @Test
+    public void errorStatus() {
+        final Request<Widget> request = Request.target("/widgets/{id}", "missing").response(Widget.class);
+
+        final HttpStatusException e = assertThrows(HttpStatusException.class, () -> executor.execute(request));
+        assertEquals(404, e.getStatus());
+        assertEquals("{\"error\":\"not found\"}", e.getBody());
+    }
+
+    @Test
+    public void keepAlive() {
+        for (int i = 0; i < 20; i++) {
+            executor.execute(Request.target("/widgets/{id}", "" + i).response(Widget.class));
+        }
+
+        assertEquals(1, clientPorts.size(), "connections " + clientPorts);
+    }
+
+    @Test
+    public void manyInFlight() {
+        final List<CompletableFuture<Widget>> futures = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            futures.add(executor.executeAsync(Request.target("/widgets/{id}", "" + i).response(Widget.class)));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals("" + i, futures.get(i).join().getId());
+        }
+
+        assertTrue(clientPorts.size() <= 8, "connections " + clientPorts.size());
+    }
+
+    @Test
+    public void connectionRefused() throws IOException {
+        final int port;
+        try (final ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        final Request<String> request = Request.target("http://127.0.0.1:" + port + "/nothing").response(String.class);
+        assertThrows(UncheckedIOException.class, () -> executor.execute(request));
+    }
+
+    @Test
+    public void failedRegisterFreesTheSlot() throws Exception {
+        final AtomicInteger failures = new AtomicInteger(3);
+        final NioRequestExecutor failing = new NioRequestExecutor(
+                URI.create("http://127.0.0.1:" + server.getAddress().getPort()), 1,
+                TimeUnit.SECONDS.toNanos(10), TimeUnit.SECONDS.toNanos(10), 8 * 1024, 16, threads) {
+            @Override
+            SelectionKey register(final SocketChannel channel, final int ops, final Object attachment) throws IOException {
+                if (failures.getAndDecrement() > 0) throw new ClosedChannelException();
+                return super.register(channel, ops, attachment);
+            }
+        };
+
+        try {
+            final List<CompletableFuture<Widget>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(failing.executeAsync(Request.target("/widgets/{id}", "" + i).response(Widget.class)));
+            }
+
+            for (final CompletableFuture<Widget> future : futures.subList(0, 3)) {
+                final ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+                assertInstanceOf(UncheckedIOException.class, e.getCause());
+            }
+            assertEquals("3", futures.get(3).get(10, TimeUnit.SECONDS).getId());
+        } finally {
+            failing.close();
+        }
+    }
+
+    @Test
+    public void closeFailsPending() {
+        final CompletableFuture<String> pending = executor.executeAsync(Request.target("/hang").response(String.class));
+
+        executor.close();
+
+        final CompletionException e = assertThrows(CompletionException.class, pending::join);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public static class Widget {
+        private String id;
+        private String color;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(final String id) {
+            this.id = id;
+        }
+
+        public String getColor() {
+            return color;
+        }
+
+        public void setColor(final String color) {
+            this.color = color;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PageSizeTunerTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * When round-trips dominate, bigger pages always win
+     */
+    @Test
+    public void growsWhileThroughputImproves() {
+        final PageSizeTuner tuner = PageSizeTuner.builder()
+                .min(10)
+                .max(640)
+                .initial(10)
+                .build();
+
+        for (int i = 0; i < 20; i++) {
+            final int size = tuner.getSize();
+            tuner.record(size, size, 100 * MILLIS + size * MILLIS / 10, -1);
+        }
+
+        assertEquals(640, tuner.getSize());
+    }
+
+    /**
+     * A server that slows down sharply past 100 items per page
+     */
+    @Test
+    public void settlesAroundTheBestSize() {
+        final PageSizeTuner tuner = PageSizeTuner.builder()
+                .min(25)
+                .max(1600)
+                .initial(25)
+                .build();
+
+        final List<Integer> sizes = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            final int size = tuner.getSize();
+            final long perItem = size <= 100 ? MILLIS / 10 : MILLIS * 5;
+            tuner.record(size, size, 50 * MILLIS + size * perItem, -1);
+            sizes.add(tuner.getSize());
+        }
+
+        final List<Integer> last = sizes.subList(20, 40);
+        assertTrue(last.stream().allMatch(size -> size >= 50 && size <= 200), last.toString());
+    }
+
+    @Test
+    public void shrinksWhenTooSlow() {
+        final PageSizeTuner tuner = PageSizeTuner.builder()
+                .initial(400)
+                .maxLatency(1, TimeUnit.SECONDS)
+                .build();
+
+        tuner.record(400, 400, 2000 * MILLIS, -1);
+        assertEquals(200, tuner.getSize());
+    }
+
+    @Test
+    public void shrinksWhenTooLarge() {
+        final PageSizeTuner tuner = PageSizeTuner.builder()
+                .initial(400)
+                .maxBytes(1024 * 1024)
+                .build();
+
+        tuner.record(400, 400, MILLIS, 5 * 1024 * 1024);
+        assertEquals(200, tuner.getSize());
+    }
+
+    @Test
+    public void shrinksOnFailure() {
+        final PageSizeTuner tuner = PageSizeTuner.builder()
+                .min(50)
+                .initial(100)
+                .build();
+
+        tuner.failed(100);
+        assertEquals(50, tuner.getSize());
+
+        tuner.failed(50);
+        assertEquals(50, tuner.getSize());
+
+        // stale observation
+        tuner.failed(100);
+        assertEquals(50, tuner.getSize());
+    }
+
+    /**
+     * Page numbers are recomputed when the size changes,
+     * so no item is skipped or read twice
+     */
+    @Test
+    public void pageNumbersFollowSizeChanges() {
+        final int total = 5000;
+        final PageSizeTuner tuner = PageSizeTuner.builder()
+                .min(8)
+                .max(512)
+                .initial(8)
+                .samples(1)
+                .build();
+
+        final Paginator paginator = Paginator.builder()
+                .strategy(PageStrategy.pageNumber("page", "per_page", 8))
+                .pageSize("per_page", tuner)
+                .build();
+
+        final List<Integer> sizes = new ArrayList<>();
+        final List<Integer> items = paginator.stream(Request.target("/items").response(Items.class), request -> {
+            final int page = Integer.parseInt(request.getQueryParams().getOrDefault("page", "1"));
+            final int size = Integer.parseInt(request.getQueryParams().get("per_page"));
+            sizes.add(size);
+
+            final int start = Math.min(total, (page - 1) * size);
+            final int end = Math.min(total, start + size);
+            final Items body = new Items(IntStream.range(start, end).boxed().collect(Collectors.toList()));
+            return new Response<>(200, Collections.emptyMap(), body);
+        }).collect(Collectors.toList());
+
+        assertEquals(IntStream.range(0, total).boxed().collect(Collectors.toList()), items);
+        assertTrue(sizes.stream().distinct().count() > 1, "page size never changed: " + sizes);
+    }
+
+    @Test
+    public void invalidContentLength() {
+        final PageSizeTuner tuner = PageSizeTuner.builder().build();
+        final Paginator paginator = Paginator.builder()
+                .strategy(PageStrategy.pageNumber("page", "per_page", 8))
+                .pageSize("per_page", tuner)
+                .build();
+
+        final List<Integer> items = paginator.stream(Request.target("/items").response(Items.class), request -> {
+            final boolean first = !request.getQueryParams().containsKey("page");
+            final Items body = new Items(first ? Arrays.asList(1, 2) : Collections.emptyList());
+            return new Response<>(200, Collections.singletonMap("Content-Length", Arrays.asList("12, 12")), body);
+        }).collect(Collectors.toList());
+
+        assertEquals(Arrays.asList(1, 2), items);
+    }
+
+    public static class Items implements Page<Integer> {
+        private final List<Integer> items;
+
+        public Items(final List<Integer> items) {
+            this.items = items;
+        }
+
+        @Override
+        public List<Integer> getItems() {
+            return items;
+        }
+    }
+}
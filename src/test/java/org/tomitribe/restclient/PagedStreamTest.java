@@ -0,0 +1,160 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PagedStreamTest {
+
+    private static final int PAGES = 20;
+    private static final int PAGE_SIZE = 50;
+
+    @Test
+    public void sequential() {
+        final List<Integer> items = Suppliers.asPagedStream(pages()).collect(Collectors.toList());
+
+        assertEquals(expected(), items);
+    }
+
+    @Test
+    public void parallel() {
+        final List<Integer> items = Suppliers.asPagedStream(pages())
+                .parallel()
+                .map(i -> i)
+                .collect(Collectors.toList());
+
+        assertEquals(expected(), items);
+    }
+
+    @Test
+    public void splitHandsOffWholePages() {
+        final Spliterator<Integer> spliterator = new PageSpliterator<>(pages());
+
+        final Spliterator<Integer> first = spliterator.trySplit();
+        assertNotNull(first);
+        assertEquals(PAGE_SIZE, first.estimateSize());
+        assertTrue(first.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+
+        final List<Integer> items = new ArrayList<>();
+        first.forEachRemaining(items::add);
+        assertEquals(expected().subList(0, PAGE_SIZE), items);
+    }
+
+    @Test
+    public void rangeSequential() {
+        final List<Integer> items = Suppliers.asPagedStream(pageNumbers(), 1, PAGES)
+                .collect(Collectors.toList());
+
+        assertEquals(expected(), items);
+    }
+
+    @Test
+    public void rangeParallel() {
+        final List<Integer> items = Suppliers.asPagedStream(pageNumbers(), 1, PAGES)
+                .parallel()
+                .collect(Collectors.toList());
+
+        assertEquals(expected(), items);
+    }
+
+    @Test
+    public void rangeSplitsPageNumbers() {
+        final AtomicInteger fetched = new AtomicInteger();
+        final IntFunction<Page<Integer>> pages = pageNumbers();
+        final Spliterator<Integer> spliterator = new PageRangeSpliterator<>(page -> {
+            fetched.incrementAndGet();
+            return pages.apply(page);
+        }, 1, PAGES + 1);
+
+        final Spliterator<Integer> prefix = spliterator.trySplit();
+        assertNotNull(prefix);
+        assertEquals(0, fetched.get(), "splitting a range should not fetch");
+
+        final List<Integer> items = new ArrayList<>();
+        prefix.forEachRemaining(items::add);
+        assertEquals(expected().subList(0, PAGES / 2 * PAGE_SIZE), items);
+        assertEquals(PAGES / 2, fetched.get());
+
+        spliterator.forEachRemaining(items::add);
+        assertEquals(expected(), items);
+        assertEquals(0, spliterator.estimateSize());
+        assertNull(spliterator.trySplit());
+    }
+
+    @Test
+    public void characteristicsDoNotChange() {
+        final Spliterator<Integer> pages = new PageSpliterator<>(pages());
+        final Spliterator<Integer> range = new PageRangeSpliterator<>(pageNumbers(), 1, PAGES + 1);
+        final int before = pages.characteristics();
+        final int rangeBefore = range.characteristics();
+
+        pages.forEachRemaining(i -> { });
+        range.forEachRemaining(i -> { });
+
+        assertEquals(before, pages.characteristics());
+        assertEquals(rangeBefore, range.characteristics());
+    }
+
+    @Test
+    public void rangeEndingAtMaxValue() {
+        final List<Integer> numbers = Suppliers.asPagedStream(number -> () -> Collections.singletonList(number),
+                Integer.MAX_VALUE - 2, Integer.MAX_VALUE).collect(Collectors.toList());
+
+        assertEquals(Arrays.asList(Integer.MAX_VALUE - 2, Integer.MAX_VALUE - 1, Integer.MAX_VALUE), numbers);
+    }
+
+    private static List<Integer> expected() {
+        return IntStream.range(0, PAGES * PAGE_SIZE).boxed().collect(Collectors.toList());
+    }
+
+    private static Supplier<Page<Integer>> pages() {
+        final IntFunction<Page<Integer>> pages = pageNumbers();
+        final AtomicInteger page = new AtomicInteger(1);
+        return () -> {
+            final int number = page.getAndIncrement();
+            return number <= PAGES ? pages.apply(number) : null;
+        };
+    }
+
+    /**
+     * Page numbers start at one
+     */
+    private static IntFunction<Page<Integer>> pageNumbers() {
+        return number -> {
+            final int start = (number - 1) * PAGE_SIZE;
+            final List<Integer> items = IntStream.range(start, start + PAGE_SIZE)
+                    .boxed()
+                    .collect(Collectors.toList());
+            return () -> items;
+        };
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PaginatorTest {
+
+    private static final int PAGES = 10;
+    private static final int PAGE_SIZE = 30;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @AfterEach
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void linkHeader() {
+        final Paginator paginator = Paginator.builder().build();
+
+        final List<Integer> items = paginator.stream(firstPage(), this::linkServer).collect(Collectors.toList());
+
+        assertEquals(expected(), items);
+        assertEquals(PAGES, requests.get());
+    }
+
+    @Test
+    public void linkHeaderFanOut() {
+        final Paginator paginator = Paginator.builder()
+                .parallelism(4, executor)
+                .build();
+
+        final List<Integer> items = paginator.stream(firstPage(), slow(this::linkServer))
+                .collect(Collectors.toList());
+
+        assertEquals(expected(), items);
+        assertEquals(PAGES, requests.get());
+        assertTrue(maxInFlight.get() > 1, "pages were not requested concurrently");
+        assertTrue(maxInFlight.get() <= 4, "parallelism exceeded: " + maxInFlight.get());
+    }
+
+    @Test
+    public void defaultExecutor() {
+        final Paginator paginator = Paginator.builder()
+                .parallelism(4, null)
+                .build();
+
+        final List<Integer> items = paginator.stream(firstPage(), slow(this::linkServer))
+                .collect(Collectors.toList());
+
+        assertEquals(expected(), items);
+        assertTrue(maxInFlight.get() > 1, "pages were not requested concurrently");
+    }
+
+    @Test
+    public void pageNumber() {
+        final Paginator paginator = Paginator.builder()
+                .strategy(PageStrategy.pageNumber("page", "per_page", PAGE_SIZE))
+                .build();
+
+        final List<Integer> items = paginator.stream(firstPage(), request -> {
+            assertEquals(PAGE_SIZE + "", request.getQueryParams().get("per_page"));
+            return page(request.getQueryParams().get("page"), Collections.emptyMap());
+        }).collect(Collectors.toList());
+
+        assertEquals(expected(), items);
+        // the last page is full, so one more empty page tells us we are done
+        assertEquals(PAGES + 1, requests.get());
+    }
+
+    @Test
+    public void pageNumberTotalPagesHeader() {
+        final Paginator paginator = Paginator.builder()
+                .strategy(PageStrategy.pageNumber("page", "per_page", PAGE_SIZE))
+                .parallelism(3, executor)
+                .build();
+
+        final List<Integer> items = paginator.stream(firstPage(), request -> {
+            return page(request.getQueryParams().get("page"), Collections.singletonMap("X-Total-Pages", PAGES + ""));
+        }).collect(Collectors.toList());
+
+        assertEquals(expected(), items);
+        assertEquals(PAGES, requests.get());
+    }
+
+    @Test
+    public void cursor() {
+        final Paginator paginator = Paginator.builder()
+                .strategy(PageStrategy.cursor("after", Issues::getNext))
+                .build();
+
+        final List<Integer> items = paginator.stream(firstPage(), request -> {
+            final String after = request.getQueryParams().get("after");
+            final int page = after == null ? 1 : Integer.parseInt(after.substring(1));
+            return page(page + "", Collections.emptyMap());
+        }).collect(Collectors.toList());
+
+        assertEquals(expected(), items);
+    }
+
+    @Test
+    public void failedPage() {
+        final Paginator paginator = Paginator.builder().build();
+
+        final Stream<Integer> stream = paginator.stream(firstPage(), request -> {
+            if (request.getQueryParams().containsKey("page")) {
+                return new Response<>(500, Collections.emptyMap(), null);
+            }
+            return linkServer(request);
+        });
+
+        assertThrows(IllegalStateException.class, () -> stream.collect(Collectors.toList()));
+    }
+
+    @Test
+    public void pagedMethod() {
+        final Paginator paginator = Paginator.builder()
+                .parallelism(2, executor)
+                .build();
+
+        final IssueClient client = (IssueClient) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{IssueClient.class},
+                (proxy, method, args) -> paginator.stream(method, args, request -> {
+                    assertEquals(Issues.class, request.getResponseType());
+                    assertEquals("tomitribe", request.getPathParams().get("owner"));
+                    return cast(linkServer(cast(request)));
+                }));
+
+        assertEquals(expected(), client.issues("tomitribe").collect(Collectors.toList()));
+    }
+
+    @Test
+    public void pagedMethodMustReturnStream() throws Exception {
+        final Paginator paginator = Paginator.builder().build();
+        final java.lang.reflect.Method method = IssueClient.class.getMethod("list", String.class);
+
+        assertThrows(InvalidMethodSignatureException.class, () -> paginator.stream(method, new Object[]{"tomitribe"}, request -> null));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(final Object object) {
+        return (T) object;
+    }
+
+    private Request<Issues> firstPage() {
+        return Request.target("/repos/{owner}/issues", "tomitribe").response(Issues.class);
+    }
+
+    private Response<Issues> linkServer(final Request<Issues> request) {
+        final String page = request.getQueryParams().get("page");
+        final int number = page == null ? 1 : Integer.parseInt(page);
+
+        final Map<String, String> headers = new HashMap<>();
+        if (number < PAGES) {
+            headers.put("Link", "<https://api.example.com/repos/tomitribe/issues?page=" + (number + 1) + ">; rel=\"next\", " +
+                    "<https://api.example.com/repos/tomitribe/issues?page=" + PAGES + ">; rel=\"last\"");
+        }
+        return page(number + "", headers);
+    }
+
+    private Function<Request<Issues>, Response<Issues>> slow(final Function<Request<Issues>, Response<Issues>> fetch) {
+        return request -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+                return fetch.apply(request);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        };
+    }
+
+    private Response<Issues> page(final String page, final Map<String, String> headers) {
+        requests.incrementAndGet();
+        final int number = page == null ? 1 : Integer.parseInt(page);
+
+        final Issues issues = new Issues();
+        if (number <= PAGES) {
+            final int start = (number - 1) * PAGE_SIZE;
+            IntStream.range(start, start + PAGE_SIZE).forEach(issues.items::add);
+            issues.next = number < PAGES ? "p" + (number + 1) : null;
+        }
+
+        final Map<String, List<String>> map = new HashMap<>();
+        headers.forEach((name, value) -> map.put(name, Collections.singletonList(value)));
+        return new Response<>(200, map, issues);
+    }
+
+    private static List<Integer> expected() {
+        return IntStream.range(0, PAGES * PAGE_SIZE).boxed().collect(Collectors.toList());
+    }
+
+    public static class Issues implements Page<Integer> {
+        private final List<Integer> items = new ArrayList<>();
+        private String next;
+
+        @Override
+        public List<Integer> getItems() {
+            return items;
+        }
+
+        public String getNext() {
+            return next;
+        }
+    }
+
+    public interface IssueClient {
+        @GET
+        @Path("/repos/{owner}/issues")
+        @Paged(Issues.class)
+        Stream<Integer> issues(@PathParam("owner") String owner);
+
+        @GET
+        @Path("/repos/{owner}/issues")
+        @Paged(Issues.class)
+        List<Integer> list(@PathParam("owner") String owner);
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.ext.ParamConverter;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class ParamConvertersTest {
+
+    @Test
+    public void scalars() {
+        assertEquals("hello", ParamConverters.toString("hello"));
+        assertEquals("42", ParamConverters.toString(42));
+        assertEquals("DAYS", ParamConverters.toString(TimeUnit.DAYS));
+    }
+
+    @Test
+    public void collectionsAndArrays() {
+        assertEquals("2,3,5", ParamConverters.toString(Arrays.asList(2, 3, 5)));
+        assertEquals("", ParamConverters.toString(Collections.emptyList()));
+        assertEquals("a,b", ParamConverters.toString(new String[]{"a", "b"}));
+        assertEquals("1,2,3", ParamConverters.toString(new int[]{1, 2, 3}));
+        assertEquals("9223372036854775807,-1", ParamConverters.toString(new long[]{Long.MAX_VALUE, -1}));
+        assertEquals("1.5,2.0", ParamConverters.toString(new double[]{1.5, 2}));
+        assertEquals("true,false", ParamConverters.toString(new boolean[]{true, false}));
+        assertEquals("1,2,3,4", ParamConverters.toString(Arrays.asList(Arrays.asList(1, 2), new int[]{3, 4})));
+    }
+
+    @Test
+    public void primitives() {
+        assertEquals("0", ParamConverters.toString(0));
+        assertSame(ParamConverters.toString(7), ParamConverters.toString(7L));
+        assertEquals("1023", ParamConverters.toString(1023));
+        assertEquals("1024", ParamConverters.toString(1024));
+        assertEquals("-1", ParamConverters.toString(-1));
+        assertEquals("-9223372036854775808", ParamConverters.toString(Long.MIN_VALUE));
+        assertEquals("true", ParamConverters.toString(true));
+
+        final Request<?> request = Request.target("/items/{id}")
+                .path("id", 123456789012L)
+                .query("page", 3)
+                .query("deleted", false)
+                .header("X-Count", 12);
+
+        assertEquals("123456789012", request.getPathParams().get("id"));
+        assertEquals("3", request.getQueryParams().get("page"));
+        assertEquals("false", request.getQueryParams().get("deleted"));
+        assertEquals("12", request.getHeaderParams().get("x-count"));
+        assertEquals("/items/123456789012?page=3&deleted=false", request.getURI().toString());
+    }
+
+    @Test
+    public void primitivesUseRegisteredConverter() {
+        final ParamConverters converters = ParamConverters.builder()
+                .register(Integer.class, new Converter<Integer>() {
+                    @Override
+                    public String toString(final Integer value) {
+                        return String.format("%04d", value);
+                    }
+                })
+                .register(Long.class, new Converter<Long>() {
+                    @Override
+                    public String toString(final Long value) {
+                        return value + "L";
+                    }
+                })
+                .build();
+
+        assertEquals("0042", converters.format(42));
+        assertEquals("0001,0002", converters.format(new int[]{1, 2}));
+        assertEquals(Arrays.asList("0001", "0002"), converters.formatAll(new int[]{1, 2}));
+        assertEquals("3L,4L", converters.format(new long[]{3, 4}));
+        assertEquals("42", ParamConverters.toString(42));
+    }
+
+    @Test
+    public void largeCollection() {
+        final List<Integer> ids = IntStream.range(0, 200_000).boxed().collect(Collectors.toList());
+
+        final String value = ParamConverters.toString(ids);
+
+        assertEquals(200_000, value.split(",").length);
+        assertEquals("0,1,2,", value.substring(0, 6));
+    }
+
+    @Test
+    public void registeredConverter() {
+        final ParamConverter<LocalDate> converter = new Converter<LocalDate>() {
+            @Override
+            public String toString(final LocalDate value) {
+                return value.getYear() + "" + value.getDayOfYear();
+            }
+        };
+
+        final ParamConverters converters = ParamConverters.builder().register(LocalDate.class, converter).build();
+
+        assertSame(converter, converters.get(LocalDate.class));
+        assertNull(converters.get(String.class));
+        assertEquals("202232", converters.format(LocalDate.of(2022, 2, 1)));
+        assertEquals("202232,202233", converters.format(Arrays.asList(LocalDate.of(2022, 2, 1), LocalDate.of(2022, 2, 2))));
+
+        // other converters, and the static methods, are not affected
+        assertEquals("2022-02-01", ParamConverters.toString(LocalDate.of(2022, 2, 1)));
+        assertEquals("2022-02-01", ParamConverters.builder().build().format(LocalDate.of(2022, 2, 1)));
+    }
+
+    @Test
+    public void interfaceConverter() {
+        final ParamConverters converters = ParamConverters.builder()
+                .register(TemporalAccessor.class, new Converter<TemporalAccessor>() {
+                    @Override
+                    public String toString(final TemporalAccessor value) {
+                        return "temporal";
+                    }
+                })
+                .build();
+
+        assertEquals("temporal", converters.format(LocalDate.of(2022, 2, 1)));
+    }
+
+    @Test
+    public void scopedToClient() {
+        final List<Request<?>> sent = new ArrayList<>();
+        final RequestExecutor executor = request -> {
+            sent.add(request);
+            return new Response<>(204, Collections.emptyMap(), new byte[0]);
+        };
+
+        final ParamConverters converters = ParamConverters.builder()
+                .register(LocalDate.class, new Converter<LocalDate>() {
+                    @Override
+                    public String toString(final LocalDate value) {
+                        return "day" + value.getDayOfYear();
+                    }
+                })
+                .build();
+
+        final Days converted = RestClient.builder(Days.class, executor).converters(converters).build();
+        final Days plain = RestClient.create(Days.class, executor);
+
+        converted.get(LocalDate.of(2022, 2, 1));
+        plain.get(LocalDate.of(2022, 2, 1));
+
+        assertEquals("day32", sent.get(0).getQueryParams().get("day"));
+        assertEquals("2022-02-01", sent.get(1).getQueryParams().get("day"));
+    }
+
+    public interface Days {
+        @GET
+        @Path("/days")
+        void get(@QueryParam("day") LocalDate day);
+    }
+
+    private abstract static class Converter<T> implements ParamConverter<T> {
+        @Override
+        public T fromString(final String value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PrefetchingIteratorTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    public void after() throws InterruptedException {
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void order() {
+        final List<Integer> list = Suppliers.asStream(count(1000), executor, 4)
+                .collect(Collectors.toList());
+
+        assertEquals(1000, list.size());
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals(i, list.get(i));
+        }
+    }
+
+    @Test
+    public void lookAheadIsBounded() throws InterruptedException {
+        final AtomicInteger fetched = new AtomicInteger();
+        final Supplier<Integer> supplier = () -> fetched.incrementAndGet();
+
+        final Iterator<Integer> iterator = Suppliers.asIterator(supplier, executor, 3);
+        assertEquals(1, iterator.next());
+
+        Thread.sleep(300);
+
+        // one consumed, three queued and at most one blocked waiting for room
+        assertTrue(fetched.get() <= 5, "fetched " + fetched.get());
+    }
+
+    @Test
+    public void closeCancelsFetching() throws InterruptedException {
+        final AtomicInteger fetched = new AtomicInteger();
+        final Supplier<Integer> supplier = () -> fetched.incrementAndGet();
+
+        try (final Stream<Integer> stream = Suppliers.asStream(supplier, executor, 2)) {
+            assertEquals(1, stream.findFirst().get());
+        }
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        final int count = fetched.get();
+        Thread.sleep(200);
+        assertEquals(count, fetched.get());
+    }
+
+    @Test
+    public void closeWakesWaitingConsumer() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Supplier<Integer> supplier = () -> {
+            // ignores the interrupt from close, like a blocking call that cannot be cancelled
+            boolean interrupted = false;
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+            return 1;
+        };
+
+        final PrefetchingIterator<Integer> iterator = new PrefetchingIterator<>(supplier, executor, 1);
+        try {
+            final Future<Boolean> hasNext = executor.submit(iterator::hasNext);
+            Thread.sleep(200);
+
+            iterator.close();
+            assertFalse(hasNext.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void exceptionsArriveInOrder() {
+        final AtomicInteger count = new AtomicInteger();
+        final Supplier<Integer> supplier = () -> {
+            final int i = count.getAndIncrement();
+            if (i == 3) throw new UnsupportedOperationException("page 3");
+            return i;
+        };
+
+        final Iterator<Integer> iterator = Suppliers.asIterator(supplier, executor, 10);
+        assertEquals(0, iterator.next());
+        assertEquals(1, iterator.next());
+        assertEquals(2, iterator.next());
+        assertThrows(UnsupportedOperationException.class, iterator::hasNext);
+    }
+
+    @Test
+    public void empty() {
+        final Iterator<Object> iterator = Suppliers.asIterator(() -> null, executor, 1);
+        assertFalse(iterator.hasNext());
+    }
+
+    private static Supplier<Integer> count(final int max) {
+        final AtomicInteger count = new AtomicInteger();
+        return () -> {
+            final int i = count.getAndIncrement();
+            return i < max ? i : null;
+        };
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.tomitribe.restclient.UrlConnectionRequestExecutorTest.Widget;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.QueryParam;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QuerySplitterTest {
+
+    private static final int MAX_URI = 300;
+
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private HttpServer server;
+    private UrlConnectionRequestExecutor executor;
+    private WidgetClient client;
+
+    @BeforeEach
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(threads);
+
+        server.createContext("/widgets", exchange -> {
+            calls.incrementAndGet();
+            if (tooLong(exchange)) return;
+
+            // counted down before responding, so the next chunk cannot overlap
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            respond(exchange, 200, widgets(exchange));
+        });
+
+        server.createContext("/pages", exchange -> {
+            calls.incrementAndGet();
+            if (tooLong(exchange)) return;
+
+            respond(exchange, 200, "{\"color\":\"" + param(exchange, "color") + "\",\"items\":" + widgets(exchange) + "}");
+        });
+
+        server.start();
+
+        executor = UrlConnectionRequestExecutor.builder()
+                .baseUri("http://127.0.0.1:" + server.getAddress().getPort())
+                .build();
+
+        final QuerySplitter splitter = QuerySplitter.builder()
+                .maxUriLength(MAX_URI)
+                .build();
+
+        client = RestClient.create(WidgetClient.class, executor, Paginator.builder().build(), splitter);
+    }
+
+    @AfterEach
+    public void after() {
+        server.stop(0);
+        threads.shutdownNow();
+    }
+
+    @Test
+    public void shortListIsNotSplit() {
+        final Widget[] widgets = client.list(Arrays.asList(1, 2, 3));
+
+        assertEquals(3, widgets.length);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void arraysAreConcatenated() {
+        final List<Integer> ids = ids(500);
+        final Widget[] widgets = client.list(ids);
+
+        assertEquals(ids, Arrays.stream(widgets).map(widget -> Integer.valueOf(widget.getId())).collect(Collectors.toList()));
+        assertTrue(calls.get() > 1, "calls " + calls.get());
+    }
+
+    @Test
+    public void pagesAreConcatenated() {
+        final List<Integer> ids = ids(300);
+        final WidgetPage page = client.page(ids, "green");
+
+        assertEquals("green", page.getColor());
+        assertEquals(ids, page.getItems().stream().map(widget -> Integer.valueOf(widget.getId())).collect(Collectors.toList()));
+        assertTrue(calls.get() > 1, "calls " + calls.get());
+    }
+
+    @Test
+    public void async() {
+        final List<Integer> ids = ids(500);
+        final Widget[] widgets = client.listAsync(ids).join();
+
+        assertEquals(500, widgets.length);
+        assertEquals("499", widgets[499].getId());
+    }
+
+    @Test
+    public void boundedConcurrency() {
+        final QuerySplitter splitter = QuerySplitter.builder().maxUriLength(MAX_URI).maxConcurrency(2).build();
+        final Request<Widget[]> request = Request.target("/widgets").response(Widget[].class);
+        final List<Integer> ids = ids(500);
+
+        final List<Request<Widget[]>> requests = splitter.split(request.query("id", ids), "id", ids, executor);
+        final Widget[] widgets = splitter.executeAsync(requests, executor).join();
+
+        assertEquals(500, widgets.length);
+        assertTrue(requests.size() > 2, "chunks " + requests.size());
+        assertTrue(maxInFlight.get() <= 2, "in flight " + maxInFlight.get());
+    }
+
+    @Test
+    public void noRoomForValues() {
+        final QuerySplitter splitter = QuerySplitter.builder().maxUriLength(MAX_URI).build();
+        final Request<Widget[]> request = Request.target("/widgets/" + String.join("", Collections.nCopies(MAX_URI, "x")))
+                .response(Widget[].class);
+        final List<Integer> ids = ids(10);
+
+        assertThrows(IllegalArgumentException.class, () -> splitter.split(request.query("id", ids), "id", ids, executor));
+        assertThrows(IllegalArgumentException.class, () -> QuerySplitter.builder().maxConcurrency(-1));
+    }
+
+    @Test
+    public void chunksFit() {
+        final QuerySplitter splitter = QuerySplitter.builder().maxUriLength(MAX_URI).build();
+        final Request<Widget[]> request = Request.target("/widgets").response(Widget[].class);
+        final List<Integer> ids = ids(1000);
+
+        final List<Request<Widget[]>> requests = splitter.split(request.query("id", ids), "id", ids, executor);
+
+        final List<Integer> all = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            final Request<Widget[]> chunk = requests.get(i);
+            final int length = executor.resolve(chunk).toASCIIString().length();
+            assertTrue(length <= MAX_URI, "length " + length);
+            if (i < requests.size() - 1) assertTrue(length > MAX_URI - 5, "length " + length);
+            for (final String id : chunk.getQueryParams().get("id").split(",")) {
+                all.add(Integer.valueOf(id));
+            }
+        }
+
+        assertEquals(ids, all);
+    }
+
+    @Test
+    public void concat() {
+        final List<byte[]> bodies = Arrays.asList(
+                "{\"total\":3,\"data\":[1,2]}".getBytes(StandardCharsets.UTF_8),
+                "{\"total\":3,\"data\":[3]}".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("{\"total\":3,\"data\":[1,2,3]}", new String(QuerySplitter.concat(bodies), StandardCharsets.UTF_8));
+
+        assertThrows(IllegalStateException.class, () -> QuerySplitter.concat(Arrays.asList(
+                "{\"a\":[1],\"b\":[2]}".getBytes(StandardCharsets.UTF_8),
+                "{\"a\":[3],\"b\":[4]}".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static List<Integer> ids(final int count) {
+        return IntStream.range(0, count).boxed().collect(Collectors.toList());
+    }
+
+    private static boolean tooLong(final HttpExchange exchange) throws IOException {
+        final String uri = "http://127.0.0.1:" + exchange.getLocalAddress().getPort() + exchange.getRequestURI().toASCIIString();
+        if (uri.length() <= MAX_URI) return false;
+
+        respond(exchange, 414, "{}");
+        return true;
+    }
+
+    private static String param(final HttpExchange exchange, final String name) {
+        for (final String pair : exchange.getRequestURI().getQuery().split("&")) {
+            if (pair.startsWith(name + "=")) return pair.substring(name.length() + 1);
+        }
+        return null;
+    }
+
+    private static String widgets(final HttpExchange exchange) {
+        return Arrays.stream(param(exchange, "id").split(","))
+                .map(id -> "{\"id\":\"" + id + "\",\"color\":\"red\"}")
+                .collect(Collectors.joining(",", "[", "]"));
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public interface WidgetClient {
+
+        @GET
+        @Path("/widgets")
+        Widget[] list(@QueryParam("id") List<Integer> ids);
+
+        @GET
+        @Path("/widgets")
+        CompletableFuture<Widget[]> listAsync(@QueryParam("id") List<Integer> ids);
+
+        @GET
+        @Path("/pages")
+        WidgetPage page(@QueryParam("id") List<Integer> ids, @QueryParam("color") String color);
+    }
+
+    public static class WidgetPage implements Page<Widget> {
+        private String color;
+        private List<Widget> items;
+
+        public String getColor() {
+            return color;
+        }
+
+        public void setColor(final String color) {
+            this.color = color;
+        }
+
+        @Override
+        public List<Widget> getItems() {
+            return items;
+        }
+
+        public void setItems(final List<Widget> items) {
+            this.items = items;
+        }
+    }
+}
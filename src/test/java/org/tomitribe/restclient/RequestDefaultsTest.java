@@ -0,0 +1,171 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RequestDefaultsTest {
+
+    private final RequestDefaults defaults = RequestDefaults.builder()
+            .header("Authorization", "token abc")
+            .header("User-Agent", "restclient")
+            .query("per_page", 100)
+            .build();
+
+    @Test
+    public void consultedOnRead() {
+        final Request<?> request = Request.target("/items")
+                .header("User-Agent", "custom")
+                .query("state", "open")
+                .defaults(defaults);
+
+        assertEquals("token abc", request.getHeaderParams().get("authorization"));
+        assertEquals("custom", request.getHeaderParams().get("user-agent"));
+        assertEquals(2, request.getHeaderParams().size());
+        assertEquals(Collections.singletonList("100"), request.getQueryValues().get("per_page"));
+        assertEquals("/items?per_page=100&state=open", request.getURI().toString());
+
+        // own params override the defaults
+        assertEquals("/items?per_page=5&state=open", request.query("per_page", 5).getURI().toString());
+    }
+
+    @Test
+    public void sharedNotCopied() {
+        final Request<?> request = Request.target("/items").defaults(defaults);
+
+        assertSame(defaults.getHeaderValues(), request.getHeaderValues());
+        assertSame(defaults.getHeaderParams(), request.getHeaderParams());
+        assertSame(defaults, request.query("page", 2).getDefaults());
+        assertSame(defaults, request.response(String.class).getDefaults());
+    }
+
+    @Test
+    public void sameAsCopiedParams() {
+        final Request<?> layered = Request.target("/items").query("state", "open").defaults(defaults);
+        final Request<?> copied = Request.target("/items")
+                .header("Authorization", "token abc")
+                .header("User-Agent", "restclient")
+                .query("per_page", 100)
+                .query("state", "open");
+
+        assertEquals(copied, layered);
+        assertEquals(copied.fingerprint(), layered.fingerprint());
+        assertEquals(copied.getURI(), layered.getURI());
+    }
+
+    @Test
+    public void mergeAll() {
+        final Request<?> a = Request.target("/items").defaults(defaults);
+        final Request<?> b = Request.target("/items").query("page", 3).defaults(defaults);
+        assertSame(defaults, Request.mergeAll(a, b).getDefaults());
+
+        final RequestDefaults other = RequestDefaults.builder().header("X-Trace", "1").build();
+        final Request<?> merged = Request.mergeAll(a, b.defaults(other));
+        assertSame(other, merged.getDefaults());
+        assertNull(merged.getHeaderParams().get("authorization"));
+        assertEquals("1", merged.getHeaderParams().get("x-trace"));
+        assertEquals("3", merged.getQueryParams().get("page"));
+    }
+
+    @Test
+    public void layeredMap() {
+        final Map<String, String> bottom = new LinkedHashMap<>();
+        bottom.put("a", "1");
+        bottom.put("b", "2");
+        bottom.put("c", "3");
+
+        final Map<String, String> top = new LinkedHashMap<>();
+        top.put("d", "4");
+        top.put("b", "two");
+
+        final Map<String, String> expected = new LinkedHashMap<>(bottom);
+        expected.putAll(top);
+
+        final Map<String, String> layered = LayeredMap.of(bottom, top);
+        assertEquals(expected, layered);
+        assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(layered.entrySet()));
+        assertEquals(4, layered.size());
+        assertEquals("two", layered.get("b"));
+        assertNull(layered.get("z"));
+        assertThrows(UnsupportedOperationException.class, () -> layered.put("e", "5"));
+
+        assertSame(top, LayeredMap.of(Collections.emptyMap(), top));
+    }
+
+    @Test
+    public void restClient() throws Exception {
+        final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/items", exchange -> {
+            received.add(exchange.getRequestHeaders().getFirst("Authorization") + " "
+                    + exchange.getRequestHeaders().getFirst("User-Agent") + " "
+                    + exchange.getRequestURI().getQuery());
+
+            final byte[] bytes = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (final OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+
+        try {
+            final RequestExecutor executor = UrlConnectionRequestExecutor.builder()
+                    .baseUri("http://127.0.0.1:" + server.getAddress().getPort())
+                    .build();
+
+            final ItemClient client = RestClient.builder(ItemClient.class, executor)
+                    .defaults(defaults)
+                    .build();
+
+            assertEquals("ok", client.list());
+            assertEquals("ok", client.list("agent"));
+
+            assertEquals(Arrays.asList("token abc restclient per_page=100", "token abc agent per_page=100"), received);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public interface ItemClient {
+        @GET
+        @Path("/items")
+        String list();
+
+        @GET
+        @Path("/items")
+        String list(@HeaderParam("User-Agent") String agent);
+    }
+}
@@ -22,9 +22,11 @@ import lombok.NoArgsConstructor;
 import org.junit.jupiter.api.Test;
 
 import javax.json.bind.annotation.JsonbProperty;
+import java.util.Arrays;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.tomitribe.restclient.Request.Method.PUT;
 
 public class RequestMergeTest {
@@ -171,6 +173,84 @@ public class RequestMergeTest {
         assertEquals(4, c.getQueryParams().size());
     }
 
+    @Test
+    public void mergeAll() {
+        final Request<Object> defaults = Request.builder()
+                .header("Authorization", "token abc")
+                .header("User-Agent", "restclient")
+                .query("per_page", 100)
+                .build();
+        final Request<Object> tenant = Request.builder()
+                .path("/repos/{owner}/{repo}/issues")
+                .path("owner", "tomitribe")
+                .query("per_page", 50)
+                .build();
+        final Request<Object> call = Request.builder()
+                .method(PUT)
+                .path("repo", "red")
+                .query("state", "open")
+                .responseType(Object.class)
+                .build();
+
+        final Request<?> c = Request.mergeAll(defaults, tenant, call);
+
+        assertEquals(defaults.merge(tenant).merge(call), c);
+        assertEquals(PUT, c.getMethod());
+        assertEquals("/repos/{owner}/{repo}/issues", c.getPath());
+        assertEquals(Object.class, c.getResponseType());
+        assertEquals("50", c.getQueryParams().get("per_page"));
+        assertEquals("open", c.getQueryParams().get("state"));
+        assertEquals("/repos/tomitribe/red/issues?per_page=50&state=open", c.getURI().toString());
+
+        // only the defaults have headers, so they are shared rather than copied
+        assertSame(defaults.getHeaderValues(), c.getHeaderValues());
+        assertEquals("token abc", c.getHeaderParams().get("authorization"));
+    }
+
+    @Test
+    public void defaultsDoNotOverrideExplicit() {
+        final RequestDefaults first = RequestDefaults.builder()
+                .header("Accept", "application/xml")
+                .query("per_page", 100)
+                .build();
+        final RequestDefaults last = RequestDefaults.builder()
+                .header("Accept", "application/json")
+                .header("User-Agent", "restclient")
+                .query("per_page", 10)
+                .build();
+
+        final Request<?> a = Request.target("/items")
+                .header("Accept", "text/plain")
+                .query("per_page", 50)
+                .defaults(first);
+        final Request<?> b = Request.target("/items").defaults(last);
+
+        final Request<?> c = Request.mergeAll(a, b);
+
+        assertSame(last, c.getDefaults());
+        assertEquals("text/plain", c.getHeaderParams().get("accept"));
+        assertEquals("restclient", c.getHeaderParams().get("user-agent"));
+        assertEquals("50", c.getQueryParams().get("per_page"));
+        assertEquals("/items?per_page=50", c.getURI().toString());
+    }
+
+    @Test
+    public void expansion() {
+        final Request<Object> multi = Request.builder()
+                .path("/items")
+                .query("id", Arrays.asList(1, 2))
+                .expansion(Request.Expansion.MULTI)
+                .build();
+        final Request<Object> unset = Request.builder().build();
+        final Request<Object> csv = Request.builder().expansion(Request.Expansion.CSV).build();
+
+        assertEquals(Request.Expansion.MULTI, multi.merge(unset).getExpansion());
+        assertEquals("/items?id=1&id=2", multi.merge(unset).getURI().toString());
+
+        assertEquals(Request.Expansion.CSV, multi.merge(csv).getExpansion());
+        assertEquals("/items?id=1,2", multi.merge(csv).getURI().toString());
+    }
+
     private void assertHeader(final Request<Object> c, final String link, final String expected) {
         assertEquals(expected, c.getHeaderParams().get(link));
     }
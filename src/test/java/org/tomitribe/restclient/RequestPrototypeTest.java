@@ -0,0 +1,149 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RequestPrototypeTest {
+
+    private static final String[] VALUES = {
+            "tomitribe", "with space", "a/b", "100%", "50%25", "caf\u00e9", "a,b", "x=y&z", "{braces}", "plus+sign",
+            "semi;colon", "question?", "hash#tag", "", "~tilde", "quote\"s"
+    };
+
+    @Test
+    public void bind() {
+        final Request<?> proto = Request.prototype("/repos/{owner}/{repo}/issues");
+
+        final Request<?> request = proto.bind("tomitribe", "crest");
+        assertEquals("tomitribe", request.getPathParams().get("owner"));
+        assertEquals("crest", request.getPathParams().get("repo"));
+        assertEquals(URI.create("/repos/tomitribe/crest/issues"), request.getURI());
+
+        // the prototype itself is unchanged
+        assertEquals(0, proto.getPathParams().size());
+    }
+
+    @Test
+    public void sameUriAsUriBuilder() {
+        final Request<?> proto = Request.prototype("/repos/{owner}/{repo}/issues.json");
+
+        for (final String owner : VALUES) {
+            for (final String value : VALUES) {
+                // a query value with braces is a template to the UriBuilder, so it is not used here
+                final String query = value.replace('{', '(');
+                final Request<?> request = proto.bind(owner, value).query("q", query).query("page", 2);
+                assertEquals(slow(request), request.getURI(), owner + " " + value);
+            }
+        }
+    }
+
+    @Test
+    public void sameUriForCollections() {
+        final Request<?> proto = Request.prototype("/search/{kind}");
+
+        for (final Request.Expansion expansion : Request.Expansion.values()) {
+            for (final String value : VALUES) {
+                if (value.contains("{")) continue;
+
+                final Request<?> request = proto.bind("issues").toBuilder()
+                        .expansion(expansion)
+                        .query("labels", Arrays.asList(value, "bug", value))
+                        .addQuery("labels", "help wanted")
+                        .build();
+                assertEquals(slow(request), request.getURI(), expansion + " " + value);
+            }
+        }
+    }
+
+    @Test
+    public void sameUriWithDefaults() {
+        final RequestDefaults defaults = RequestDefaults.builder()
+                .query("per_page", "100")
+                .query("state", "all open")
+                .build();
+
+        final Request<?> request = Request.prototype("/repos/{owner}").bind("tomitribe").defaults(defaults);
+        assertEquals(slow(request), request.getURI());
+    }
+
+    @Test
+    public void otherPaths() {
+        final String[] paths = {
+                "/", "/a/{x}/", "/a/{x}/{y}", "a/{x}", "/a//{x}", "/a b/{x}", "/a:b/{x}", "/a/{x: [a-z]+}", "/{x}.{y}"
+        };
+
+        for (final String path : paths) {
+            final Request<?> proto = Request.prototype(path);
+            final Object[] values = new Object[new Template(path).getVariables().size()];
+            Arrays.fill(values, "v");
+            final Request<?> request = proto.bind(values).query("q", "1 2");
+            assertEquals(slow(request), request.getURI(), path);
+        }
+    }
+
+    @Test
+    public void keptThroughCopies() {
+        final Request<?> request = Request.prototype("/widgets/{id}")
+                .bind("7")
+                .query("color", "blue")
+                .header("accept", "application/json")
+                .response(String.class);
+
+        assertEquals(URI.create("/widgets/7?color=blue"), request.getURI());
+        assertEquals(URI.create("/widgets/7?color=blue&size=2"), Request.mergeAll(request, Request.builder().query("size", "2").build()).getURI());
+    }
+
+    @Test
+    public void changedPath() {
+        final Request<?> request = Request.prototype("/widgets/{id}").bind("7").toBuilder().path("/gadgets/{id}").build();
+        assertEquals(URI.create("/gadgets/7"), request.getURI());
+    }
+
+    @Test
+    public void patternMismatch() {
+        final Request<?> request = Request.prototype("/widgets/{id: [0-9]+}").bind("abc");
+        assertThrows(IllegalArgumentException.class, request::getURI);
+    }
+
+    @Test
+    public void missingParam() {
+        final Request<?> request = Request.prototype("/repos/{owner}/{repo}").bind("tomitribe");
+        assertThrows(IllegalArgumentException.class, request::getURI);
+    }
+
+    @Test
+    public void excessParams() {
+        assertThrows(IllegalStateException.class, () -> Request.prototype("/widgets/{id}").bind("1", "2"));
+    }
+
+    @Test
+    public void equalToTarget() {
+        assertEquals(Request.target("/repos/{owner}/{repo}", "a", "b"), Request.prototype("/repos/{owner}/{repo}").bind("a", "b"));
+        assertNotEquals(Request.target("/repos/{owner}/{repo}", "a", "b"), Request.prototype("/repos/{owner}/{repo}").bind("a", "c"));
+    }
+
+    private static URI slow(final Request<?> request) {
+        return request.toUriBuilder().resolveTemplates(new java.util.HashMap<String, Object>(request.getPathParams())).build();
+    }
+}
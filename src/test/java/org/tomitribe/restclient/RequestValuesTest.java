@@ -0,0 +1,115 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.QueryParam;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class RequestValuesTest {
+
+    @Test
+    public void csv() {
+        final Request<?> request = Request.target("/items").query("id", Arrays.asList(1, 2, 3));
+
+        assertEquals(Arrays.asList("1", "2", "3"), request.getQueryValues().get("id"));
+        assertEquals("1,2,3", request.getQueryParams().get("id"));
+        assertEquals(Request.Expansion.CSV, request.getExpansion());
+        assertEquals("/items?id=1,2,3", request.getURI().toString());
+    }
+
+    @Test
+    public void multi() {
+        final Request<?> request = Request.<String>builder()
+                .path("/items")
+                .query("id", new int[]{1, 2})
+                .addQuery("id", 3)
+                .query("sort", "name")
+                .expansion(Request.Expansion.MULTI)
+                .build();
+
+        assertEquals(Arrays.asList("1", "2", "3"), request.getQueryValues().get("id"));
+        assertEquals("1,2,3", request.getQueryParams().get("id"));
+        assertEquals("/items?id=1&id=2&id=3&sort=name", request.getURI().toString());
+
+        // the expansion is kept when the request is copied
+        assertEquals("/items?id=1&id=2&id=3&sort=name&page=2", request.query("page", 2).getURI().toString());
+    }
+
+    @Test
+    public void headers() {
+        final Request<?> request = Request.<String>builder()
+                .path("/items")
+                .header("Accept", Arrays.asList("text/plain", "text/html"))
+                .addHeader("ACCEPT", "application/xml")
+                .build();
+
+        assertEquals(Arrays.asList("text/plain", "text/html", "application/xml"), request.getHeaderValues().get("accept"));
+        assertEquals("text/plain,text/html,application/xml", request.getHeaderParams().get("accept"));
+    }
+
+    @Test
+    public void acceptFromMethod() throws Exception {
+        final java.lang.reflect.Method method = ItemClient.class.getMethod("list", List.class, List.class);
+
+        final Request<?> request = Request.from(method, new Object[]{Arrays.asList(4, 5), Arrays.asList("text/plain", "application/json")});
+        assertEquals(Arrays.asList("text/plain", "application/json"), request.getHeaderValues().get("accept"));
+        assertEquals(Arrays.asList("4", "5"), request.getQueryValues().get("id"));
+
+        final Request<?> other = Request.from(method, new Object[]{Arrays.asList(4, 5), Arrays.asList("text/plain")});
+        assertEquals(Arrays.asList("text/plain", "application/json"), other.getHeaderValues().get("accept"));
+    }
+
+    @Test
+    public void equalsAndFingerprint() {
+        final Request<?> csv = Request.target("/items").query("id", Arrays.asList(1, 2));
+        final Request<?> multi = csv.toBuilder().expansion(Request.Expansion.MULTI).build();
+        final Request<?> joined = Request.target("/items").query("id", "1,2");
+
+        assertNotEquals(csv, multi);
+        assertNotEquals(csv.fingerprint(), multi.fingerprint());
+
+        // written the same way in the URI, so they share a fingerprint
+        assertEquals(csv.getURI(), joined.getURI());
+        assertEquals(csv.fingerprint(), joined.fingerprint());
+
+        assertNotEquals(multi.fingerprint(), joined.toBuilder().expansion(Request.Expansion.MULTI).build().fingerprint());
+    }
+
+    @Test
+    public void checkpoint(@TempDir final File dir) {
+        final Checkpoint checkpoint = new Checkpoint(new File(dir, "checkpoint"));
+        checkpoint.save(Request.target("/items").query("id", Arrays.asList(1, 2)));
+
+        assertEquals(Arrays.asList("1", "2"), checkpoint.load().getQueryValues().get("id"));
+    }
+
+    public interface ItemClient {
+        @GET
+        @Path("/items")
+        String list(@QueryParam("id") List<Integer> ids, @HeaderParam("Accept") List<String> accept);
+    }
+}
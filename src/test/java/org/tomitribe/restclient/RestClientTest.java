@@ -0,0 +1,197 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.tomitribe.restclient.UrlConnectionRequestExecutorTest.Widget;
+
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RestClientTest {
+
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicReference<String> accept = new AtomicReference<>();
+    private HttpServer server;
+    private NioRequestExecutor executor;
+    private WidgetClient client;
+
+    @BeforeEach
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(threads);
+
+        server.createContext("/widgets/", exchange -> {
+            accept.set(exchange.getRequestHeaders().getFirst("Accept"));
+            final String id = exchange.getRequestURI().getPath().substring("/widgets/".length());
+
+            if ("DELETE".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(204, -1);
+                exchange.close();
+                return;
+            }
+
+            if ("missing".equals(id)) {
+                respond(exchange, 404, "{}");
+                return;
+            }
+
+            final int now = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+
+            respond(exchange, 200, "{\"id\":\"" + id + "\",\"color\":\"blue\"}");
+        });
+
+        server.start();
+
+        executor = NioRequestExecutor.builder()
+                .baseUri("http://127.0.0.1:" + server.getAddress().getPort())
+                .maxConnectionsPerHost(64)
+                .build();
+
+        client = RestClient.create(WidgetClient.class, executor);
+    }
+
+    @AfterEach
+    public void after() {
+        executor.close();
+        server.stop(0);
+        threads.shutdownNow();
+    }
+
+    @Test
+    public void sync() {
+        assertEquals("7", client.get("7").getId());
+    }
+
+    @Test
+    public void completableFuture() {
+        final CompletableFuture<Widget> future = client.getAsync("7");
+        assertEquals("7", future.join().getId());
+        assertEquals("application/json", accept.get());
+    }
+
+    @Test
+    public void completionStage() {
+        final CompletionStage<String> stage = client.getRaw("7");
+        assertEquals("{\"id\":\"7\",\"color\":\"blue\"}", stage.toCompletableFuture().join());
+    }
+
+    @Test
+    public void voidFuture() {
+        assertNull(client.delete("7").join());
+        assertNull(accept.get());
+    }
+
+    @Test
+    public void failedFuture() {
+        final CompletionException e = assertThrows(CompletionException.class, () -> client.getAsync("missing").join());
+        assertInstanceOf(HttpStatusException.class, e.getCause());
+    }
+
+    @Test
+    public void overlappingCalls() {
+        final List<CompletableFuture<Widget>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(client.getAsync("" + i));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals("" + i, futures.get(i).join().getId());
+        }
+
+        assertTrue(maxInFlight.get() > 1, "max in flight " + maxInFlight.get());
+    }
+
+    @Test
+    public void defaultMethod() {
+        assertEquals("7:blue", client.describe("7"));
+    }
+
+    @Test
+    public void responseType() throws Exception {
+        assertEquals(Widget.class, Request.from(WidgetClient.class.getMethod("get", String.class), new Object[]{"1"}).getResponseType());
+        assertEquals(Widget.class, Request.from(WidgetClient.class.getMethod("getAsync", String.class), new Object[]{"1"}).getResponseType());
+        assertEquals(String.class, Request.from(WidgetClient.class.getMethod("getRaw", String.class), new Object[]{"1"}).getResponseType());
+        assertNull(Request.from(WidgetClient.class.getMethod("delete", String.class), new Object[]{"1"}).getResponseType());
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public interface WidgetClient {
+
+        default String describe(final String id) {
+            final Widget widget = get(id);
+            return widget.getId() + ":" + widget.getColor();
+        }
+
+        @GET
+        @Path("/widgets/{id}")
+        Widget get(@PathParam("id") String id);
+
+        @GET
+        @Path("/widgets/{id}")
+        CompletableFuture<Widget> getAsync(@PathParam("id") String id);
+
+        @GET
+        @Path("/widgets/{id}")
+        CompletionStage<String> getRaw(@PathParam("id") String id);
+
+        @DELETE
+        @Path("/widgets/{id}")
+        CompletableFuture<Void> delete(@PathParam("id") String id);
+    }
+}
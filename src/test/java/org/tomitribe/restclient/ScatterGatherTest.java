@@ -0,0 +1,317 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ScatterGatherTest {
+
+    @Test
+    public void orderedResultsWithinLimits() throws Exception {
+        final ExecutorService threads = Executors.newFixedThreadPool(32);
+        try {
+            final Tracking executor = new Tracking(threads);
+            final AtomicReference<ScatterGather.Stats> reported = new AtomicReference<>();
+
+            final ScatterGather scatterGather = ScatterGather.builder(executor)
+                    .maxConcurrency(6)
+                    .maxConcurrencyPerHost(2)
+                    .onComplete(reported::set)
+                    .build();
+
+            final ScatterGather.Results<String> results = scatterGather.executeAll(requests(60));
+
+            final List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 60; i++) {
+                expected.add("http://host" + i % 4 + "/item/" + i);
+            }
+            assertEquals(expected, results.getValues());
+
+            for (int i = 0; i < 60; i++) {
+                assertEquals(i, results.getResults().get(i).getIndex());
+            }
+
+            assertTrue(executor.maxTotal.get() <= 6, "total " + executor.maxTotal.get());
+            assertEquals(6, executor.maxTotal.get());
+            for (final AtomicInteger max : executor.maxPerHost.values()) {
+                assertTrue(max.get() <= 2, "per host " + max.get());
+            }
+
+            final ScatterGather.Stats stats = results.getStats();
+            assertEquals(stats, reported.get());
+            assertEquals(60, stats.getCount());
+            assertEquals(0, stats.getFailures());
+            assertTrue(stats.getThroughput() > 0);
+            assertTrue(stats.getLatency(50) >= 1_000_000, stats.toString());
+            assertTrue(stats.getLatency(50) <= stats.getLatency(99));
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    @Test
+    public void errorsArePerItem() {
+        final RequestExecutor executor = request -> {
+            if (request.getPath().endsWith("/3")) throw new IllegalStateException("boom");
+            if (request.getPath().endsWith("/5")) {
+                return new Response<>(503, Collections.emptyMap(), "down".getBytes(StandardCharsets.UTF_8));
+            }
+            return new Response<>(200, Collections.emptyMap(), request.getPath().getBytes(StandardCharsets.UTF_8));
+        };
+
+        final ScatterGather.Results<String> results = ScatterGather.builder(executor).build()
+                .executeAll(requests(8));
+
+        assertEquals(8, results.getResults().size());
+        assertEquals(6, results.getValues().size());
+        assertEquals(2, results.getStats().getFailures());
+
+        final ScatterGather.Result<String> thrown = results.getResults().get(3);
+        assertFalse(thrown.isSuccess());
+        assertEquals("boom", thrown.getError().getMessage());
+        assertThrows(IllegalStateException.class, thrown::get);
+
+        final ScatterGather.Result<String> status = results.getResults().get(5);
+        assertInstanceOf(HttpStatusException.class, status.getError());
+        assertEquals(503, ((HttpStatusException) status.getError()).getStatus());
+
+        assertEquals("http://host3/item/7", results.getResults().get(7).get());
+    }
+
+    @Test
+    public void streamAsCompleted() throws Exception {
+        final ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            final Tracking executor = new Tracking(threads);
+            final ScatterGather scatterGather = ScatterGather.builder(executor)
+                    .maxConcurrency(8)
+                    .maxConcurrencyPerHost(0)
+                    .build();
+
+            try (final Stream<ScatterGather.Result<String>> stream =
+                         scatterGather.stream(requests(40), ScatterGather.Order.AS_COMPLETED)) {
+                final List<Integer> indexes = stream.map(ScatterGather.Result::getIndex)
+                        .sorted()
+                        .collect(Collectors.toList());
+                assertEquals(40, indexes.size());
+                assertEquals(39, (int) indexes.get(39));
+            }
+
+            try (final Stream<ScatterGather.Result<String>> stream =
+                         scatterGather.stream(requests(40), ScatterGather.Order.ORDERED)) {
+                final List<Integer> indexes = stream.map(ScatterGather.Result::getIndex)
+                        .collect(Collectors.toList());
+                for (int i = 0; i < 40; i++) {
+                    assertEquals(i, (int) indexes.get(i));
+                }
+            }
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    @Test
+    public void closingStreamStopsPending() throws Exception {
+        final ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            final Tracking executor = new Tracking(threads);
+            final AtomicReference<ScatterGather.Stats> reported = new AtomicReference<>();
+            final ScatterGather scatterGather = ScatterGather.builder(executor)
+                    .maxConcurrency(2)
+                    .onComplete(reported::set)
+                    .build();
+
+            final Stream<ScatterGather.Result<String>> stream =
+                    scatterGather.stream(requests(100), ScatterGather.Order.ORDERED);
+            assertEquals(0, stream.findFirst().get().getIndex());
+            stream.close();
+
+            Thread.sleep(100);
+            assertTrue(executor.sent.get() < 100, "sent " + executor.sent.get());
+            assertNotNull(reported.get());
+            assertEquals(executor.sent.get(), reported.get().getCount());
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    @Test
+    public void closeWhileWaitingForPendingSlot() throws Exception {
+        final CompletableFuture<Response<byte[]>> hanging = new CompletableFuture<>();
+        final RequestExecutor executor = new RequestExecutor() {
+            @Override
+            public Response<byte[]> send(final Request<?> request) {
+                return new Response<>(200, Collections.emptyMap(), request.getPath().getBytes(StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public CompletableFuture<Response<byte[]>> sendAsync(final Request<?> request) {
+                if (request.getPath().endsWith("/item/2")) return hanging;
+                return RequestExecutor.super.sendAsync(request);
+            }
+        };
+
+        // hosts take turns, so item 2 on host1 starts before item 1 on host0
+        final List<Request<String>> requests = new ArrayList<>();
+        for (final String path : new String[]{"http://host0/item/0", "http://host0/item/1", "http://host1/item/2"}) {
+            requests.add(Request.<String>builder().path(path).responseType(String.class).build());
+        }
+
+        final Stream<ScatterGather.Result<String>> stream = ScatterGather.builder(executor)
+                .maxConcurrency(1)
+                .build()
+                .stream(requests, ScatterGather.Order.ORDERED);
+        final Iterator<ScatterGather.Result<String>> iterator = stream.iterator();
+        assertEquals(0, iterator.next().getIndex());
+
+        final ExecutorService threads = Executors.newSingleThreadExecutor();
+        try {
+            threads.execute(() -> {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                stream.close();
+                hanging.complete(new Response<>(200, Collections.emptyMap(), "2".getBytes(StandardCharsets.UTF_8)));
+            });
+
+            // waiting on item 1 when it is cancelled, which is skipped
+            assertTrue(iterator.hasNext());
+            assertEquals(2, iterator.next().getIndex());
+            assertFalse(iterator.hasNext());
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    @Test
+    public void asCompletedAfterClose() {
+        final ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            final Tracking executor = new Tracking(threads);
+            final ScatterGather scatterGather = ScatterGather.builder(executor)
+                    .maxConcurrency(2)
+                    .build();
+
+            final Stream<ScatterGather.Result<String>> stream =
+                    scatterGather.stream(requests(100), ScatterGather.Order.AS_COMPLETED);
+            final Spliterator<ScatterGather.Result<String>> spliterator = stream.spliterator();
+            assertFalse(spliterator.hasCharacteristics(Spliterator.SIZED));
+
+            assertTrue(spliterator.tryAdvance(result -> { }));
+            stream.close();
+
+            final AtomicInteger rest = new AtomicInteger();
+            spliterator.forEachRemaining(result -> rest.incrementAndGet());
+            assertTrue(rest.get() + 1 < 100, "results " + (rest.get() + 1));
+            assertEquals(executor.sent.get(), rest.get() + 1);
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    @Test
+    public void synchronousExecutorDoesNotRecurse() {
+        final RequestExecutor executor = request ->
+                new Response<>(200, Collections.emptyMap(), "ok".getBytes(StandardCharsets.UTF_8));
+
+        final ScatterGather.Results<String> results = ScatterGather.builder(executor)
+                .maxConcurrency(1)
+                .build()
+                .executeAll(requests(20000));
+
+        assertEquals(20000, results.getValues().size());
+    }
+
+    private static List<Request<String>> requests(final int count) {
+        final List<Request<String>> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            requests.add(Request.<String>builder()
+                    .path("http://host" + i % 4 + "/item/" + i)
+                    .responseType(String.class)
+                    .build());
+        }
+        return requests;
+    }
+
+    /**
+     * Completes each request on another thread after a short
+     * delay and records the most requests in flight at once
+     */
+    private static class Tracking implements RequestExecutor {
+        private final ExecutorService threads;
+        private final AtomicInteger total = new AtomicInteger();
+        private final AtomicInteger maxTotal = new AtomicInteger();
+        private final AtomicInteger sent = new AtomicInteger();
+        private final Map<String, AtomicInteger> perHost = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> maxPerHost = new ConcurrentHashMap<>();
+
+        Tracking(final ExecutorService threads) {
+            this.threads = threads;
+        }
+
+        @Override
+        public Response<byte[]> send(final Request<?> request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Response<byte[]>> sendAsync(final Request<?> request) {
+            final String host = resolve(request).getHost();
+            final AtomicInteger active = perHost.computeIfAbsent(host, h -> new AtomicInteger());
+            final AtomicInteger max = maxPerHost.computeIfAbsent(host, h -> new AtomicInteger());
+
+            sent.incrementAndGet();
+            max.accumulateAndGet(active.incrementAndGet(), Math::max);
+            maxTotal.accumulateAndGet(total.incrementAndGet(), Math::max);
+
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                active.decrementAndGet();
+                total.decrementAndGet();
+                return new Response<>(200, Collections.emptyMap(), request.getPath().getBytes(StandardCharsets.UTF_8));
+            }, threads);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SupplierPublisherTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void fetchesOnlyOnDemand() throws Exception {
+        final AtomicInteger fetched = new AtomicInteger();
+        final Collector<Integer> collector = new Collector<>(0);
+
+        Suppliers.asPublisher(fetched::incrementAndGet, executor).subscribe(collector);
+
+        collector.subscription.request(3);
+        collector.await(3);
+        Thread.sleep(100);
+
+        assertEquals(3, fetched.get());
+        assertEquals(3, collector.items.size());
+    }
+
+    @Test
+    public void completes() throws Exception {
+        final Collector<Integer> collector = new Collector<>(Long.MAX_VALUE);
+
+        Suppliers.asPublisher(count(100), executor).subscribe(collector);
+
+        assertTrue(collector.done.await(10, TimeUnit.SECONDS));
+        assertNull(collector.error);
+        assertEquals(100, collector.items.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, collector.items.get(i));
+        }
+    }
+
+    @Test
+    public void synchronousFetchesDoNotRecurse() throws Exception {
+        final Supplier<Integer> count = count(100_000);
+        final Collector<Integer> collector = new Collector<>(Long.MAX_VALUE);
+
+        Suppliers.asPublisher(() -> CompletableFuture.completedFuture(count.get())).subscribe(collector);
+
+        assertTrue(collector.done.await(10, TimeUnit.SECONDS));
+        assertNull(collector.error);
+        assertEquals(100_000, collector.items.size());
+    }
+
+    @Test
+    public void cancel() throws Exception {
+        final AtomicInteger fetched = new AtomicInteger();
+        final Collector<Integer> collector = new Collector<Integer>(1) {
+            @Override
+            public void onNext(final Integer item) {
+                super.onNext(item);
+                subscription.cancel();
+                subscription.request(1);
+            }
+        };
+
+        Suppliers.asPublisher(fetched::incrementAndGet, executor).subscribe(collector);
+
+        collector.await(1);
+        Thread.sleep(100);
+
+        assertEquals(1, fetched.get());
+        assertEquals(1, collector.items.size());
+        assertEquals(1, collector.done.getCount());
+    }
+
+    @Test
+    public void error() throws Exception {
+        final Collector<Integer> collector = new Collector<>(10);
+
+        Suppliers.<Integer>asPublisher(() -> {
+            throw new UnsupportedOperationException();
+        }, executor).subscribe(collector);
+
+        assertTrue(collector.done.await(10, TimeUnit.SECONDS));
+        assertTrue(collector.error instanceof UnsupportedOperationException, String.valueOf(collector.error));
+    }
+
+    @Test
+    public void singleSubscriber() throws Exception {
+        final Publisher<Integer> publisher = Suppliers.asPublisher(count(1), executor);
+        publisher.subscribe(new Collector<>(0));
+
+        final Collector<Integer> second = new Collector<>(0);
+        publisher.subscribe(second);
+
+        assertTrue(second.done.await(1, TimeUnit.SECONDS));
+        assertTrue(second.error instanceof IllegalStateException);
+        assertFalse(second.items.iterator().hasNext());
+    }
+
+    private static Supplier<Integer> count(final int max) {
+        final AtomicInteger count = new AtomicInteger();
+        return () -> {
+            final int i = count.getAndIncrement();
+            return i < max ? i : null;
+        };
+    }
+
+    private static class Collector<T> implements Publisher.Subscriber<T> {
+        private final long initialDemand;
+        private final List<T> items = new ArrayList<>();
+        private final CountDownLatch done = new CountDownLatch(1);
+        protected volatile Publisher.Subscription subscription;
+        private volatile Throwable error;
+
+        public Collector(final long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(final Publisher.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialDemand > 0) subscription.request(initialDemand);
+        }
+
+        @Override
+        public void onNext(final T item) {
+            synchronized (items) {
+                items.add(item);
+                items.notifyAll();
+            }
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+
+        public void await(final int count) throws InterruptedException {
+            synchronized (items) {
+                final long timeout = System.currentTimeMillis() + 10_000;
+                while (items.size() < count && System.currentTimeMillis() < timeout) {
+                    items.wait(100);
+                }
+            }
+        }
+    }
+}
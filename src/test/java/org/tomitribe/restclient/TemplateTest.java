@@ -0,0 +1,91 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.junit.jupiter.api.Test;
+import org.tomitribe.restclient.impl.URITemplate;
+
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TemplateTest {
+
+    @Test
+    public void substituteWithoutMatching() {
+        final Template template = new Template("/repos/{owner}/{repo: [a-z]+}.json");
+        assertEquals(Arrays.asList("owner", "repo"), template.getVariables());
+        assertEquals(Arrays.asList("repo"), template.getCustomVariables());
+        assertEquals("/repos/tomitribe/crest.json", template.substitute(Arrays.asList("tomitribe", "crest")));
+    }
+
+    @Test
+    public void match() {
+        final Template template = new Template("/repos/{owner}/{repo: [a-z]+}.json");
+        assertEquals("/repos//\\.json", template.getLiteralChars());
+        assertEquals("/repos/([^/]+?)/([a-z]+)\\.json(/.*)?", template.getPatternValue());
+
+        final Map<String, List<String>> values = new HashMap<>();
+        assertTrue(template.match("/repos/tomitribe/crest.json", values));
+        assertEquals(Arrays.asList("tomitribe"), values.get("owner"));
+        assertEquals(Arrays.asList("crest"), values.get("repo"));
+
+        assertFalse(template.match("/repos/tomitribe/CREST.json", new HashMap<>()));
+        assertFalse(template.match(null, new HashMap<>()));
+    }
+
+    @Test
+    public void substituteSlots() {
+        final Template template = new Template("/{a}/{b: [0-9]+}/{a}");
+        assertEquals(Arrays.asList("a", "b"), template.getNames());
+
+        final StringBuilder sb = new StringBuilder("http://localhost");
+        assertSame(sb, template.substitute(new Object[]{"x/y", 7}, true, sb));
+        assertEquals("http://localhost/x%2Fy/7/x%2Fy", sb.toString());
+
+        assertEquals("/x/y/7/x/y", template.substitute(new Object[]{"x/y", "7"}, false, new StringBuilder()).toString());
+    }
+
+    @Test
+    public void substituteSlotsInvalid() {
+        final Template template = new Template("/{a}/{b: [0-9]+}");
+        assertThrows(IllegalArgumentException.class, () -> template.substitute(new Object[]{"x"}, false, new StringBuilder()));
+        assertThrows(IllegalArgumentException.class, () -> template.substitute(new Object[]{"x", null}, false, new StringBuilder()));
+        assertThrows(IllegalArgumentException.class, () -> template.substitute(new Object[]{"x", "y"}, false, new StringBuilder()));
+    }
+
+    @Test
+    public void uriTemplate() {
+        final URITemplate template = new URITemplate("/repos/{owner}/{repo}");
+        assertEquals(Arrays.asList("owner", "repo"), template.getVariables());
+        assertEquals("/repos/a/b", template.substitute(Arrays.asList("a", "b")));
+        assertEquals("/repos//", template.getLiteralChars());
+        assertEquals("/repos/([^/]+?)/([^/]+?)(/.*)?", template.getPatternValue());
+
+        final MultivaluedMap<String, String> values = new MultivaluedHashMap<>();
+        assertTrue(template.match("/repos/tomitribe/crest", values));
+        assertEquals("crest", values.getFirst("repo"));
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.tomitribe.util.IO;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UrlConnectionRequestExecutorTest {
+
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private HttpServer server;
+    private RequestExecutor executor;
+
+    @BeforeEach
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(threads);
+
+        server.createContext("/widgets/", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            final String id = exchange.getRequestURI().getPath().substring("/widgets/".length());
+            if ("missing".equals(id)) {
+                respond(exchange, 404, "{\"error\":\"not found\"}");
+                return;
+            }
+            final String color = exchange.getRequestURI().getQuery();
+            respond(exchange, 200, "{\"id\":\"" + id + "\",\"color\":\"" + color + "\"}");
+        });
+
+        server.createContext("/echo", exchange -> {
+            final String body = new String(IO.readBytes(exchange.getRequestBody()), StandardCharsets.UTF_8);
+            final String override = exchange.getRequestHeaders().getFirst("X-HTTP-Method-Override");
+            final String answer = exchange.getRequestMethod() + (override == null ? "" : "/" + override) + " "
+                    + exchange.getRequestHeaders().getFirst("Content-Type") + " "
+                    + exchange.getRequestHeaders().getFirst("X-Trace") + " "
+                    + body;
+            respond(exchange, 200, answer);
+        });
+
+        server.createContext("/slow", exchange -> {
+            final int now = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            respond(exchange, 200, "ok");
+        });
+
+        server.start();
+
+        executor = UrlConnectionRequestExecutor.builder()
+                .baseUri("http://127.0.0.1:" + server.getAddress().getPort())
+                .maxConnectionsPerHost(3)
+                .build();
+    }
+
+    @AfterEach
+    public void after() {
+        server.stop(0);
+        threads.shutdownNow();
+    }
+
+    @Test
+    public void get() {
+        final Request<Widget> request = Request.target("/widgets/{id}", "42")
+                .query("color", "red")
+                .response(Widget.class);
+
+        final Widget widget = executor.execute(request);
+        assertEquals("42", widget.getId());
+        assertEquals("color=red", widget.getColor());
+    }
+
+    @Test
+    public void patch() {
+        final Request<String> request = Request.<String>builder()
+                .method(Request.Method.PATCH)
+                .path("/echo")
+                .body("{}")
+                .responseType(String.class)
+                .build();
+
+        assertThrows(UnsupportedOperationException.class, () -> executor.execute(request));
+
+        final RequestExecutor override = UrlConnectionRequestExecutor.builder()
+                .baseUri("http://127.0.0.1:" + server.getAddress().getPort())
+                .methodOverride(true)
+                .build();
+        assertEquals("POST/PATCH application/json null {}", override.execute(request));
+    }
+
+    @Test
+    public void post() {
+        final Request<String> request = Request.<String>builder()
+                .method(Request.Method.POST)
+                .path("/echo")
+                .header("X-Trace", "abc")
+                .body("{\"name\":\"orange\"}")
+                .responseType(String.class)
+                .build();
+
+        assertEquals("POST application/json abc {\"name\":\"orange\"}", executor.execute(request));
+    }
+
+    @Test
+    public void errorStatus() {
+        final Request<Widget> request = Request.target("/widgets/{id}", "missing").response(Widget.class);
+
+        final HttpStatusException e = assertThrows(HttpStatusException.class, () -> executor.execute(request));
+        assertEquals(404, e.getStatus());
+        assertEquals("{\"error\":\"not found\"}", e.getBody());
+
+        final Response<Widget> response = executor.exchange(request);
+        assertEquals(404, response.getStatus());
+        assertNull(response.getEntity());
+    }
+
+    @Test
+    public void keepAlive() {
+        for (int i = 0; i < 20; i++) {
+            executor.execute(Request.target("/widgets/{id}", "" + i).response(Widget.class));
+        }
+        for (int i = 0; i < 5; i++) {
+            assertThrows(HttpStatusException.class, () -> executor.execute(Request.target("/widgets/missing").response(Widget.class)));
+        }
+
+        assertEquals(1, clientPorts.size(), "connections " + clientPorts);
+    }
+
+    @Test
+    public void perHostLimit() {
+        final List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            futures.add(executor.executeAsync(Request.target("/slow").response(String.class)));
+        }
+
+        for (final CompletableFuture<String> future : futures) {
+            assertEquals("ok", future.join());
+        }
+
+        assertTrue(maxInFlight.get() <= 3, "max in flight " + maxInFlight.get());
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public static class Widget {
+        private String id;
+        private String color;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(final String id) {
+            this.id = id;
+        }
+
+        public String getColor() {
+            return color;
+        }
+
+        public void setColor(final String color) {
+            this.color = color;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FlowPublishersTest {
+
+    @Test
+    public void toFlow() throws Exception {
+        final Iterator<String> pages = Arrays.asList("a", "b", "c").iterator();
+        final Publisher<String> publisher = Suppliers.asPublisher(
+                () -> CompletableFuture.completedFuture(pages.hasNext() ? pages.next() : null));
+
+        final Collector<String> collector = new Collector<>();
+        FlowPublishers.toFlow(publisher).subscribe(collector);
+
+        assertTrue(collector.done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("a", "b", "c"), collector.items);
+    }
+
+    @Test
+    public void fromFlow() throws Exception {
+        final List<Integer> items = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch done = new CountDownLatch(1);
+
+        try (final SubmissionPublisher<Integer> flow = new SubmissionPublisher<>()) {
+            FlowPublishers.fromFlow(flow).subscribe(new Publisher.Subscriber<Integer>() {
+                @Override
+                public void onSubscribe(final Publisher.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(final Integer item) {
+                    items.add(item);
+                }
+
+                @Override
+                public void onError(final Throwable throwable) {
+                }
+
+                @Override
+                public void onComplete() {
+                    done.countDown();
+                }
+            });
+
+            flow.submit(1);
+            flow.submit(2);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 2), items);
+    }
+
+    /**
+     * Requests one element at a time, as a Flow subscriber with a bounded buffer would.
+     */
+    private static class Collector<T> implements Flow.Subscriber<T> {
+        private final List<T> items = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch done = new CountDownLatch(1);
+        private Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(final T item) {
+            items.add(item);
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+}
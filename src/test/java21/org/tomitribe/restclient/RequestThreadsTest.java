@@ -0,0 +1,89 @@
+/*
+ * Copyright 2022 Tomitribe and community
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tomitribe.restclient;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs only with the java21 profile, against the classes in src/main/java21.
+ */
+public class RequestThreadsTest {
+
+    @Test
+    public void virtualThreads() throws Exception {
+        final Thread thread = RequestThreads.executor().submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+
+        assertTrue(thread.isVirtual());
+        assertTrue(thread.getName().startsWith("restclient-"), thread.getName());
+    }
+
+    @Test
+    public void sendAsyncBlocksOnVirtualThread() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService threads = Executors.newCachedThreadPool();
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(threads);
+        server.createContext("/hold", exchange -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+
+        try {
+            final RequestExecutor executor = UrlConnectionRequestExecutor.builder()
+                    .baseUri(URI.create("http://127.0.0.1:" + server.getAddress().getPort()))
+                    .build();
+
+            // registered before the response is released, so it runs on the thread that completes the send
+            final CompletableFuture<Thread> sender = executor.sendAsync(Request.target("/hold"))
+                    .thenApply(response -> {
+                        assertEquals(204, response.getStatus());
+                        return Thread.currentThread();
+                    });
+            release.countDown();
+
+            assertTrue(sender.get(5, TimeUnit.SECONDS).isVirtual());
+        } finally {
+            server.stop(0);
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    public void sharedJsonb() throws Exception {
+        final Object other = RequestThreads.executor().submit(JsonbInstances::get).get(5, TimeUnit.SECONDS);
+
+        assertSame(JsonbInstances.get(), other);
+    }
+}